@@ -8,6 +8,32 @@ version = "1.0.0"
 
 object MainStuff {
     const val MAIN_CLASS = "com.cjburkey.itcs3112.CJsSchedules";
+    const val JMH_VERSION = "1.37";
+    const val JUNIT_VERSION = "5.10.2";
+}
+
+repositories {
+    mavenCentral()
+}
+
+// Benchmarks live in their own source set so the application itself doesn't depend on JMH
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+dependencies {
+    testImplementation(platform("org.junit:junit-bom:${MainStuff.JUNIT_VERSION}"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:${MainStuff.JMH_VERSION}")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:${MainStuff.JMH_VERSION}")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.withType<Jar> {
@@ -17,3 +43,29 @@ tasks.withType<Jar> {
 application {
     mainClass.set(MainStuff.MAIN_CLASS)
 }
+
+// Runs every benchmark and writes the results as JSON. Pass JMH options with -PjmhArgs="...", such as a regex
+// selecting which benchmarks to run, or "-p items=1000" to only use one data size.
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks and writes the results to build/reports/jmh/results.json."
+
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args("-rf", "json", "-rff", results.get().asFile.absolutePath)
+    (project.findProperty("jmhArgs") as String?)?.let { args(it.split(" ").filter(String::isNotBlank)) }
+    outputs.file(results)
+    outputs.upToDateWhen { false }
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+}
+
+// Prints how much heap each item takes in each storage layout
+tasks.register<JavaExec>("footprint") {
+    group = "verification"
+    description = "Compares the heap used per item by each way of storing a course's items."
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.cjburkey.itcs3112.bench.FootprintReport")
+    maxHeapSize = "2g"
+}
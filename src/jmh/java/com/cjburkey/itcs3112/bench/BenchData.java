@@ -0,0 +1,69 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+
+/**
+ * Shared helpers for building the data the benchmarks run against.
+ */
+final class BenchData {
+
+    /**
+     * The day every benchmark treats as today, so the split between past and future items never changes.
+     */
+    static final LocalDate TODAY = LocalDate.of(2024, 1, 15);
+
+    /**
+     * Items are due up to this many days before or after {@link #TODAY}.
+     */
+    static final int DAY_SPREAD = 365;
+
+    private BenchData() {
+    }
+
+    /**
+     * Create a handler whose clock is fixed at {@link #TODAY}.
+     *
+     * @return The new handler.
+     */
+    static ScheduleHandler newHandler() {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.setClock(Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+        return handler;
+    }
+
+    /**
+     * Create a session that throws away everything written to it.
+     *
+     * @return The new session.
+     */
+    static Session nullSession() {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        return new Session(out, out);
+    }
+
+    /**
+     * Pick random due days spread evenly around {@link #TODAY}.
+     *
+     * @param count The number of days to pick.
+     * @param seed The seed, so every run uses the same days.
+     * @return The days, as the number of days since 1970-01-01.
+     */
+    static long[] randomDays(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long today = TODAY.toEpochDay();
+        long[] days = new long[count];
+        for (int i = 0; i < count; i ++) {
+            days[i] = today + random.nextInt(-DAY_SPREAD, DAY_SPREAD + 1);
+        }
+        return days;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.cmd.Command;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to split input and find the command to run, with commands that do as little work as
+ * possible themselves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+    /**
+     * The number of arguments passed to the no-op command.
+     */
+    @Param({ "0", "3" })
+    public int argCount;
+
+    private ScheduleHandler handler;
+    private Session session;
+    private Session courseSession;
+    private String noopInput;
+
+    @Setup
+    public void setup() {
+        handler = BenchData.newHandler();
+        handler.scheduleCommands.addCommand(new NoopCommand(handler));
+        handler.addCourse("bench");
+
+        session = BenchData.nullSession();
+        courseSession = BenchData.nullSession();
+        handler.selectCourse(courseSession, "bench");
+
+        StringBuilder input = new StringBuilder("  noop");
+        for (int i = 0; i < argCount; i ++) {
+            input.append(" arg").append(i);
+        }
+        noopInput = input.append("  ").toString();
+    }
+
+    @Benchmark
+    public CommandResult dispatch() {
+        return handler.execute(session, noopInput);
+    }
+
+    // Course commands are tried first whenever a course is selected
+    @Benchmark
+    public CommandResult dispatchWithCourseSelected() {
+        return handler.execute(courseSession, noopInput);
+    }
+
+    @Benchmark
+    public CommandResult unknownCommand() {
+        return handler.execute(session, "not-a-command with args");
+    }
+
+    @Benchmark
+    public CommandResult usageError() {
+        return handler.execute(session, "add-course");
+    }
+
+    // Accepts up to three arguments and does nothing with them
+    private static final class NoopCommand extends Command {
+
+        NoopCommand(ScheduleHandler scheduleHandler) {
+            super("noop", scheduleHandler, 0, "a", "b", "c");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Does nothing";
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduleVersion;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how queries across every course scale with the number of threads they can fan out to. Each run uses a
+ * pool limited to {@link #parallelism} threads, so comparing the results shows the speedup from more cores, up to the
+ * number of cores the machine has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    /**
+     * The number of threads queries can use.
+     */
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    /**
+     * The number of courses.
+     */
+    @Param({ "1000", "20000" })
+    public int courses;
+
+    private static final int ITEMS_PER_COURSE = 50;
+
+    private ScheduleHandler handler;
+    private Session session;
+    private ForkJoinPool pool;
+    private List<ScheduleVersion.Course> version;
+    private long fromDay;
+    private long toDay;
+
+    @Setup
+    public void setup() {
+        handler = BenchData.newHandler();
+        session = BenchData.nullSession();
+        pool = new ForkJoinPool(parallelism);
+        handler.setPool(pool);
+
+        long[] days = BenchData.randomDays(courses * ITEMS_PER_COURSE, 7);
+        String[] names = new String[ITEMS_PER_COURSE];
+        for (int i = 0; i < ITEMS_PER_COURSE; i ++) {
+            names[i] = "Assignment " + i;
+        }
+        for (int c = 0; c < courses; c ++) {
+            String name = "COURSE-" + c;
+            handler.addCourse(name);
+            ClassSchedule course = handler.getCourse(name).orElseThrow();
+            long[] courseDays = new long[ITEMS_PER_COURSE];
+            System.arraycopy(days, c * ITEMS_PER_COURSE, courseDays, 0, ITEMS_PER_COURSE);
+            course.addItems(names.clone(), courseDays, ITEMS_PER_COURSE);
+        }
+
+        version = handler.getVersion().courses();
+        fromDay = BenchData.TODAY.toEpochDay() - 30;
+        toDay = BenchData.TODAY.toEpochDay() + 30;
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long countDueBetween() {
+        return handler.countDueBetween(fromDay, toDay, version);
+    }
+
+    // Only the per-course counts fan out; the first page is still rendered on one thread
+    @Benchmark
+    public CommandResult show() {
+        return handler.execute(session, "show");
+    }
+
+    @Benchmark
+    public CommandResult agenda() {
+        return handler.execute(session, "agenda 20");
+    }
+
+}
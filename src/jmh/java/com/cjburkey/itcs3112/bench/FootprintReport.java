@@ -0,0 +1,111 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduledItem;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Prints how much heap each item takes in each way courses can store their items: one {@code ScheduledItem} per
+ * item in an {@code ArrayList} (how courses used to store them), loaded into an {@code ItemList}, and compacted.
+ * JMH measures time rather than memory, so this is a plain program, run with {@code ./gradlew footprint}.
+ */
+public final class FootprintReport {
+
+    private static final int COURSES = 200;
+    private static final int ITEMS_PER_COURSE = 2000;
+
+    // Item names repeat a lot, within a course and across courses
+    private static final String[] NAME_PREFIXES = { "Homework ", "Quiz ", "Lab ", "Reading ", "Exam ", "Project Milestone " };
+    private static final int NAME_NUMBERS = 15;
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        long[] days = BenchData.randomDays(COURSES * ITEMS_PER_COURSE, 5);
+        String[] names = randomNames(COURSES * ITEMS_PER_COURSE, 6);
+
+        measure("ArrayList<ScheduledItem>", () -> {
+            List<List<ScheduledItem>> courses = new ArrayList<>();
+            for (int c = 0; c < COURSES; c ++) {
+                ArrayList<ScheduledItem> items = new ArrayList<>();
+                for (int i = 0; i < ITEMS_PER_COURSE; i ++) {
+                    int index = c * ITEMS_PER_COURSE + i;
+                    items.add(new ScheduledItem(i, copy(names[index]), days[index]));
+                }
+                items.sort(null);
+                courses.add(items);
+            }
+            return courses;
+        });
+        measure("ItemList (loaded)", () -> newHandler(days, names));
+        measure("Compacted", () -> {
+            ScheduleHandler handler = newHandler(days, names);
+            handler.compact();
+            return handler;
+        });
+    }
+
+    // Fill a handler the way adding items one command at a time would
+    private static ScheduleHandler newHandler(long[] days, String[] names) {
+        ScheduleHandler handler = BenchData.newHandler();
+        for (int c = 0; c < COURSES; c ++) {
+            handler.addCourse("COURSE-" + c);
+            ClassSchedule course = handler.getCourse("COURSE-" + c).orElseThrow();
+            String[] courseNames = new String[ITEMS_PER_COURSE];
+            for (int i = 0; i < ITEMS_PER_COURSE; i ++) {
+                courseNames[i] = copy(names[c * ITEMS_PER_COURSE + i]);
+            }
+            long[] courseDays = new long[ITEMS_PER_COURSE];
+            System.arraycopy(days, c * ITEMS_PER_COURSE, courseDays, 0, ITEMS_PER_COURSE);
+            course.addItems(courseNames, courseDays, ITEMS_PER_COURSE);
+        }
+        return handler;
+    }
+
+    private static String[] randomNames(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i ++) {
+            names[i] = NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + (1 + random.nextInt(NAME_NUMBERS));
+        }
+        return names;
+    }
+
+    // Names typed in or parsed from a file are separate strings, even when they're equal
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static String copy(String name) {
+        return new String(name);
+    }
+
+    private static void measure(String layout, Supplier<Object> build) {
+        long before = usedHeap();
+        Object retained = build.get();
+        long after = usedHeap();
+        int items = COURSES * ITEMS_PER_COURSE;
+        System.out.printf("%-26s %6.1f bytes per item (%,d items)%n", layout, (after - before) / (double) items, items);
+
+        // Keep the data reachable until it's measured
+        if (retained.hashCode() == 42) {
+            System.out.print("");
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i ++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full {@code show}, {@code list-course}, and {@code agenda} commands, from parsing the input to formatting every line,
+ * with the output thrown away. {@code show} reuses the text it printed last time unless the render cache is turned off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    /**
+     * The number of courses.
+     */
+    @Param({ "10", "100" })
+    public int courses;
+
+    /**
+     * The number of items in each course.
+     */
+    @Param({ "10", "1000" })
+    public int itemsPerCourse;
+
+    private ScheduleHandler handler;
+    private ScheduleHandler uncachedHandler;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        handler = newHandler();
+        uncachedHandler = newHandler();
+        uncachedHandler.getRenderCache().setCapacity(0);
+        session = BenchData.nullSession();
+    }
+
+    private ScheduleHandler newHandler() {
+        ScheduleHandler handler = BenchData.newHandler();
+        long[] days = BenchData.randomDays(courses * itemsPerCourse, 3);
+        for (int c = 0; c < courses; c ++) {
+            String name = "COURSE-" + c;
+            handler.addCourse(name);
+            ClassSchedule course = handler.getCourse(name).orElseThrow();
+            for (int i = 0; i < itemsPerCourse; i ++) {
+                course.addItem("Assignment " + i, days[c * itemsPerCourse + i]);
+            }
+        }
+        return handler;
+    }
+
+    @Benchmark
+    public CommandResult show() {
+        return handler.execute(session, "show");
+    }
+
+    // Formats every item on every run, as `show` did before the render cache
+    @Benchmark
+    public CommandResult showUncached() {
+        return uncachedHandler.execute(session, "show");
+    }
+
+    // One course changes before each run, so only its text is printed again
+    @Benchmark
+    public CommandResult showAfterChange() {
+        ClassSchedule course = handler.getCourse("COURSE-0").orElseThrow();
+        course.removeItem(course.addItem("Changed", 0));
+        return handler.execute(session, "show");
+    }
+
+    // Should depend on the page size, but not on the number of items
+    @Benchmark
+    public CommandResult showPage() {
+        return handler.execute(session, "show --offset 5 --limit 20");
+    }
+
+    @Benchmark
+    public CommandResult listCourse() {
+        return handler.execute(session, "list-course");
+    }
+
+    // Should depend on the number of courses, but not on the number of items in each
+    @Benchmark
+    public CommandResult agenda() {
+        return handler.execute(session, "agenda 10");
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.cjburkey.itcs3112.bench;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduledItem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures changing and querying a single course holding a varying number of items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleBenchmark {
+
+    // Number of precomputed operations to cycle through
+    private static final int OPS = 1 << 12;
+
+    /**
+     * The number of items in the course.
+     */
+    @Param({ "100", "10000", "100000" })
+    public int items;
+
+    private ClassSchedule course;
+    private long today;
+    private long[] addDays;
+    private int next;
+
+    @Setup
+    public void setup() {
+        course = new ClassSchedule("bench");
+        today = BenchData.TODAY.toEpochDay();
+        for (long day : BenchData.randomDays(items, 1)) {
+            course.addItem("Item", day);
+        }
+
+        addDays = BenchData.randomDays(OPS, 2);
+    }
+
+    // Adding then removing one item keeps the course the same size between calls
+    @Benchmark
+    public boolean addThenRemove() {
+        int id = course.addItem("Added", addDays[next ++ & (OPS - 1)]);
+        return course.removeItem(id);
+    }
+
+    @Benchmark
+    public int pastDueView() {
+        return course.getPastDue(today).size();
+    }
+
+    @Benchmark
+    public int futureDueView() {
+        return course.getFutureDue(today).size();
+    }
+
+    // Walks one version of the items the way `show` does
+    @Benchmark
+    public void iterateDue(Blackhole blackhole) {
+        List<ScheduledItem> items = course.getItems();
+        int pastDue = course.countPastDue(today);
+        for (int i = pastDue; i < items.size(); i ++) {
+            blackhole.consume(items.get(i));
+        }
+        for (int i = pastDue - 1; i >= 0; i --) {
+            blackhole.consume(items.get(i));
+        }
+    }
+
+}
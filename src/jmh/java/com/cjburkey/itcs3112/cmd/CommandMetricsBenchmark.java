@@ -0,0 +1,63 @@
+package com.cjburkey.itcs3112.cmd;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what recording a command's metrics adds to each run, compared with {@code CommandBenchmark.dispatch}.
+ * This lives in the command package so it can call the recording methods the handler uses directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandMetricsBenchmark {
+
+    // Shared by every thread, as one command's metrics are
+    private CommandMetrics metrics;
+
+    @Setup
+    public void setup() {
+        metrics = new CommandMetrics("bench");
+
+        // A fast run switches the metrics to only timing some runs
+        metrics.record(CommandResult.SUCCESS, 1, 100);
+    }
+
+    // What a handler adds to each run of a quick command
+    @Benchmark
+    public void recordQuickCommand() {
+        int weight = metrics.sampleWeight();
+        long start = weight == 0 ? 0 : System.nanoTime();
+        metrics.record(CommandResult.SUCCESS, weight, weight == 0 ? 0 : System.nanoTime() - start);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordQuickCommandContended() {
+        recordQuickCommand();
+    }
+
+    // What every run would cost if each one were timed
+    @Benchmark
+    public void recordTimedRun() {
+        long start = System.nanoTime();
+        metrics.record(CommandResult.SUCCESS, 1, System.nanoTime() - start);
+    }
+
+    // Only reading the clock twice, which timing a run can't avoid
+    @Benchmark
+    public long readClockTwice() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public CommandMetrics.Snapshot snapshot() {
+        return metrics.snapshot();
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.cjburkey.itcs3112;
+
+/**
+ * An item found by a cross-course query, such as an agenda, along with the course it belongs to.
+ *
+ * @param course The course the item belongs to.
+ * @param item The item.
+ */
+public record AgendaItem(ClassSchedule course, ScheduledItem item) {
+}
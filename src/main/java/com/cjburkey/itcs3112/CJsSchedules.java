@@ -1,5 +1,19 @@
 package com.cjburkey.itcs3112;
 
+import com.cjburkey.itcs3112.cmd.CommandLine;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import com.cjburkey.itcs3112.cmd.CommandStatsBean;
+import com.cjburkey.itcs3112.persist.ScheduleStore;
+import com.cjburkey.itcs3112.remind.PrintReminderSink;
+import com.cjburkey.itcs3112.remind.ReminderService;
+import com.cjburkey.itcs3112.server.CommandServer;
+
+import javax.management.JMException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -9,11 +23,26 @@ public class CJsSchedules {
 
     private static final String PROMPT = ">> ";
 
+    // Size of the input and output buffers used in batch mode
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+
+    // The most commands or batches of output waiting between pipeline stages, and the most taken at once
+    private static final int PIPELINE_CAPACITY = 1 << 12;
+    private static final int PIPELINE_BATCH_SIZE = 256;
+
     /**
      * The main schedule handler for the application.
      */
     public final ScheduleHandler scheduleHandler = new ScheduleHandler();
 
+    /**
+     * The session for the user at this terminal.
+     */
+    public final Session session = new Session();
+
+    // Where changes are saved, or `null` if they aren't
+    private ScheduleStore store;
+
     /**
      * Hijack the main thread and start the application.
      */
@@ -36,14 +65,23 @@ public class CJsSchedules {
                 }
 
                 // Try to execute the provided input
-                if (!scheduleHandler.execute(input)) {
+                if (!scheduleHandler.execute(session, input).isHandled()) {
                     System.err.println("Unknown command");
                 }
 
+                // Make sure the change is saved before prompting for the next one
+                if (store != null) {
+                    try {
+                        store.sync();
+                    } catch (IOException e) {
+                        System.err.printf("Failed to save changes (%s)\n", e.getMessage());
+                    }
+                }
+
                 // Print the prompt
-                if (scheduleHandler.getCurrentSchedule().isPresent()) {
+                if (session.getCurrentSchedule().isPresent()) {
                     // Include the currently selected course if one is selected
-                    System.out.printf("%s %s", scheduleHandler.getCurrentSchedule().get().name, PROMPT);
+                    System.out.printf("%s %s", session.getCurrentSchedule().get().name, PROMPT);
                 } else {
                     System.out.print(PROMPT);
                 }
@@ -51,12 +89,305 @@ public class CJsSchedules {
         }
     }
 
+    /**
+     * Execute every line from the provided reader without prompting, then print a summary.
+     * Blank lines and lines starting with {@code #} are skipped, and {@code exit} stops early.
+     * Output is buffered and only flushed when the buffers fill or the batch ends.
+     *
+     * @param reader The source of commands, one per line.
+     * @return The number of commands that didn't succeed.
+     * @throws IOException If reading from the reader fails.
+     */
+    public int runBatch(BufferedReader reader) throws IOException {
+        return runBatch(reader, bufferedStream(FileDescriptor.out), bufferedStream(FileDescriptor.err));
+    }
+
+    // Run a batch, printing its output and errors to the provided streams rather than the standard ones
+    int runBatch(BufferedReader reader, PrintStream out, PrintStream err) throws IOException {
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        System.setOut(out);
+        System.setErr(err);
+
+        // Tally the results by kind
+        int[] counts = new int[CommandResult.values().length];
+        int lineNumber = 0;
+        try {
+            String input;
+            while ((input = reader.readLine()) != null) {
+                lineNumber ++;
+                input = input.trim();
+                if (input.isEmpty() || input.startsWith("#")) {
+                    continue;
+                }
+                if (input.equals("exit")) {
+                    break;
+                }
+
+                CommandResult result = scheduleHandler.execute(session, input);
+                counts[result.ordinal()] ++;
+                if (!result.isHandled()) {
+                    err.printf("Line %s: Unknown command\n", lineNumber);
+                }
+            }
+        } finally {
+            // Flush errors first so the summary is the last thing printed
+            err.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+
+        return printSummary(out, counts);
+    }
+
+    /**
+     * Execute every line from the provided reader like {@link #runBatch(BufferedReader)}, but split into three stages
+     * running at once: one thread reads and splits lines, this thread executes them, and another thread prints their
+     * output. The stages pass work along in batches through {@link RingBuffer}s, so under a steady stream of commands
+     * this thread never waits for input to be read or output to be written, only for a buffer to fill or empty.
+     * Commands are executed in order by this thread alone, and their output is printed in the same order.
+     *
+     * @param reader The source of commands, one per line.
+     * @return The number of commands that didn't succeed.
+     * @throws IOException If reading from the reader fails.
+     */
+    public int runPipelined(BufferedReader reader) throws IOException {
+        return runPipelined(reader, bufferedStream(FileDescriptor.out), bufferedStream(FileDescriptor.err));
+    }
+
+    // Run a pipelined batch, printing its output and errors to the provided streams rather than the standard ones
+    int runPipelined(BufferedReader reader, PrintStream out, PrintStream err) throws IOException {
+        RingBuffer<Input> inputs = new RingBuffer<>(PIPELINE_CAPACITY);
+        RingBuffer<Output> outputs = new RingBuffer<>(PIPELINE_CAPACITY);
+        InputStage reading = new InputStage(reader, inputs);
+        Thread readThread = new Thread(reading, "pipeline-input");
+        Thread writeThread = new Thread(() -> printOutputs(outputs, out, err), "pipeline-output");
+        readThread.setDaemon(true);
+        writeThread.setDaemon(true);
+        readThread.start();
+        writeThread.start();
+
+        // Commands write into memory, and each batch's output is handed to the output stage at once
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        PrintStream commandOut = new PrintStream(outBytes, false);
+        PrintStream commandErr = new PrintStream(errBytes, false);
+        Session pipelineSession = new Session(commandOut, commandErr);
+
+        // Tally the results by kind
+        int[] counts = new int[CommandResult.values().length];
+        Input[] batch = new Input[PIPELINE_BATCH_SIZE];
+        try {
+            int count;
+            while ((count = inputs.takeAll(batch)) >= 0) {
+                for (int i = 0; i < count; i ++) {
+                    Input input = batch[i];
+                    batch[i] = null;
+                    CommandResult result = scheduleHandler.execute(pipelineSession, input.text, input.line);
+                    counts[result.ordinal()] ++;
+                    if (!result.isHandled()) {
+                        commandErr.printf("Line %s: Unknown command\n", input.lineNumber);
+                    }
+                }
+                commandOut.flush();
+                commandErr.flush();
+                outputs.put(new Output(outBytes.toByteArray(), errBytes.toByteArray()));
+                outBytes.reset();
+                errBytes.reset();
+            }
+        } finally {
+            // Stop reading if a command failed unexpectedly, and let the output stage print everything handed to it
+            inputs.close();
+            outputs.close();
+            try {
+                writeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (reading.failure != null) {
+            throw reading.failure;
+        }
+
+        return printSummary(out, counts);
+    }
+
+    // A stream writing to the provided descriptor, only flushed when its buffer fills or it's flushed by hand
+    private static PrintStream bufferedStream(FileDescriptor descriptor) {
+        return new PrintStream(new BufferedOutputStream(new FileOutputStream(descriptor), BATCH_BUFFER_SIZE), false);
+    }
+
+    // Print the tally of a batch's results by kind, returning the number of commands that didn't succeed
+    private static int printSummary(PrintStream out, int[] counts) {
+        int succeeded = counts[CommandResult.SUCCESS.ordinal()];
+        int errors = counts[CommandResult.FAILURE.ordinal()];
+        int usageErrors = counts[CommandResult.USAGE_ERROR.ordinal()];
+        int unknown = counts[CommandResult.UNKNOWN_COMMAND.ordinal()];
+        int failed = errors + usageErrors + unknown;
+        out.printf("Batch complete: %s commands, %s succeeded, %s failed (%s errors, %s usage errors, %s unknown)\n",
+                succeeded + failed, succeeded, failed, errors, usageErrors, unknown);
+        out.flush();
+        return failed;
+    }
+
+    // The output stage: print each batch's output in order, flushing whenever it has caught up
+    private static void printOutputs(RingBuffer<Output> outputs, PrintStream out, PrintStream err) {
+        Output[] batch = new Output[PIPELINE_BATCH_SIZE];
+        int count;
+        while ((count = outputs.takeAll(batch)) >= 0) {
+            for (int i = 0; i < count; i ++) {
+                out.write(batch[i].out, 0, batch[i].out.length);
+                err.write(batch[i].err, 0, batch[i].err.length);
+                batch[i] = null;
+            }
+            // Flush errors first so the summary is the last thing printed
+            err.flush();
+            out.flush();
+        }
+    }
+
+    // A line of input to execute, already split unless it couldn't be, in which case executing it reports why
+    private record Input(int lineNumber, String text, CommandLine line) {
+    }
+
+    // The output of a batch of commands
+    private record Output(byte[] out, byte[] err) {
+    }
+
+    // The input stage: read, trim and split lines, handing them to the execution stage in batches
+    private static final class InputStage implements Runnable {
+
+        private final BufferedReader reader;
+        private final RingBuffer<Input> inputs;
+
+        // Set if reading failed, before the buffer is closed
+        private volatile IOException failure;
+
+        private InputStage(BufferedReader reader, RingBuffer<Input> inputs) {
+            this.reader = reader;
+            this.inputs = inputs;
+        }
+
+        @Override
+        public void run() {
+            Input[] batch = new Input[PIPELINE_BATCH_SIZE];
+            int count = 0;
+            int lineNumber = 0;
+            try {
+                String input;
+                while ((input = reader.readLine()) != null) {
+                    lineNumber ++;
+                    input = input.trim();
+                    if (input.isEmpty() || input.startsWith("#")) {
+                        continue;
+                    }
+                    if (input.equals("exit")) {
+                        break;
+                    }
+
+                    CommandLine line;
+                    try {
+                        line = CommandLine.parse(input);
+                    } catch (ParseException e) {
+                        line = null;
+                    }
+                    batch[count ++] = new Input(lineNumber, input, line);
+
+                    // Hand over a full batch, or whatever was read once no more input is ready yet
+                    if (count == batch.length || !reader.ready()) {
+                        if (!inputs.putAll(batch, count)) {
+                            return;
+                        }
+                        Arrays.fill(batch, 0, count, null);
+                        count = 0;
+                    }
+                }
+                inputs.putAll(batch, count);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                inputs.close();
+            }
+        }
+
+    }
+
     // -- STATIC -- //
 
-    public static void main(String[] args) {
-        // Initialize & start the application
+    public static void main(String[] args) throws IOException {
+        // Read the options
+        Path dataDirectory = null;
+        Integer serverPort = null;
+        boolean remind = false;
+        boolean compact = false;
+        boolean pipeline = false;
+        String script = null;
+        for (int i = 0; i < args.length; i ++) {
+            if (args[i].equals("--data") && i + 1 < args.length) {
+                dataDirectory = Path.of(args[++ i]);
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                serverPort = Integer.parseInt(args[++ i]);
+            } else if (args[i].equals("--remind")) {
+                remind = true;
+            } else if (args[i].equals("--compact")) {
+                compact = true;
+            } else if (args[i].equals("--pipeline")) {
+                pipeline = true;
+            } else {
+                script = args[i];
+            }
+        }
+
+        // Initialize the application, loading saved courses if a data directory was provided
         CJsSchedules system = new CJsSchedules();
-        system.start();
+        int failures = 0;
+
+        // Let the command stats be watched through JMX
+        try {
+            CommandStatsBean.register(system.scheduleHandler);
+        } catch (JMException e) {
+            System.err.printf("Failed to register command stats with JMX (%s)\n", e.getMessage());
+        }
+
+        try (ScheduleStore store = dataDirectory == null ? null : ScheduleStore.open(dataDirectory, system.scheduleHandler);
+             ReminderService reminders = remind ? ReminderService.open(system.scheduleHandler) : null) {
+            system.store = store;
+
+            // Compact whatever the journal loaded, then keep courses compact from here on
+            if (compact) {
+                system.scheduleHandler.setCompactStorage(true);
+            }
+
+            // Print reminders as items come due
+            if (reminders != null) {
+                reminders.addSink(new PrintReminderSink(System.out));
+                reminders.start();
+            }
+
+            if (serverPort != null) {
+                // Serve commands over a local socket until killed
+                try (CommandServer server = CommandServer.start(system.scheduleHandler, serverPort, store)) {
+                    System.out.printf("Listening on port %s\n", server.getPort());
+                    server.awaitClose();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (script == null && System.console() != null) {
+                // Interactive
+                system.start();
+            } else {
+                // Batch mode reads from the provided file, or from stdin when given `-` or when input is piped in
+                Reader source = script == null || script.equals("-")
+                        ? new InputStreamReader(System.in)
+                        : new InputStreamReader(Files.newInputStream(Path.of(script)));
+                try (BufferedReader reader = new BufferedReader(source, BATCH_BUFFER_SIZE)) {
+                    failures = pipeline ? system.runPipelined(reader) : system.runBatch(reader);
+                }
+            }
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
     }
 
 }
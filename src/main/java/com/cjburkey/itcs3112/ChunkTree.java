@@ -0,0 +1,449 @@
+package com.cjburkey.itcs3112;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An immutable list that's changed by creating a new list, which shares every part of the old one the change didn't
+ * touch.
+ *
+ * <p>Elements are stored in chunks of up to {@value #MAX_LEAF}, which are the leaves of a B-tree whose branches
+ * record how many elements each child holds. Finding, inserting, replacing or removing the element at a position
+ * only visits and copies the {@code O(log n)} nodes on the path to it, so keeping every old version of a list costs
+ * little more than keeping the newest one.</p>
+ *
+ * @param <T> The type of element.
+ */
+final class ChunkTree<T> {
+
+    private static final int MAX_LEAF = 64;
+    private static final int MAX_BRANCH = 32;
+
+    // Nodes this much less than full are merged into a neighbour when they fit
+    private static final int MIN_LEAF = MAX_LEAF / 4;
+    private static final int MIN_BRANCH = MAX_BRANCH / 4;
+
+    private static final ChunkTree<?> EMPTY = new ChunkTree<>(new Leaf(new Object[0]));
+
+    private final Node root;
+
+    // The leaf found by the last lookup, so reading neighbouring positions doesn't descend the tree each time. Several
+    // threads may replace it at once, which is harmless since each one is complete once it's visible.
+    private LeafHit lastLeaf;
+
+    private ChunkTree(Node root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> ChunkTree<T> empty() {
+        return (ChunkTree<T>) EMPTY;
+    }
+
+    /**
+     * Create a list holding the first {@code count} elements of an array, which isn't kept.
+     *
+     * @param elements The elements, in order.
+     * @param count The number of elements to use.
+     * @param <T> The type of element.
+     * @return The list.
+     */
+    static <T> ChunkTree<T> of(Object[] elements, int count) {
+        if (count == 0) {
+            return empty();
+        }
+
+        // Spread the elements evenly over as few leaves as will hold them, then group those into branches
+        int leafCount = (count + MAX_LEAF - 1) / MAX_LEAF;
+        Node[] level = new Node[leafCount];
+        for (int i = 0; i < leafCount; i ++) {
+            int start = (int) ((long) count * i / leafCount);
+            int end = (int) ((long) count * (i + 1) / leafCount);
+            level[i] = new Leaf(Arrays.copyOfRange(elements, start, end));
+        }
+        while (level.length > 1) {
+            int branchCount = (level.length + MAX_BRANCH - 1) / MAX_BRANCH;
+            Node[] next = new Node[branchCount];
+            for (int i = 0; i < branchCount; i ++) {
+                int start = (int) ((long) level.length * i / branchCount);
+                int end = (int) ((long) level.length * (i + 1) / branchCount);
+                next[i] = Branch.of(Arrays.copyOfRange(level, start, end));
+            }
+            level = next;
+        }
+        return new ChunkTree<>(level[0]);
+    }
+
+    int size() {
+        return root.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        LeafHit hit = lastLeaf;
+        if (hit != null && index >= hit.start && index - hit.start < hit.elements.length) {
+            return (T) hit.elements[index - hit.start];
+        }
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        Node node = root;
+        int start = 0;
+        while (node instanceof Branch branch) {
+            int child = branch.childAt(index - start);
+            start += branch.startOf(child);
+            node = branch.children[child];
+        }
+        Object[] elements = ((Leaf) node).elements;
+        lastLeaf = new LeafHit(start, elements);
+        return (T) elements[index - start];
+    }
+
+    /**
+     * Create a list with an element inserted.
+     *
+     * @param index The position of the new element, from 0 to {@link #size()}.
+     * @param element The element.
+     * @return The new list.
+     */
+    ChunkTree<T> insert(int index, T element) {
+        if (index < 0 || index > root.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node[] nodes = root.insert(index, element);
+        return new ChunkTree<>(nodes.length == 1 ? nodes[0] : Branch.of(nodes));
+    }
+
+    /**
+     * Create a list with the element at a position replaced.
+     *
+     * @param index The position to replace.
+     * @param element The new element.
+     * @return The new list.
+     */
+    ChunkTree<T> set(int index, T element) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new ChunkTree<>(root.set(index, element));
+    }
+
+    /**
+     * Create a list with the element at a position removed.
+     *
+     * @param index The position to remove.
+     * @return The new list.
+     */
+    ChunkTree<T> remove(int index) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node node = root.remove(index);
+        if (node == null) {
+            return empty();
+        }
+
+        // Drop levels that only have one child
+        while (node instanceof Branch branch && branch.children.length == 1) {
+            node = branch.children[0];
+        }
+        return new ChunkTree<>(node);
+    }
+
+    /**
+     * Copy the elements into a new array.
+     *
+     * @return The elements, in order.
+     */
+    Object[] toArray() {
+        Object[] array = new Object[size()];
+        int[] offset = { 0 };
+        forEachChunk(chunk -> {
+            System.arraycopy(chunk, 0, array, offset[0], chunk.length);
+            offset[0] += chunk.length;
+        });
+        return array;
+    }
+
+    /**
+     * Pass each chunk of elements to the provided action, in order. Chunks that weren't touched by the changes between
+     * two versions of a list are the same array in both, so they can be compared by identity.
+     *
+     * @param action Receives each chunk, which must not be changed.
+     */
+    void forEachChunk(Consumer<Object[]> action) {
+        root.forEachChunk(action);
+    }
+
+    /**
+     * Pass every chunk that's only in one of two lists to the matching action. Parts of the lists that are shared are
+     * skipped without being visited, so comparing a list with one a few changes away from it only takes time in
+     * proportion to the changes.
+     *
+     * @param a The first list.
+     * @param b The second list.
+     * @param onlyA Receives each chunk of {@code a} that isn't in {@code b}, which must not be changed.
+     * @param onlyB Receives each chunk of {@code b} that isn't in {@code a}, which must not be changed.
+     */
+    static void diff(ChunkTree<?> a, ChunkTree<?> b, Consumer<Object[]> onlyA, Consumer<Object[]> onlyB) {
+        Set<Node> left = nodeSet();
+        Set<Node> right = nodeSet();
+        left.add(a.root);
+        right.add(b.root);
+
+        // Shared nodes are always at the same height, so compare one height at a time from the top
+        for (int height = Math.max(a.root.height(), b.root.height()); ; height --) {
+            left.removeIf(right::remove);
+            if (height == 0) {
+                break;
+            }
+            left = expand(left, height);
+            right = expand(right, height);
+        }
+        left.forEach(node -> onlyA.accept(((Leaf) node).elements));
+        right.forEach(node -> onlyB.accept(((Leaf) node).elements));
+    }
+
+    private static Set<Node> nodeSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    // Replace the nodes at a height with their children
+    private static Set<Node> expand(Set<Node> nodes, int height) {
+        Set<Node> next = nodeSet();
+        for (Node node : nodes) {
+            if (node.height() == height) {
+                next.addAll(Arrays.asList(((Branch) node).children));
+            } else {
+                next.add(node);
+            }
+        }
+        return next;
+    }
+
+    private record LeafHit(int start, Object[] elements) {
+    }
+
+    private abstract static sealed class Node permits Leaf, Branch {
+
+        abstract int size();
+
+        // The number of levels below this node, which is the same through every child
+        abstract int height();
+
+        // Returns one node, or two if this node had to split
+        abstract Node[] insert(int index, Object element);
+
+        abstract Node set(int index, Object element);
+
+        // Returns null if this node is now empty
+        abstract Node remove(int index);
+
+        abstract void forEachChunk(Consumer<Object[]> action);
+
+    }
+
+    private static final class Leaf extends Node {
+
+        final Object[] elements;
+
+        Leaf(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        int size() {
+            return elements.length;
+        }
+
+        @Override
+        int height() {
+            return 0;
+        }
+
+        @Override
+        Node[] insert(int index, Object element) {
+            Object[] next = new Object[elements.length + 1];
+            System.arraycopy(elements, 0, next, 0, index);
+            next[index] = element;
+            System.arraycopy(elements, index, next, index + 1, elements.length - index);
+            if (next.length <= MAX_LEAF) {
+                return new Node[] { new Leaf(next) };
+            }
+            int half = next.length / 2;
+            return new Node[] {
+                    new Leaf(Arrays.copyOfRange(next, 0, half)),
+                    new Leaf(Arrays.copyOfRange(next, half, next.length)),
+            };
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            Object[] next = elements.clone();
+            next[index] = element;
+            return new Leaf(next);
+        }
+
+        @Override
+        Node remove(int index) {
+            if (elements.length == 1) {
+                return null;
+            }
+            Object[] next = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, next, 0, index);
+            System.arraycopy(elements, index + 1, next, index, next.length - index);
+            return new Leaf(next);
+        }
+
+        @Override
+        void forEachChunk(Consumer<Object[]> action) {
+            action.accept(elements);
+        }
+
+    }
+
+    private static final class Branch extends Node {
+
+        final Node[] children;
+
+        // The number of elements in each child and every child before it
+        final int[] ends;
+
+        final int height;
+
+        private Branch(Node[] children, int[] ends) {
+            this.children = children;
+            this.ends = ends;
+            this.height = children[0].height() + 1;
+        }
+
+        static Branch of(Node[] children) {
+            int[] ends = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i ++) {
+                total += children[i].size();
+                ends[i] = total;
+            }
+            return new Branch(children, ends);
+        }
+
+        @Override
+        int size() {
+            return ends[ends.length - 1];
+        }
+
+        @Override
+        int height() {
+            return height;
+        }
+
+        int startOf(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+
+        // The child holding the element at an index
+        int childAt(int index) {
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > index) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        Node[] insert(int index, Object element) {
+            // Insert at the end of a child rather than the start of the next, so appending stays in the last child
+            int child = index == 0 ? 0 : childAt(index - 1);
+            Node[] replaced = children[child].insert(index - startOf(child), element);
+
+            Node[] next = new Node[children.length + replaced.length - 1];
+            System.arraycopy(children, 0, next, 0, child);
+            System.arraycopy(replaced, 0, next, child, replaced.length);
+            System.arraycopy(children, child + 1, next, child + replaced.length, children.length - child - 1);
+            if (next.length <= MAX_BRANCH) {
+                return new Node[] { of(next) };
+            }
+            int half = next.length / 2;
+            return new Node[] { of(Arrays.copyOfRange(next, 0, half)), of(Arrays.copyOfRange(next, half, next.length)) };
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            int child = childAt(index);
+            Node[] next = children.clone();
+            next[child] = children[child].set(index - startOf(child), element);
+            return new Branch(next, ends);
+        }
+
+        @Override
+        Node remove(int index) {
+            int child = childAt(index);
+            Node replaced = children[child].remove(index - startOf(child));
+            if (replaced == null) {
+                if (children.length == 1) {
+                    return null;
+                }
+                Node[] next = new Node[children.length - 1];
+                System.arraycopy(children, 0, next, 0, child);
+                System.arraycopy(children, child + 1, next, child, next.length - child);
+                return of(next);
+            }
+
+            // Merge a small child into a neighbour, so long runs of removals don't leave the tree full of tiny nodes
+            Node[] next = children.clone();
+            next[child] = replaced;
+            int neighbour = child > 0 ? child - 1 : child + 1;
+            if (neighbour < next.length) {
+                int first = Math.min(child, neighbour);
+                Node merged = merge(next[first], next[first + 1]);
+                if (merged != null) {
+                    Node[] fewer = new Node[next.length - 1];
+                    System.arraycopy(next, 0, fewer, 0, first);
+                    fewer[first] = merged;
+                    System.arraycopy(next, first + 2, fewer, first + 1, fewer.length - first - 1);
+                    return of(fewer);
+                }
+            }
+            return of(next);
+        }
+
+        // Combine two neighbouring nodes if either is small and both fit in one, or return null
+        private static Node merge(Node left, Node right) {
+            if (left instanceof Leaf a && right instanceof Leaf b) {
+                int total = a.elements.length + b.elements.length;
+                if ((a.elements.length < MIN_LEAF || b.elements.length < MIN_LEAF) && total <= MAX_LEAF) {
+                    Object[] elements = Arrays.copyOf(a.elements, total);
+                    System.arraycopy(b.elements, 0, elements, a.elements.length, b.elements.length);
+                    return new Leaf(elements);
+                }
+            } else if (left instanceof Branch a && right instanceof Branch b) {
+                int total = a.children.length + b.children.length;
+                if ((a.children.length < MIN_BRANCH || b.children.length < MIN_BRANCH) && total <= MAX_BRANCH) {
+                    Node[] children = Arrays.copyOf(a.children, total);
+                    System.arraycopy(b.children, 0, children, a.children.length, b.children.length);
+                    return of(children);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        void forEachChunk(Consumer<Object[]> action) {
+            for (Node child : children) {
+                child.forEachChunk(action);
+            }
+        }
+
+    }
+
+}
@@ -1,12 +1,27 @@
 package com.cjburkey.itcs3112;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongToIntFunction;
+import java.util.function.Supplier;
 
 /**
  * The schedule for a single course.
+ *
+ * <p>Each course has its own lock, so changes to different courses never wait on each other. Reads don't take the
+ * lock at all: every change replaces the course's items with a new {@link ItemList} version that shares everything
+ * the change didn't touch, so readers always see the items as they were at one moment, and lists returned by this
+ * class never change.</p>
+ *
+ * <p>A course may also have {@link RecurringItem recurring items}, each stored as a single rule. Their occurrences are
+ * merged with the ordinary items wherever the course's schedule is shown or counted, but are never stored as items.
+ * </p>
+ *
+ * <p>Once the course's handler {@link ScheduleHandler#refuseChanges refuses changes}, every method that would change
+ * the course throws an {@link java.io.UncheckedIOException} instead.</p>
  */
 public class ClassSchedule {
 
@@ -15,75 +30,863 @@ public class ClassSchedule {
      */
     public final String name;
 
-    private final ArrayList<ScheduledItem> scheduledItemList = new ArrayList<>();
+    // The current version of the items, sorted by due date with items sharing a due date in insertion order. The
+    // ordinary items are an `ItemList` once loaded, and otherwise still in a snapshot or compacted. If the course has
+    // recurring items, they're wrapped in a `RecurringItems` with them. Only replaced while holding the write lock.
+    private volatile ItemSource items;
+
+    // The same items, found by ID
+    private final ItemSlots itemSlots = new ItemSlots();
+
+    // The ID the next recurring item gets. Like the generations in `itemSlots`, it only goes up, so a removed
+    // recurring item's ID (and its occurrences' IDs) never comes back. Only changed while holding the write lock.
+    private int nextRecurringId;
+
+    // Set once this course is removed from its handler, after which it can't change
+    private volatile boolean removed;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Shared by every course in a handler and held while making any change, so the handler can pause all changes
+    private final Lock changeLock;
+
+    // Notified of every item and recurring item added or removed
+    private final ScheduleListener listener;
+
+    // The handler this course belongs to, which is given every new version of the items, or `null`
+    private final ScheduleHandler handler;
+
+    // How many items of one version were past-due on the last day counted. Changes keep it current, and counting a
+    // later day only searches the items after it.
+    private final AtomicReference<Watermark> watermark = new AtomicReference<>(new Watermark(null, Long.MIN_VALUE, 0));
 
     public ClassSchedule(String name) {
+        this(name, new ScheduleListener() {}, null, 0, new ReentrantReadWriteLock().readLock(), null);
+    }
+
+    ClassSchedule(String name, ScheduleListener listener, ItemSource unloaded, int nextRecurringId, Lock changeLock,
+                  ScheduleHandler handler) {
         this.name = name;
+        this.listener = listener;
+        this.items = unloaded != null && (unloaded.size() > 0 || unloaded instanceof RecurringItems)
+                ? unloaded
+                : ItemList.EMPTY;
+        this.changeLock = changeLock;
+        this.handler = handler;
+
+        RecurringItem[] rules = RecurringItems.rulesOf(items);
+        this.nextRecurringId = rules.length == 0
+                ? nextRecurringId
+                : Math.max(nextRecurringId, rules[rules.length - 1].id + 1);
+
+        // A course restored from an earlier version is already loaded, but its items still need finding by ID
+        if (RecurringItems.itemsOf(items) instanceof ItemList list) {
+            for (int i = 0; i < list.size(); i ++) {
+                itemSlots.restore(list.get(i));
+            }
+        }
     }
 
     /**
      * Adds an item with the provided name and due date to this course.
      *
      * @param name The name of the item.
-     * @param dueDate The due date of this item.
+     * @param dueDay The day this item is due, as the number of days since 1970-01-01.
+     * @return The new item's ID, or {@code -1} if this course has been removed.
      */
-    public void addItem(String name, Date dueDate) {
-        scheduledItemList.add(new ScheduledItem(name, dueDate));
+    public int addItem(String name, long dueDay) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            if (removed) {
+                return -1;
+            }
+
+            ScheduledItem item = itemSlots.add(name, dueDay);
+            insert(item);
+            return item.id;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
     }
 
     /**
-     * Remove the scheduled item at the provided index.
+     * Adds an item that keeps an ID it was given earlier, such as when changes are replayed from disk.
      *
-     * @param id The index of the item to remove from the schedule.
+     * @param id The item's ID.
+     * @param name The name of the item.
+     * @param dueDay The day this item is due, as the number of days since 1970-01-01.
+     * @return Whether the item was added. If {@code false}, this course has been removed or the ID is in use.
+     */
+    public boolean addItem(int id, String name, long dueDay) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            ScheduledItem item = new ScheduledItem(id, name, dueDay);
+            if (removed || !itemSlots.restore(item)) {
+                return false;
+            }
+
+            insert(item);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds many items at once, such as when importing them. The new items are sorted, then merged into this course's
+     * items in a single pass, instead of each being inserted on its own.
+     * Items due on the same day keep the order they were provided in.
+     *
+     * @param names The names of the items.
+     * @param dueDays The days the items are due, as the number of days since 1970-01-01.
+     * @param count The number of items to add from the start of the arrays.
+     * @return The number of items added, or {@code -1} if this course has been removed.
+     */
+    public int addItems(String[] names, long[] dueDays, int count) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            if (removed) {
+                return -1;
+            }
+
+            ScheduledItem[] added = new ScheduledItem[count];
+            for (int i = 0; i < count; i ++) {
+                added[i] = itemSlots.add(names[i], dueDays[i]);
+            }
+            List<ScheduledItem> addedItems = Arrays.asList(added);
+            publish(list().insertAll(added, count), addedItems, List.of());
+            addedItems.forEach(item -> listener.itemAdded(this, item));
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the scheduled item with the provided ID.
+     *
+     * @param id The ID of the item to remove from the schedule.
      * @return Whether the item was successfully removed.
      */
     public boolean removeItem(int id) {
-        if (id < 0 || id >= scheduledItemList.size()) {
-            return false;
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            ScheduledItem item = removed ? null : itemSlots.remove(id);
+            if (item == null) {
+                return false;
+            }
+
+            publish(list().remove(item), List.of(), List.of(item));
+            listener.itemRemoved(this, item);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
         }
+    }
 
-        return scheduledItemList.remove(id) != null;
+    /**
+     * Remove every scheduled item with one of the provided IDs in a single pass over this course.
+     * IDs without an item are skipped.
+     *
+     * @param ids The IDs of the items to remove.
+     * @return The number of items removed.
+     */
+    public int removeItems(int... ids) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            if (removed) {
+                return 0;
+            }
+
+            Set<ScheduledItem> removedItems = new LinkedHashSet<>();
+            for (int id : ids) {
+                ScheduledItem item = itemSlots.remove(id);
+                if (item != null) {
+                    removedItems.add(item);
+                }
+            }
+            if (removedItems.isEmpty()) {
+                return 0;
+            }
+
+            publish(list().removeAll(removedItems), List.of(), removedItems);
+            removedItems.forEach(item -> listener.itemRemoved(this, item));
+            return removedItems.size();
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
     }
 
     /**
-     * Get a reference to the item at the provided index.
+     * Adds an item that's due repeatedly, stored as a single rule.
      *
-     * @param id The index from which to retrieve the item.
-     * @return The item at the index, or {@code null} if out of bounds.
+     * @param name The name of every occurrence.
+     * @param startDay The day the first occurrence is due, as the number of days since 1970-01-01.
+     * @param interval The number of days between occurrences, at least 1.
+     * @param count The number of occurrences, from 1 through {@link RecurringItem#MAX_OCCURRENCES}.
+     * @return The new recurring item's ID, or {@code -1} if this course has been removed or has used every ID. IDs
+     * aren't reused, even once the recurring item that had one is removed.
      */
-    public ScheduledItem getItem(int id) {
-        if (id < 0 || id >= scheduledItemList.size()) {
-            return null;
+    public int addRecurring(String name, long startDay, int interval, int count) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            int id = nextRecurringId;
+            if (removed || id > RecurringItem.MAX_ID) {
+                return -1;
+            }
+
+            nextRecurringId ++;
+            putRecurring(new RecurringItem(id, name, startDay, interval, count, new int[0]), null);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
         }
-        return scheduledItemList.get(id);
     }
 
     /**
-     * Get an unmodifiable list of the items from this course.
-     * This list includes items due in the past and future.
+     * Adds a recurring item that keeps an ID it was given earlier, such as when changes are replayed from disk.
+     *
+     * @param rule The recurring item.
+     * @return Whether it was added. If {@code false}, this course has been removed or the ID is in use.
+     */
+    public boolean addRecurring(RecurringItem rule) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            if (removed || RecurringItems.indexOf(RecurringItems.rulesOf(items), rule.id) >= 0) {
+                return false;
+            }
+
+            nextRecurringId = Math.max(nextRecurringId, rule.id + 1);
+            putRecurring(rule, null);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a recurring item and all of its occurrences.
+     *
+     * @param id The recurring item's ID.
+     * @return Whether it was removed.
+     */
+    public boolean removeRecurring(int id) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            RecurringItem[] rules = RecurringItems.rulesOf(items);
+            int index = RecurringItems.indexOf(rules, id);
+            if (removed || index < 0) {
+                return false;
+            }
+
+            RecurringItem rule = rules[index];
+            RecurringItem[] next = new RecurringItem[rules.length - 1];
+            System.arraycopy(rules, 0, next, 0, index);
+            System.arraycopy(rules, index + 1, next, index, next.length - index);
+            publish(RecurringItems.of(RecurringItems.itemsOf(items), next), day -> -rule.countThrough(day));
+            listener.recurringRemoved(this, rule);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a single occurrence of a recurring item, leaving the rest.
+     *
+     * @param occurrenceId The occurrence's ID, as described by {@link RecurringItem#occurrenceId(int)}.
+     * @return Whether it was removed. If {@code false}, there's no such occurrence or it was already removed.
+     */
+    public boolean skipOccurrence(int occurrenceId) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            RecurringItem rule = removed ? null : occurrenceRule(occurrenceId);
+            if (rule == null) {
+                return false;
+            }
+
+            putRecurring(rule.skip(RecurringItem.occurrence(occurrenceId)), rule);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Replace a single occurrence of a recurring item with an ordinary item, which can then be changed like any other.
+     *
+     * @param occurrenceId The occurrence's ID, as described by {@link RecurringItem#occurrenceId(int)}.
+     * @param name The name of the new item.
+     * @param dueDay The day the new item is due, as the number of days since 1970-01-01.
+     * @return The new item's ID, or {@code -1} if there's no such occurrence or it was already removed.
+     */
+    public int replaceOccurrence(int occurrenceId, String name, long dueDay) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            RecurringItem rule = removed ? null : occurrenceRule(occurrenceId);
+            if (rule == null) {
+                return -1;
+            }
+
+            // Both changes are published as one version, so nothing sees the occurrence gone but not replaced
+            ScheduledItem item = itemSlots.add(name, dueDay);
+            RecurringItem next = rule.skip(RecurringItem.occurrence(occurrenceId));
+            RecurringItem[] rules = RecurringItems.rulesOf(items).clone();
+            rules[RecurringItems.indexOf(rules, rule.id)] = next;
+            publish(RecurringItems.of(list().insert(item), rules),
+                    day -> next.countThrough(day) - rule.countThrough(day) + (dueDay <= day ? 1 : 0));
+            listener.recurringRemoved(this, rule);
+            listener.recurringAdded(this, next);
+            listener.itemAdded(this, item);
+            return item.id;
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Get this course's recurring items as they are right now.
+     *
+     * @return The recurring items, sorted by ID.
+     */
+    public List<RecurringItem> getRecurring() {
+        return List.of(RecurringItems.rulesOf(items));
+    }
+
+    /**
+     * Get the ID the next recurring item added to this course will get. It's higher than the ID of every recurring
+     * item this course has ever had, including removed ones.
+     *
+     * @return The next recurring item ID.
+     */
+    public int getNextRecurringId() {
+        lock.readLock().lock();
+        try {
+            return nextRecurringId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a reference to the item with the provided ID.
+     *
+     * @param id The ID of the item to retrieve.
+     * @return The item, or {@code null} if there isn't one with that ID.
+     */
+    public ScheduledItem getItem(int id) {
+        return read(() -> itemSlots.get(id));
+    }
+
+    /**
+     * Get an unmodifiable list of the items from this course, sorted from the earliest to the latest due date.
+     * This list includes items due in the past and future, as they are now; later changes don't affect it.
+     * Occurrences of recurring items aren't included; see {@link #copyAllItems()}.
      *
      * @return The list of items in this course.
      */
     public List<ScheduledItem> getItems() {
-        return Collections.unmodifiableList(scheduledItemList);
+        return loaded().asList();
     }
 
     /**
-     * Get an unmodifiable list of past-due schedule items.
+     * Get an unmodifiable list of past-due schedule items, sorted from the earliest to the latest due date.
+     * Iterate the list backwards to visit the most recently due items first.
+     * Occurrences of recurring items aren't included.
      *
+     * @param today The current day, as the number of days since 1970-01-01.
      * @return The list of items that were due before now.
      */
-    public List<ScheduledItem> getPastDue() {
-        return getItems().stream().filter(ScheduledItem::isPastDue).toList();
+    public List<ScheduledItem> getPastDue(long today) {
+        ItemList list = loaded();
+        return list.asList().subList(0, countPastDue(list, today));
     }
 
     /**
-     * Get an unmodifiable list of schedule items that are due in the future.
+     * Get an unmodifiable list of schedule items that are due in the future, sorted from the earliest to the latest
+     * due date. Occurrences of recurring items aren't included.
      *
+     * @param today The current day, as the number of days since 1970-01-01.
      * @return The list of items that are due in the future.
      */
-    public List<ScheduledItem> getFutureDue() {
-        return getItems().stream().filter(i -> !i.isPastDue()).toList();
+    public List<ScheduledItem> getFutureDue(long today) {
+        ItemList list = loaded();
+        return list.asList().subList(countPastDue(list, today), list.size());
+    }
+
+    /**
+     * Count the items that were due before now, including occurrences of recurring items, without loading them.
+     * The count for the most recent day asked about is kept up to date as items are added and removed, so asking
+     * again on the same day takes constant time, and moving to a later day only searches the items after it.
+     *
+     * @param today The current day, as the number of days since 1970-01-01.
+     * @return The number of past-due items.
+     */
+    public int countPastDue(long today) {
+        return countPastDue(items, today);
+    }
+
+    // Count the past-due items in one version of this course's items, using the watermark if it's for that version
+    int countPastDue(ItemSource version, long today) {
+        Watermark mark = watermark.get();
+        boolean current = mark.items == version;
+        if (current && mark.day == today) {
+            return mark.pastDue;
+        }
+
+        // Items only become past-due as days go by, so a later day only has to search the items after the mark
+        int from = current && today > mark.day ? mark.pastDue : 0;
+        int count = version.indexAfter(today, from);
+
+        // Only move the mark if no change has replaced it since, and it's for the latest version
+        if (version == items) {
+            watermark.compareAndSet(mark, new Watermark(version, today, count));
+        }
+        return count;
+    }
+
+    /**
+     * Count the items that are due in the future, including occurrences of recurring items, without loading them.
+     *
+     * @param today The current day, as the number of days since 1970-01-01.
+     * @return The number of upcoming items.
+     */
+    public int countFutureDue(long today) {
+        ItemSource version = items;
+        return version.size() - countPastDue(version, today);
+    }
+
+    /**
+     * Get the number of items in this course, including occurrences of recurring items, without loading them.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Check whether this course's items have been loaded into memory as objects.
+     * Courses read from a snapshot keep their items in the snapshot until they're first needed, and compacted courses
+     * keep them compacted.
+     *
+     * @return Whether the items are in memory.
+     */
+    public boolean isLoaded() {
+        return RecurringItems.itemsOf(items) instanceof ItemList;
+    }
+
+    /**
+     * Check whether this course has been removed from its handler.
+     *
+     * @return Whether this course has been removed.
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * Get this course's ordinary items as they are right now, sorted by due date. The returned version never changes,
+     * so this takes constant time. Items that haven't been loaded yet stay where they are.
+     * Occurrences of recurring items aren't included; see {@link #getRecurring()} for their rules.
+     *
+     * @return The items.
+     */
+    public ItemSource copyItems() {
+        return RecurringItems.itemsOf(items);
+    }
+
+    /**
+     * Get this course's items as they are right now, merged with the occurrences of its recurring items and sorted by
+     * due date. Like {@link #copyItems()}, this takes constant time; occurrences are only worked out as they're read.
+     * Each occurrence has the ID described by {@link RecurringItem#occurrenceId(int)}.
+     *
+     * @return The items and occurrences.
+     */
+    public ItemSource copyAllItems() {
+        return items;
+    }
+
+    /**
+     * Run the provided reader while no other thread can change this course.
+     * Any number of readers may run at once. Reading a single version of the items (such as from
+     * {@link #getItems()}) doesn't need this.
+     *
+     * @param reader The code reading from this course.
+     * @param <T> The type of value the reader produces.
+     * @return The reader's result.
+     */
+    public <T> T read(Supplier<T> reader) {
+        while (true) {
+            load();
+            lock.readLock().lock();
+            try {
+                // The items may have been compacted again before the lock was taken
+                if (isLoaded()) {
+                    return reader.get();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Run the provided reader against the current version of this course's ordinary items. Unlike
+     * {@link #read(Supplier)}, items still in a snapshot are read from it directly instead of being loaded first, and
+     * other threads can keep changing the course meanwhile.
+     *
+     * @param reader The code reading the items.
+     * @param <T> The type of value the reader produces.
+     * @return The reader's result.
+     */
+    public <T> T readItems(Function<ItemSource, T> reader) {
+        return reader.apply(copyItems());
+    }
+
+    /**
+     * Replace this course's items and recurring items with an earlier version of them, notifying the listener of each
+     * one that's added or removed as a result. Only called by the handler, while changes are paused.
+     *
+     * @param target The earlier version.
+     */
+    void restoreItems(ItemSource target) {
+        changeLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            load();
+            if (removed || items == target) {
+                return;
+            }
+            ItemList current = list();
+            ItemSource targetItems = RecurringItems.itemsOf(target);
+
+            // Only look at the items that aren't in a chunk both versions share
+            List<ScheduledItem> gone = new ArrayList<>();
+            Map<Integer, ScheduledItem> back = new HashMap<>();
+            if (targetItems instanceof ItemList list) {
+                ItemList.diff(current, list, chunk -> {
+                    for (Object item : chunk) {
+                        gone.add((ScheduledItem) item);
+                    }
+                }, chunk -> {
+                    for (Object item : chunk) {
+                        back.put(((ScheduledItem) item).id, (ScheduledItem) item);
+                    }
+                });
+            } else {
+                gone.addAll(current.asList());
+                for (int i = 0; i < targetItems.size(); i ++) {
+                    back.put(targetItems.id(i), targetItems.get(i));
+                }
+            }
+
+            // Items in both versions (such as ones that only moved to another chunk) stay. They may be different
+            // objects if the course was compacted in between, so the slots take the target's object.
+            List<ScheduledItem> removedItems = new ArrayList<>();
+            List<ScheduledItem> reloaded = new ArrayList<>();
+            for (ScheduledItem item : gone) {
+                ScheduledItem same = back.get(item.id);
+                if (same != null && (same == item || same.dueDay == item.dueDay && same.name.equals(item.name))) {
+                    back.remove(item.id);
+                    if (same != item) {
+                        reloaded.add(same);
+                    }
+                } else {
+                    removedItems.add(item);
+                }
+            }
+            List<ScheduledItem> addedItems = new ArrayList<>(back.values());
+            removedItems.forEach(item -> itemSlots.remove(item.id));
+            reloaded.forEach(item -> itemSlots.remove(item.id));
+            reloaded.forEach(itemSlots::restore);
+            addedItems.forEach(itemSlots::restore);
+
+            // The list must hold the same item objects as the slots
+            ItemList next;
+            if (targetItems instanceof ItemList list) {
+                next = list;
+            } else {
+                ScheduledItem[] array = new ScheduledItem[targetItems.size()];
+                for (int i = 0; i < array.length; i ++) {
+                    array[i] = itemSlots.get(targetItems.id(i));
+                }
+                next = ItemList.of(ItemSource.of(array));
+            }
+
+            // Recurring items never change, so any not in both versions were added, removed or replaced
+            RecurringItem[] rules = RecurringItems.rulesOf(items);
+            RecurringItem[] targetRules = RecurringItems.rulesOf(target);
+            Set<RecurringItem> removedRules = Collections.newSetFromMap(new IdentityHashMap<>());
+            Collections.addAll(removedRules, rules);
+            List<RecurringItem> addedRules = new ArrayList<>();
+            for (RecurringItem rule : targetRules) {
+                if (!removedRules.remove(rule)) {
+                    addedRules.add(rule);
+                }
+            }
+
+            publish(RecurringItems.of(next, targetRules), day -> {
+                int change = countDueBy(addedItems, day) - countDueBy(removedItems, day);
+                for (RecurringItem rule : addedRules) {
+                    change += rule.countThrough(day);
+                }
+                for (RecurringItem rule : removedRules) {
+                    change -= rule.countThrough(day);
+                }
+                return change;
+            });
+
+            // Removals come first, so a replaced recurring item is removed before its replacement is added
+            removedItems.forEach(item -> listener.itemRemoved(this, item));
+            removedRules.forEach(rule -> listener.recurringRemoved(this, rule));
+            addedItems.forEach(item -> listener.itemAdded(this, item));
+            addedRules.forEach(rule -> listener.recurringAdded(this, rule));
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    // Called by the handler while it holds this course's write lock
+    void markRemoved() {
+        removed = true;
+    }
+
+    // Lock used by the handler to make adding or removing this course atomic with its event
+    Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    /**
+     * Store this course's items compactly, as columns of IDs, due days and dictionary-encoded names instead of an
+     * object per item, until the items are next changed or looked up by ID. Reading the items (such as with
+     * {@link #copyItems()} or {@link #countPastDue(long)}) keeps them compact; item objects are only created for the
+     * items asked for. Lists already returned by {@link #getItems()} keep their items in memory.
+     *
+     * @return The number of items compacted, or 0 if the items weren't loaded.
+     */
+    public int compact() {
+        if (!isLoaded()) {
+            return 0;
+        }
+
+        changeLock.lock();
+        lock.writeLock().lock();
+        return compactLocked();
+    }
+
+    /**
+     * Compact this course's items like {@link #compact()}, but only if no other thread is changing or reading it
+     * under its lock right now. Busy courses are skipped instead of waited for.
+     *
+     * @return The number of items compacted, or 0 if the items weren't loaded or the course was busy.
+     */
+    int compactIfIdle() {
+        if (!isLoaded() || !changeLock.tryLock()) {
+            return 0;
+        }
+        if (!lock.writeLock().tryLock()) {
+            changeLock.unlock();
+            return 0;
+        }
+        return compactLocked();
+    }
+
+    // Must hold the change lock and the write lock, which are both released before returning
+    private int compactLocked() {
+        try {
+            ItemSource source = items;
+            if (removed || !(RecurringItems.itemsOf(source) instanceof ItemList list)) {
+                return 0;
+            }
+            CompactItems compact = CompactItems.of(list, handler != null ? handler.itemNames : new NameTable());
+            ItemSource next = RecurringItems.of(compact, RecurringItems.rulesOf(source));
+            itemSlots.clear();
+            items = next;
+
+            // The compacted items are the same, so the mark still holds
+            Watermark mark = watermark.get();
+            if (mark.items == source) {
+                watermark.compareAndSet(mark, new Watermark(next, mark.day, mark.pastDue));
+            }
+            if (handler != null) {
+                handler.republish(this, next);
+            }
+            return compact.size();
+        } finally {
+            lock.writeLock().unlock();
+            changeLock.unlock();
+        }
+    }
+
+    // Copy any items still in a snapshot into memory, then return the current version
+    private ItemList loaded() {
+        while (true) {
+            // Another thread may compact the items again right after they're loaded
+            if (RecurringItems.itemsOf(items) instanceof ItemList list) {
+                return list;
+            }
+            load();
+        }
+    }
+
+    // Copy any items still in a snapshot or compacted into memory. Changes call this while holding the write lock, so
+    // the items can't be compacted again before they're changed.
+    private void load() {
+        if (isLoaded()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            ItemSource source = items;
+            if (isLoaded()) {
+                return;
+            }
+            ItemList list = ItemList.of(RecurringItems.itemsOf(source));
+            for (int i = 0; i < list.size(); i ++) {
+                itemSlots.restore(list.get(i));
+            }
+            ItemSource next = RecurringItems.of(list, RecurringItems.rulesOf(source));
+            items = next;
+
+            // The loaded items are the same, so the mark still holds
+            Watermark mark = watermark.get();
+            if (mark.items == source) {
+                watermark.compareAndSet(mark, new Watermark(next, mark.day, mark.pastDue));
+            }
+            if (handler != null && !removed) {
+                handler.republish(this, next);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must hold the write lock; adds the item to the ordered list and notifies the listener
+    private void insert(ScheduledItem item) {
+        publish(list().insert(item), List.of(item), List.of());
+        listener.itemAdded(this, item);
+    }
+
+    // Must hold the write lock; adds or replaces a recurring item and notifies the listener
+    private void putRecurring(RecurringItem rule, RecurringItem previous) {
+        RecurringItem[] rules = RecurringItems.rulesOf(items);
+        RecurringItem[] next;
+        if (previous != null) {
+            next = rules.clone();
+            next[RecurringItems.indexOf(rules, rule.id)] = rule;
+        } else {
+            int index = -RecurringItems.indexOf(rules, rule.id) - 1;
+            next = new RecurringItem[rules.length + 1];
+            System.arraycopy(rules, 0, next, 0, index);
+            next[index] = rule;
+            System.arraycopy(rules, index, next, index + 1, rules.length - index);
+        }
+        publish(RecurringItems.of(RecurringItems.itemsOf(items), next),
+                day -> rule.countThrough(day) - (previous != null ? previous.countThrough(day) : 0));
+        if (previous != null) {
+            listener.recurringRemoved(this, previous);
+        }
+        listener.recurringAdded(this, rule);
+    }
+
+    // The recurring item an occurrence belongs to, or null if the occurrence doesn't exist or is skipped
+    private RecurringItem occurrenceRule(int occurrenceId) {
+        if (!RecurringItem.isOccurrence(occurrenceId)) {
+            return null;
+        }
+        RecurringItem[] rules = RecurringItems.rulesOf(items);
+        int index = RecurringItems.indexOf(rules, RecurringItem.ruleId(occurrenceId));
+        int occurrence = RecurringItem.occurrence(occurrenceId);
+        if (index < 0 || occurrence >= rules[index].count || rules[index].isSkipped(occurrence)) {
+            return null;
+        }
+        return rules[index];
+    }
+
+    // Called by every change while holding both locks, before changing anything
+    private void checkAcceptingChanges() {
+        if (handler != null) {
+            handler.checkAcceptingChanges();
+        }
+    }
+
+    // The loaded ordinary items; must hold the write lock and have loaded them
+    private ItemList list() {
+        return (ItemList) RecurringItems.itemsOf(items);
+    }
+
+    // Must hold the write lock; makes the next ordinary items current alongside the same recurring items
+    private void publish(ItemList next, Collection<ScheduledItem> added, Collection<ScheduledItem> removedItems) {
+        publish(RecurringItems.of(next, RecurringItems.rulesOf(items)),
+                day -> countDueBy(added, day) - countDueBy(removedItems, day));
+    }
+
+    private static int countDueBy(Collection<ScheduledItem> items, long day) {
+        int count = 0;
+        for (ScheduledItem item : items) {
+            if (item.dueDay <= day) {
+                count ++;
+            }
+        }
+        return count;
+    }
+
+    // Must hold the write lock; makes the next version of the items current, keeping the watermark's count current
+    // and passing the version to the handler. The change gives how many more items are due by a day than before.
+    private void publish(ItemSource next, LongToIntFunction pastDueChange) {
+        ItemSource previous = items;
+        items = next;
+        Watermark mark = watermark.get();
+        if (mark.items == previous) {
+            watermark.set(new Watermark(next, mark.day, mark.pastDue + pastDueChange.applyAsInt(mark.day)));
+        }
+        if (handler != null) {
+            handler.publish(this, next);
+        }
+    }
+
+    // The number of items in one version that are due on or before a day
+    private record Watermark(ItemSource items, long day, int pastDue) {
     }
 
 }
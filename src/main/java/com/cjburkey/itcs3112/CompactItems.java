@@ -0,0 +1,62 @@
+package com.cjburkey.itcs3112;
+
+/**
+ * A course's items stored as columns: their IDs, due days and name numbers each in one primitive array, with names
+ * looked up in a shared {@link NameTable}. This costs 16 bytes per item, where a loaded item costs an object, a
+ * string and a reference to each. Item objects are only created as they're asked for.
+ */
+final class CompactItems implements ItemSource {
+
+    private final int[] ids;
+    private final long[] dueDays;
+    private final int[] nameCodes;
+    private final NameTable names;
+
+    private CompactItems(int[] ids, long[] dueDays, int[] nameCodes, NameTable names) {
+        this.ids = ids;
+        this.dueDays = dueDays;
+        this.nameCodes = nameCodes;
+        this.names = names;
+    }
+
+    /**
+     * Copy items into columns.
+     *
+     * @param source The items, sorted by due date.
+     * @param names The table to encode the names with.
+     * @return The compacted items.
+     */
+    static CompactItems of(ItemSource source, NameTable names) {
+        int size = source.size();
+        int[] ids = new int[size];
+        long[] dueDays = new long[size];
+        int[] nameCodes = new int[size];
+        for (int i = 0; i < size; i ++) {
+            ids[i] = source.id(i);
+            dueDays[i] = source.dueDay(i);
+            nameCodes[i] = names.code(source.name(i));
+        }
+        return new CompactItems(ids, dueDays, nameCodes, names);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public long dueDay(int index) {
+        return dueDays[index];
+    }
+
+    @Override
+    public String name(int index) {
+        return names.name(nameCodes[index]);
+    }
+
+    @Override
+    public int id(int index) {
+        return ids[index];
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.cjburkey.itcs3112;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+
+/**
+ * Converts between {@code yyyy-MM-dd} text and days since 1970-01-01.
+ * This class holds no state, so it's safe to use from any number of threads at once.
+ */
+public final class DateCodec {
+
+    /**
+     * The number of characters in a formatted date.
+     */
+    public static final int LENGTH = 10;
+
+    private DateCodec() {
+    }
+
+    /**
+     * Parse a {@code yyyy-MM-dd} date.
+     *
+     * @param text The text to parse.
+     * @return The parsed day, as the number of days since 1970-01-01.
+     * @throws ParseException If the text isn't a valid date in the expected format.
+     */
+    public static long parse(CharSequence text) throws ParseException {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parse a {@code yyyy-MM-dd} date from a region of the provided text.
+     *
+     * @param text The text containing the date.
+     * @param start The index of the first character of the date.
+     * @param end The index after the last character of the date.
+     * @return The parsed day, as the number of days since 1970-01-01.
+     * @throws ParseException If the region isn't a valid date in the expected format.
+     */
+    public static long parse(CharSequence text, int start, int end) throws ParseException {
+        if (end - start != LENGTH || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            throw unparseable(text, start, end, start);
+        }
+
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            throw unparseable(text, start, end, start);
+        }
+        if (month < 1 || month > 12) {
+            throw unparseable(text, start, end, start + 5);
+        }
+        if (day < 1 || day > lengthOfMonth(year, month)) {
+            throw unparseable(text, start, end, start + 8);
+        }
+
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Format a day as a {@code yyyy-MM-dd} date.
+     *
+     * @param epochDay The day, as the number of days since 1970-01-01.
+     * @return The formatted date.
+     */
+    public static String format(long epochDay) {
+        char[] buf = new char[LENGTH];
+        if (format(epochDay, buf, 0) < 0) {
+            return LocalDate.ofEpochDay(epochDay).toString();
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Append a day to the provided builder as a {@code yyyy-MM-dd} date.
+     *
+     * @param builder The builder to append to.
+     * @param epochDay The day, as the number of days since 1970-01-01.
+     * @return The provided builder.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long epochDay) {
+        long civil = toCivil(epochDay);
+        int year = (int) (civil >> 16);
+        if (year < 0 || year > 9999) {
+            return builder.append(LocalDate.ofEpochDay(epochDay));
+        }
+
+        appendDigits(builder, year, 4);
+        builder.append('-');
+        appendDigits(builder, (int) (civil >> 8) & 0xFF, 2);
+        builder.append('-');
+        appendDigits(builder, (int) civil & 0xFF, 2);
+        return builder;
+    }
+
+    /**
+     * Write a day into the provided buffer as a {@code yyyy-MM-dd} date.
+     * Exactly {@link #LENGTH} characters are written.
+     *
+     * @param epochDay The day, as the number of days since 1970-01-01.
+     * @param buf The buffer to write into.
+     * @param offset The index in the buffer of the first character to write.
+     * @return The index after the last written character, or {@code -1} if the year doesn't fit in four digits.
+     */
+    public static int format(long epochDay, char[] buf, int offset) {
+        long civil = toCivil(epochDay);
+        int year = (int) (civil >> 16);
+        if (year < 0 || year > 9999) {
+            return -1;
+        }
+
+        writeDigits(buf, offset, year, 4);
+        buf[offset + 4] = '-';
+        writeDigits(buf, offset + 5, (int) (civil >> 8) & 0xFF, 2);
+        buf[offset + 7] = '-';
+        writeDigits(buf, offset + 8, (int) civil & 0xFF, 2);
+        return offset + LENGTH;
+    }
+
+    /**
+     * Convert a calendar date to a day count.
+     *
+     * @param year The proleptic Gregorian year.
+     * @param month The month, from 1 to 12.
+     * @param day The day of the month, starting at 1.
+     * @return The number of days since 1970-01-01.
+     */
+    public static long toEpochDay(int year, int month, int day) {
+        // Count years from March so the leap day falls at the end of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Returns the year, month, and day packed as (year << 16 | month << 8 | day)
+    private static long toCivil(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 16 | month << 8 | day;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Returns -1 if any of the characters aren't digits
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i ++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void appendDigits(StringBuilder builder, int value, int count) {
+        for (int div = count == 4 ? 1000 : 10; div > 0; div /= 10) {
+            builder.append((char) ('0' + value / div % 10));
+        }
+    }
+
+    private static void writeDigits(char[] buf, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i --) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static ParseException unparseable(CharSequence text, int start, int end, int errorOffset) {
+        return new ParseException("Unparseable date: \"" + text.subSequence(start, end) + '"', errorOffset - start);
+    }
+
+}
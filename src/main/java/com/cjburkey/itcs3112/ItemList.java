@@ -0,0 +1,197 @@
+package com.cjburkey.itcs3112;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * One version of a course's items, sorted by due date with items sharing a due date in the order they were added.
+ *
+ * <p>A version never changes. Changing a course creates a new version that shares every chunk of items the change
+ * didn't touch, so any number of old versions can be kept and read while the course keeps changing.</p>
+ */
+public final class ItemList implements ItemSource {
+
+    static final ItemList EMPTY = new ItemList(ChunkTree.empty());
+
+    // Bulk changes affecting more than one item in this many are made by rebuilding the list instead
+    private static final int REBUILD_RATIO = 64;
+
+    private final ChunkTree<ScheduledItem> items;
+
+    private ItemList(ChunkTree<ScheduledItem> items) {
+        this.items = items;
+    }
+
+    /**
+     * Copy items from another source, such as a snapshot file.
+     *
+     * @param source The items, already sorted by due date.
+     * @return A list of the same items.
+     */
+    static ItemList of(ItemSource source) {
+        if (source instanceof ItemList list) {
+            return list;
+        }
+        ScheduledItem[] array = new ScheduledItem[source.size()];
+        for (int i = 0; i < array.length; i ++) {
+            array[i] = source.get(i);
+        }
+        return new ItemList(ChunkTree.of(array, array.length));
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public long dueDay(int index) {
+        return items.get(index).dueDay;
+    }
+
+    @Override
+    public String name(int index) {
+        return items.get(index).name;
+    }
+
+    @Override
+    public int id(int index) {
+        return items.get(index).id;
+    }
+
+    @Override
+    public ScheduledItem get(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Get an unmodifiable list backed by this version.
+     *
+     * @return The items as a list.
+     */
+    public List<ScheduledItem> asList() {
+        return new View();
+    }
+
+    /**
+     * Create a version with an item added after any items due on the same day.
+     *
+     * @param item The new item.
+     * @return The new version.
+     */
+    ItemList insert(ScheduledItem item) {
+        return new ItemList(items.insert(indexAfter(item.dueDay), item));
+    }
+
+    /**
+     * Create a version with many items added. Items due on the same day keep the order they were provided in, after
+     * any items already due that day.
+     *
+     * @param added The new items, which are sorted in place.
+     * @param count The number of items to add from the start of the array.
+     * @return The new version.
+     */
+    ItemList insertAll(ScheduledItem[] added, int count) {
+        Arrays.sort(added, 0, count, Comparator.comparingLong(item -> item.dueDay));
+        if ((long) count * REBUILD_RATIO < size()) {
+            ChunkTree<ScheduledItem> next = items;
+            for (int i = 0; i < count; i ++) {
+                next = next.insert(new ItemList(next).indexAfter(added[i].dueDay), added[i]);
+            }
+            return new ItemList(next);
+        }
+
+        // Merge both sorted runs in one pass
+        Object[] existing = items.toArray();
+        Object[] merged = new Object[existing.length + count];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k ++) {
+            if (j >= count || i < existing.length && ((ScheduledItem) existing[i]).dueDay <= added[j].dueDay) {
+                merged[k] = existing[i ++];
+            } else {
+                merged[k] = added[j ++];
+            }
+        }
+        return new ItemList(ChunkTree.of(merged, merged.length));
+    }
+
+    /**
+     * Create a version without the provided item.
+     *
+     * @param item The item to remove, which must be in this version.
+     * @return The new version.
+     */
+    ItemList remove(ScheduledItem item) {
+        return new ItemList(items.remove(indexOf(item)));
+    }
+
+    /**
+     * Create a version without the provided items.
+     *
+     * @param removed The items to remove, all of which must be in this version.
+     * @return The new version.
+     */
+    ItemList removeAll(Set<ScheduledItem> removed) {
+        if ((long) removed.size() * REBUILD_RATIO < size()) {
+            ItemList next = this;
+            for (ScheduledItem item : removed) {
+                next = next.remove(item);
+            }
+            return next;
+        }
+
+        Object[] kept = items.toArray();
+        int count = 0;
+        for (Object item : kept) {
+            if (!removed.contains((ScheduledItem) item)) {
+                kept[count ++] = item;
+            }
+        }
+        return new ItemList(ChunkTree.of(kept, count));
+    }
+
+    /**
+     * Pass every chunk of items that's only in one of two versions to the matching action, skipping the chunks they
+     * share. An item in one of the chunks may still be in the other version, in a chunk the changes between them
+     * touched.
+     *
+     * @param a The first version.
+     * @param b The second version.
+     * @param onlyA Receives each chunk only in {@code a}, which must not be changed.
+     * @param onlyB Receives each chunk only in {@code b}, which must not be changed.
+     */
+    static void diff(ItemList a, ItemList b, Consumer<Object[]> onlyA, Consumer<Object[]> onlyB) {
+        ChunkTree.diff(a.items, b.items, onlyA, onlyB);
+    }
+
+    // Find an item by searching only the items due on the same day
+    private int indexOf(ScheduledItem item) {
+        for (int i = indexAfter(item.dueDay - 1); i < size(); i ++) {
+            if (items.get(i) == item) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Item is missing from its course: " + item.id);
+    }
+
+    private final class View extends AbstractList<ScheduledItem> implements RandomAccess {
+
+        @Override
+        public ScheduledItem get(int index) {
+            return items.get(index);
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+    }
+
+}
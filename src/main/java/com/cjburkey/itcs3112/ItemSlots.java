@@ -0,0 +1,172 @@
+package com.cjburkey.itcs3112;
+
+import java.util.Arrays;
+
+/**
+ * Finds a course's items by ID in constant time (a generational slot map).
+ *
+ * <p>Each item lives in a numbered slot, and its ID combines that slot number with the slot's generation. When an
+ * item is removed, its slot's generation goes up before the slot is reused, so the removed item's ID never matches
+ * the item that replaces it. A slot is retired instead of reused once its generation runs out.</p>
+ *
+ * <p>Items are stored by slot, so the array stays dense as long as slots are reused.</p>
+ *
+ * <p>This class isn't thread-safe; {@link ClassSchedule} only uses it while holding its own lock.</p>
+ */
+final class ItemSlots {
+
+    // The low bits of an ID are its slot, and the remaining bits (except the sign) are the slot's generation
+    private static final int SLOT_BITS = 24;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int MAX_GENERATION = (1 << (31 - SLOT_BITS)) - 1;
+
+    // Free slots are only reused once there are this many slots and at least half of them are free. Until then, new
+    // items get new slots, so small courses keep short IDs that still start at generation 0.
+    private static final int MIN_REUSE_SLOTS = 64;
+
+    private ScheduledItem[] items = new ScheduledItem[16];
+    private int[] generations = new int[16];
+
+    // The number of slots that have ever been used, and the item count
+    private int slotCount;
+    private int size;
+
+    // Slots that can be reused. Slots filled by `restore` aren't taken out, so this may contain slots in use.
+    private int[] free = new int[16];
+    private int freeCount;
+
+    /**
+     * Get the item with the provided ID.
+     *
+     * @param id The item's ID.
+     * @return The item, or {@code null} if there isn't one with that ID.
+     */
+    ScheduledItem get(int id) {
+        int slot = id & SLOT_MASK;
+        if (id < 0 || slot >= slotCount) {
+            return null;
+        }
+        ScheduledItem item = slot < items.length ? items[slot] : null;
+        return item != null && item.id == id ? item : null;
+    }
+
+    /**
+     * Create an item with a new ID and store it.
+     *
+     * @param name The item's name.
+     * @param dueDay The day the item is due, as the number of days since 1970-01-01.
+     * @return The new item.
+     * @throws IllegalStateException If there are no IDs left.
+     */
+    ScheduledItem add(String name, long dueDay) {
+        int slot = takeFreeSlot();
+        ensureCapacity(slot + 1);
+        ScheduledItem item = new ScheduledItem(generations[slot] << SLOT_BITS | slot, name, dueDay);
+        items[slot] = item;
+        size ++;
+        return item;
+    }
+
+    /**
+     * Store an item that already has an ID, such as one loaded from disk.
+     *
+     * @param item The item.
+     * @return Whether the item was stored. If {@code false}, its ID is invalid or its slot is in use.
+     */
+    boolean restore(ScheduledItem item) {
+        int slot = item.id & SLOT_MASK;
+        if (item.id < 0) {
+            return false;
+        }
+
+        // Any slots skipped over are free
+        while (slotCount <= slot) {
+            ensureCapacity(slotCount + 1);
+            pushFree(slotCount ++);
+        }
+        ensureCapacity(slot + 1);
+        if (items[slot] != null) {
+            return false;
+        }
+
+        // An undone removal can restore an older item into a slot that has been reused since, so never move the
+        // generation backwards, or the newer item's ID could be handed out again
+        items[slot] = item;
+        generations[slot] = Math.max(generations[slot], item.id >>> SLOT_BITS);
+        size ++;
+        return true;
+    }
+
+    /**
+     * Remove the item with the provided ID.
+     *
+     * @param id The item's ID.
+     * @return The removed item, or {@code null} if there isn't one with that ID.
+     */
+    ScheduledItem remove(int id) {
+        ScheduledItem item = get(id);
+        if (item == null) {
+            return null;
+        }
+
+        int slot = id & SLOT_MASK;
+        items[slot] = null;
+        size --;
+        if (generations[slot] < MAX_GENERATION) {
+            generations[slot] ++;
+            pushFree(slot);
+        }
+        return item;
+    }
+
+    /**
+     * Forget every item, such as when its course is compacted, but keep each slot's generation so the IDs of items
+     * removed before aren't handed out again once the items are restored.
+     */
+    void clear() {
+        items = new ScheduledItem[16];
+        size = 0;
+    }
+
+    /**
+     * Get the number of items.
+     *
+     * @return The number of items.
+     */
+    int size() {
+        return size;
+    }
+
+    private int takeFreeSlot() {
+        boolean reuse = slotCount >= MIN_REUSE_SLOTS && (slotCount - size) * 2 >= slotCount;
+        while (reuse && freeCount > 0) {
+            int slot = free[-- freeCount];
+            if (slot >= items.length || items[slot] == null) {
+                return slot;
+            }
+        }
+        if (slotCount > SLOT_MASK) {
+            throw new IllegalStateException("Too many items in one course");
+        }
+        ensureCapacity(slotCount + 1);
+        return slotCount ++;
+    }
+
+    private void pushFree(int slot) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount ++] = slot;
+    }
+
+    // The arrays can differ in length, since clearing only shrinks the items
+    private void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            items = Arrays.copyOf(items, Math.max(capacity, items.length * 2));
+        }
+        if (capacity > generations.length) {
+            generations = Arrays.copyOf(generations, Math.max(capacity, generations.length * 2));
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.cjburkey.itcs3112;
+
+/**
+ * A read-only sequence of items sorted by due date, which may live outside of the heap (such as in a memory-mapped
+ * snapshot file) until each item is asked for.
+ */
+public interface ItemSource {
+
+    /**
+     * Get the number of items.
+     *
+     * @return The number of items.
+     */
+    int size();
+
+    /**
+     * Get the due day of the item at the provided index.
+     *
+     * @param index The index of the item.
+     * @return The day the item is due, as the number of days since 1970-01-01.
+     */
+    long dueDay(int index);
+
+    /**
+     * Get the name of the item at the provided index.
+     *
+     * @param index The index of the item.
+     * @return The item's name.
+     */
+    String name(int index);
+
+    /**
+     * Get the ID of the item at the provided index.
+     *
+     * @param index The index of the item.
+     * @return The item's ID within its course.
+     */
+    int id(int index);
+
+    /**
+     * Create an item object for the item at the provided index.
+     *
+     * @param index The index of the item.
+     * @return The item.
+     */
+    default ScheduledItem get(int index) {
+        return new ScheduledItem(id(index), name(index), dueDay(index));
+    }
+
+    /**
+     * Binary search for the first item due strictly after the provided day.
+     *
+     * @param day The day, as the number of days since 1970-01-01.
+     * @return The index of the first item due after the day, or {@link #size()} if there isn't one.
+     */
+    default int indexAfter(long day) {
+        return indexAfter(day, 0);
+    }
+
+    /**
+     * Binary search for the first item due strictly after the provided day, skipping items before an index already
+     * known to be due on or before it.
+     *
+     * @param day The day, as the number of days since 1970-01-01.
+     * @param from The index to start searching from.
+     * @return The index of the first item due after the day, or {@link #size()} if there isn't one.
+     */
+    default int indexAfter(long day, int from) {
+        int low = from;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dueDay(mid) > day) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Wrap an array of items that's already sorted by due date. The array must not be changed afterwards.
+     *
+     * @param items The sorted items.
+     * @return A source reading from the array.
+     */
+    static ItemSource of(ScheduledItem[] items) {
+        return new ItemSource() {
+            @Override
+            public int size() {
+                return items.length;
+            }
+
+            @Override
+            public long dueDay(int index) {
+                return items[index].dueDay;
+            }
+
+            @Override
+            public String name(int index) {
+                return items[index].name;
+            }
+
+            @Override
+            public int id(int index) {
+                return items[index].id;
+            }
+
+            @Override
+            public ScheduledItem get(int index) {
+                return items[index];
+            }
+        };
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.cjburkey.itcs3112;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each distinct item name a small number, so compacted courses can store a number per item instead of a
+ * reference to a string of its own (dictionary encoding).
+ *
+ * <p>A handler's courses share one table, so a name used by many items across many courses (such as "Quiz") is
+ * stored once. Names are never removed, so the table only grows with the number of distinct names ever compacted.
+ * Any number of threads may use a table at once.</p>
+ */
+final class NameTable {
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    // Indexed by code. Replaced when it grows; only written while holding this table's monitor.
+    private volatile String[] names = new String[64];
+    private int count;
+
+    /**
+     * Get the number for a name, adding the name if it's new.
+     *
+     * @param name The name.
+     * @return The name's number.
+     */
+    int code(String name) {
+        Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = codes.get(name);
+            if (code != null) {
+                return code;
+            }
+            String[] array = names;
+            if (count == array.length) {
+                array = Arrays.copyOf(array, count * 2);
+            }
+            array[count] = name;
+
+            // Publish the name before its number can be handed out
+            names = array;
+            codes.put(name, count);
+            return count ++;
+        }
+    }
+
+    /**
+     * Get the name with the provided number.
+     *
+     * @param code A number returned by {@link #code(String)}.
+     * @return The name, always the same string instance for the same number.
+     */
+    String name(int code) {
+        return names[code];
+    }
+
+    /**
+     * Get the number of distinct names in this table.
+     *
+     * @return The number of names.
+     */
+    synchronized int size() {
+        return count;
+    }
+
+}
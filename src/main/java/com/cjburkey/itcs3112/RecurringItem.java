@@ -0,0 +1,257 @@
+package com.cjburkey.itcs3112;
+
+import java.util.Arrays;
+
+/**
+ * An item that's due repeatedly, stored as a single rule instead of an item per occurrence.
+ *
+ * <p>Occurrence {@code n} (counting from 0) is due {@code n * interval} days after the first. Single occurrences can
+ * be skipped, which is how one is deleted or replaced with an ordinary item. A rule never changes; skipping an
+ * occurrence creates a new rule with the same ID.</p>
+ *
+ * <p>Each occurrence is shown with an ID of its own, which is negative so it can't be mistaken for an ordinary item's
+ * ID. See {@link #occurrenceId(int)}.</p>
+ */
+public final class RecurringItem {
+
+    /**
+     * The most occurrences a rule can have.
+     */
+    public static final int MAX_OCCURRENCES = 1 << 16;
+
+    /**
+     * The largest ID a rule can have.
+     */
+    public static final int MAX_ID = (1 << 15) - 1;
+
+    /**
+     * This rule's ID within its course, which never changes.
+     */
+    public final int id;
+
+    /**
+     * The name of every occurrence.
+     */
+    public final String name;
+
+    /**
+     * The day the first occurrence is due, as the number of days since 1970-01-01.
+     */
+    public final long startDay;
+
+    /**
+     * The number of days between occurrences.
+     */
+    public final int interval;
+
+    /**
+     * The number of occurrences, including skipped ones.
+     */
+    public final int count;
+
+    // The skipped occurrence numbers, sorted
+    private final int[] skipped;
+
+    /**
+     * @param id The rule's ID, from 0 through {@link #MAX_ID}.
+     * @param name The name of every occurrence.
+     * @param startDay The day the first occurrence is due, as the number of days since 1970-01-01.
+     * @param interval The number of days between occurrences, at least 1.
+     * @param count The number of occurrences, from 1 through {@link #MAX_OCCURRENCES}.
+     * @param skipped The occurrence numbers to leave out, in any order.
+     * @throws IllegalArgumentException If any of the numbers are out of range.
+     */
+    public RecurringItem(int id, String name, long startDay, int interval, int count, int[] skipped) {
+        if (id < 0 || id > MAX_ID || interval < 1 || count < 1 || count > MAX_OCCURRENCES) {
+            throw new IllegalArgumentException("Invalid recurring item: " + id + ", " + interval + ", " + count);
+        }
+        this.id = id;
+        this.name = name;
+        this.startDay = startDay;
+        this.interval = interval;
+        this.count = count;
+        this.skipped = skipped.clone();
+        Arrays.sort(this.skipped);
+        for (int occurrence : this.skipped) {
+            if (occurrence < 0 || occurrence >= count) {
+                throw new IllegalArgumentException("Invalid skipped occurrence: " + occurrence);
+            }
+        }
+    }
+
+    /**
+     * Find how many occurrences a rule repeating until a day has.
+     *
+     * @param startDay The day the first occurrence is due, as the number of days since 1970-01-01.
+     * @param interval The number of days between occurrences, at least 1.
+     * @param untilDay The last day an occurrence may be due, as the number of days since 1970-01-01.
+     * @return The number of occurrences, which is 0 if the last day is before the first, and may be more than
+     * {@link #MAX_OCCURRENCES}.
+     */
+    public static long countUntil(long startDay, int interval, long untilDay) {
+        return untilDay < startDay ? 0 : (untilDay - startDay) / interval + 1;
+    }
+
+    /**
+     * Get the day an occurrence is due.
+     *
+     * @param occurrence The occurrence number, counting from 0.
+     * @return The day it's due, as the number of days since 1970-01-01.
+     */
+    public long dueDay(int occurrence) {
+        return startDay + (long) occurrence * interval;
+    }
+
+    /**
+     * Get the ID an occurrence is shown with.
+     *
+     * @param occurrence The occurrence number, counting from 0.
+     * @return The occurrence's ID, which is always negative.
+     */
+    public int occurrenceId(int occurrence) {
+        return ~(id << 16 | occurrence);
+    }
+
+    /**
+     * Check whether an item ID belongs to an occurrence of a recurring item rather than an ordinary item.
+     *
+     * @param itemId The ID.
+     * @return Whether it's an occurrence's ID.
+     */
+    public static boolean isOccurrence(int itemId) {
+        return itemId < 0;
+    }
+
+    /**
+     * Get the ID of the rule an occurrence belongs to.
+     *
+     * @param occurrenceId The occurrence's ID.
+     * @return The rule's ID.
+     */
+    public static int ruleId(int occurrenceId) {
+        return ~occurrenceId >>> 16;
+    }
+
+    /**
+     * Get the number of an occurrence within its rule.
+     *
+     * @param occurrenceId The occurrence's ID.
+     * @return The occurrence number, counting from 0.
+     */
+    public static int occurrence(int occurrenceId) {
+        return ~occurrenceId & 0xFFFF;
+    }
+
+    /**
+     * Format an item's ID as it's shown to users: ordinary items by their number, and occurrences as
+     * {@code r<rule>.<occurrence>} with occurrences counted from 1.
+     *
+     * @param itemId The ID.
+     * @return The formatted ID.
+     */
+    public static String formatId(int itemId) {
+        return isOccurrence(itemId)
+                ? "r" + ruleId(itemId) + "." + (occurrence(itemId) + 1)
+                : Integer.toString(itemId);
+    }
+
+    /**
+     * Parse an item's ID as formatted by {@link #formatId(int)}.
+     *
+     * @param text The formatted ID.
+     * @return The ID.
+     * @throws NumberFormatException If the text isn't a valid ID.
+     */
+    public static int parseId(String text) {
+        if (!text.startsWith("r")) {
+            return Integer.parseInt(text);
+        }
+        int dot = text.indexOf('.');
+        if (dot < 0) {
+            throw new NumberFormatException("Missing occurrence number: " + text);
+        }
+        int ruleId = Integer.parseInt(text.substring(1, dot));
+        int occurrence = Integer.parseInt(text.substring(dot + 1)) - 1;
+        if (ruleId < 0 || ruleId > MAX_ID || occurrence < 0 || occurrence >= MAX_OCCURRENCES) {
+            throw new NumberFormatException("Invalid occurrence ID: " + text);
+        }
+        return ~(ruleId << 16 | occurrence);
+    }
+
+    /**
+     * Check whether an occurrence has been skipped.
+     *
+     * @param occurrence The occurrence number, counting from 0.
+     * @return Whether it's skipped.
+     */
+    public boolean isSkipped(int occurrence) {
+        return Arrays.binarySearch(skipped, occurrence) >= 0;
+    }
+
+    /**
+     * @return The skipped occurrence numbers, sorted.
+     */
+    public int[] getSkipped() {
+        return skipped.clone();
+    }
+
+    /**
+     * @return The number of occurrences that haven't been skipped.
+     */
+    public int size() {
+        return count - skipped.length;
+    }
+
+    /**
+     * Create a rule with one more occurrence skipped.
+     *
+     * @param occurrence The occurrence number to skip, which must be in range and not already skipped.
+     * @return The new rule.
+     */
+    RecurringItem skip(int occurrence) {
+        int[] next = Arrays.copyOf(skipped, skipped.length + 1);
+        next[skipped.length] = occurrence;
+        return new RecurringItem(id, name, startDay, interval, count, next);
+    }
+
+    // The number of occurrences due on or before a day, not counting skipped ones
+    int countThrough(long day) {
+        if (day < startDay) {
+            return 0;
+        }
+        int through = (int) Math.min(count, (day - startDay) / interval + 1);
+        int skippedBefore = Arrays.binarySearch(skipped, through);
+        return through - (skippedBefore >= 0 ? skippedBefore : -skippedBefore - 1);
+    }
+
+    // The occurrence due on a day, or -1 if there isn't one or it's skipped
+    int occurrenceOn(long day) {
+        if (day < startDay || (day - startDay) % interval != 0) {
+            return -1;
+        }
+        long occurrence = (day - startDay) / interval;
+        return occurrence < count && !isSkipped((int) occurrence) ? (int) occurrence : -1;
+    }
+
+    // The first day after the provided one with an occurrence due, or Long.MAX_VALUE if there isn't one
+    long nextDay(long day) {
+        long occurrence = day < startDay ? 0 : (day - startDay) / interval + 1;
+        while (occurrence < count && isSkipped((int) occurrence)) {
+            occurrence ++;
+        }
+        return occurrence < count ? dueDay((int) occurrence) : Long.MAX_VALUE;
+    }
+
+    // The last day before the provided one with an occurrence due, or Long.MIN_VALUE if there isn't one
+    long previousDay(long day) {
+        if (day <= startDay) {
+            return Long.MIN_VALUE;
+        }
+        long occurrence = Math.min(count - 1, (day - startDay - 1) / interval);
+        while (occurrence >= 0 && isSkipped((int) occurrence)) {
+            occurrence --;
+        }
+        return occurrence >= 0 ? dueDay((int) occurrence) : Long.MIN_VALUE;
+    }
+
+}
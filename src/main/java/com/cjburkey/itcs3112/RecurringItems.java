@@ -0,0 +1,272 @@
+package com.cjburkey.itcs3112;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A course's ordinary items merged with the occurrences of its recurring items, sorted by due date. On each day, the
+ * ordinary items come first, then the occurrences in order of their rules' IDs.
+ *
+ * <p>Occurrences are never stored. Counting the items due by a day takes {@code O(log n + r)} time for {@code n}
+ * ordinary items and {@code r} rules, and reading an item finds its day by binary search. The items due on the day
+ * read last are kept, so reading forwards or backwards through the items only does that search once.</p>
+ */
+final class RecurringItems implements ItemSource {
+
+    static final RecurringItem[] NONE = new RecurringItem[0];
+
+    /**
+     * The ordinary items.
+     */
+    final ItemSource items;
+
+    /**
+     * The recurring items, sorted by ID.
+     */
+    final RecurringItem[] rules;
+
+    private final int size;
+    private final long firstDay;
+    private final long lastDay;
+
+    // The items due on the day read last. Racy, but each one is immutable.
+    private Day last;
+
+    private RecurringItems(ItemSource items, RecurringItem[] rules) {
+        this.items = items;
+        this.rules = rules;
+
+        int size = items.size();
+        long firstDay = size > 0 ? items.dueDay(0) : Long.MAX_VALUE;
+        long lastDay = size > 0 ? items.dueDay(size - 1) : Long.MIN_VALUE;
+        for (RecurringItem rule : rules) {
+            size += rule.size();
+            firstDay = Math.min(firstDay, rule.startDay);
+            lastDay = Math.max(lastDay, rule.dueDay(rule.count - 1));
+        }
+        this.size = size;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Merge ordinary items with recurring items.
+     *
+     * @param items The ordinary items, which must not already include recurring items.
+     * @param rules The recurring items, sorted by ID.
+     * @return The merged items, or the ordinary items if there aren't any recurring items.
+     */
+    static ItemSource of(ItemSource items, RecurringItem[] rules) {
+        return rules.length == 0 ? items : new RecurringItems(items, rules);
+    }
+
+    /**
+     * Get the ordinary items from a source that may include recurring items.
+     *
+     * @param source The source.
+     * @return The ordinary items.
+     */
+    static ItemSource itemsOf(ItemSource source) {
+        return source instanceof RecurringItems merged ? merged.items : source;
+    }
+
+    /**
+     * Get the recurring items from a source that may include them.
+     *
+     * @param source The source.
+     * @return The recurring items, sorted by ID.
+     */
+    static RecurringItem[] rulesOf(ItemSource source) {
+        return source instanceof RecurringItems merged ? merged.rules : NONE;
+    }
+
+    // Find the index of a rule by ID, or (-insertion point - 1) if there isn't one
+    static int indexOf(RecurringItem[] rules, int id) {
+        int low = 0;
+        int high = rules.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (rules[mid].id < id) {
+                low = mid + 1;
+            } else if (rules[mid].id > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long dueDay(int index) {
+        return day(index).day;
+    }
+
+    @Override
+    public String name(int index) {
+        Day day = day(index);
+        int offset = index - day.start;
+        return offset < day.itemCount ? items.name(day.itemStart + offset) : day.rules[offset - day.itemCount].name;
+    }
+
+    @Override
+    public int id(int index) {
+        Day day = day(index);
+        int offset = index - day.start;
+        if (offset < day.itemCount) {
+            return items.id(day.itemStart + offset);
+        }
+        offset -= day.itemCount;
+        return day.rules[offset].occurrenceId(day.occurrences[offset]);
+    }
+
+    @Override
+    public ScheduledItem get(int index) {
+        Day day = day(index);
+        int offset = index - day.start;
+        if (offset < day.itemCount) {
+            return items.get(day.itemStart + offset);
+        }
+        offset -= day.itemCount;
+        RecurringItem rule = day.rules[offset];
+        return new ScheduledItem(rule.occurrenceId(day.occurrences[offset]), rule.name, day.day);
+    }
+
+    @Override
+    public int indexAfter(long day, int from) {
+        int count = items.indexAfter(day);
+        for (RecurringItem rule : rules) {
+            count += rule.countThrough(day);
+        }
+        return count;
+    }
+
+    // Find the items due on the same day as the item at an index
+    private Day day(int index) {
+        Objects.checkIndex(index, size);
+        Day day = last;
+        if (day != null && index >= day.start && index < day.end()) {
+            return day;
+        }
+
+        if (day != null && index == day.end()) {
+            day = next(day);
+        } else if (day != null && index == day.start - 1) {
+            day = previous(day);
+        } else {
+            // Find the first day with more than `index` items due on or before it
+            long low = firstDay;
+            long high = lastDay;
+            while (low < high) {
+                long mid = low + (high - low) / 2;
+                if (indexAfter(mid) > index) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            int itemStart = items.indexAfter(low - 1);
+            day = on(low, indexAfter(low - 1), itemStart, gallop(low, itemStart));
+        }
+        last = day;
+        return day;
+    }
+
+    private Day next(Day day) {
+        long next = Long.MAX_VALUE;
+        int itemEnd = day.itemStart + day.itemCount;
+        if (itemEnd < items.size()) {
+            next = items.dueDay(itemEnd);
+        }
+        for (RecurringItem rule : rules) {
+            next = Math.min(next, rule.nextDay(day.day));
+        }
+        int itemStart = gallop(next - 1, itemEnd);
+        return on(next, day.end(), itemStart, gallop(next, itemStart));
+    }
+
+    private Day previous(Day day) {
+        long previous = Long.MIN_VALUE;
+        if (day.itemStart > 0) {
+            previous = items.dueDay(day.itemStart - 1);
+        }
+        for (RecurringItem rule : rules) {
+            previous = Math.max(previous, rule.previousDay(day.day));
+        }
+        Day found = on(previous, 0, gallopBack(previous - 1, day.itemStart), day.itemStart);
+        return new Day(previous, day.start - found.end(), found.itemStart, found.itemCount, found.rules,
+                found.occurrences);
+    }
+
+    // Find the first ordinary item due after a day, searching forwards from an index due on or before it, so finding
+    // the next day's items takes time depending on how many there are rather than on the number of items
+    private int gallop(long day, int from) {
+        int size = items.size();
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < size && items.dueDay(high) <= day) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return search(day, low, Math.min(high, size));
+    }
+
+    // Find the first ordinary item due after a day, searching backwards from an index due after it
+    private int gallopBack(long day, int to) {
+        int low = to;
+        int high = to;
+        int step = 1;
+        while (low > 0 && items.dueDay(low - 1) > day) {
+            high = low - 1;
+            low = Math.max(0, to - step);
+            step <<= 1;
+        }
+        return search(day, low, high);
+    }
+
+    // Binary search for the first ordinary item due after a day, which must be from `low` through `high`
+    private int search(long day, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (items.dueDay(mid) > day) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Collect the items due on a day, the first of which is at the provided index
+    private Day on(long day, int start, int itemStart, int itemEnd) {
+        int itemCount = itemEnd - itemStart;
+        RecurringItem[] due = new RecurringItem[rules.length];
+        int[] occurrences = new int[rules.length];
+        int count = 0;
+        for (RecurringItem rule : rules) {
+            int occurrence = rule.occurrenceOn(day);
+            if (occurrence >= 0) {
+                due[count] = rule;
+                occurrences[count ++] = occurrence;
+            }
+        }
+        return new Day(day, start, itemStart, itemCount, Arrays.copyOf(due, count), Arrays.copyOf(occurrences, count));
+    }
+
+    // The items due on one day: a range of the ordinary items, then one occurrence from each of some rules
+    private record Day(long day, int start, int itemStart, int itemCount, RecurringItem[] rules, int[] occurrences) {
+
+        int end() {
+            return start + itemCount + rules.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.cjburkey.itcs3112;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue passing items from one thread to exactly one other thread without locks.
+ *
+ * <p>Items are put and taken in batches. The producer copies a whole batch into the array before publishing it with a
+ * single write of its position, and the consumer takes everything published so far the same way, so the two threads
+ * only touch shared state once per batch. Each side also remembers where it last saw the other, and only reads the
+ * other's position again once it seems to be out of room or out of items.</p>
+ *
+ * <p>A side with nothing to do spins briefly, then yields, then sleeps for gradually longer, so neither side ever has
+ * to wake the other.</p>
+ *
+ * @param <T> The type of the items.
+ */
+final class RingBuffer<T> {
+
+    // Idle steps spent spinning and then yielding before sleeping
+    private static final int SPINS = 64;
+    private static final int YIELDS = 16;
+
+    // The longest sleep while idle, which bounds the delay before noticing new items or room
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final Object[] slots;
+    private final int mask;
+
+    // The number of items ever taken, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // The number of items ever put, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // The producer's last read of `head` and the consumer's last read of `tail`
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * @param capacity The most items that can be waiting at once, which must be a power of two.
+     * @throws IllegalArgumentException If the capacity isn't a power of two.
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        slots = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Put one item, waiting while the buffer is full. Only the producer may call this.
+     *
+     * @param item The item.
+     * @return Whether the item was put, which is {@code false} if the buffer was closed first.
+     */
+    boolean put(T item) {
+        int idle = 0;
+        long t = tail.getPlain();
+        while (true) {
+            if (closed) {
+                return false;
+            }
+            if (t - cachedHead < slots.length) {
+                break;
+            }
+            cachedHead = head.getAcquire();
+            if (t - cachedHead == slots.length) {
+                idle = idle(idle);
+            }
+        }
+        slots[(int) t & mask] = item;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Put a batch of items, waiting while there isn't room for them. A batch bigger than the free space is published
+     * a part at a time as room appears. Only the producer may call this.
+     *
+     * @param batch The array holding the items.
+     * @param count The number of items to put from the start of the array.
+     * @return Whether every item was put, which is {@code false} if the buffer was closed first.
+     */
+    boolean putAll(T[] batch, int count) {
+        int done = 0;
+        int idle = 0;
+        while (done < count) {
+            if (closed) {
+                return false;
+            }
+            long t = tail.getPlain();
+            int room = slots.length - (int) (t - cachedHead);
+            if (room == 0) {
+                cachedHead = head.getAcquire();
+                room = slots.length - (int) (t - cachedHead);
+                if (room == 0) {
+                    idle = idle(idle);
+                    continue;
+                }
+            }
+
+            int n = Math.min(room, count - done);
+            for (int i = 0; i < n; i ++) {
+                slots[(int) (t + i) & mask] = batch[done + i];
+            }
+            tail.setRelease(t + n);
+            done += n;
+            idle = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Take every item put so far, up to the length of the array, waiting while there aren't any. Only the consumer
+     * may call this.
+     *
+     * @param into The array to copy the items into, from its start.
+     * @return The number of items taken, or {@code -1} once the buffer is closed and every item has been taken.
+     */
+    @SuppressWarnings("unchecked")
+    int takeAll(T[] into) {
+        int idle = 0;
+        while (true) {
+            long h = head.getPlain();
+            if (cachedTail == h) {
+                cachedTail = tail.getAcquire();
+            }
+            int available = (int) (cachedTail - h);
+            if (available > 0) {
+                int n = Math.min(available, into.length);
+                for (int i = 0; i < n; i ++) {
+                    int slot = (int) (h + i) & mask;
+                    into[i] = (T) slots[slot];
+                    slots[slot] = null;
+                }
+                head.setRelease(h + n);
+                return n;
+            }
+
+            // The producer closes after its last put, so once closed is seen, a last read of `tail` is final
+            if (closed) {
+                cachedTail = tail.getAcquire();
+                if (cachedTail == h) {
+                    return -1;
+                }
+                continue;
+            }
+            idle = idle(idle);
+        }
+    }
+
+    /**
+     * Close the buffer. The producer closes it after putting its last item, and the consumer may close it to stop the
+     * producer early, in which case any waiting or later puts fail.
+     */
+    void close() {
+        closed = true;
+    }
+
+    // Wait a little longer each time there's nothing to do
+    private static int idle(int idle) {
+        if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << (idle - SPINS - YIELDS)));
+        }
+        return Math.min(idle + 1, SPINS + YIELDS + 10);
+    }
+
+}
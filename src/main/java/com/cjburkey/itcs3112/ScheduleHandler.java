@@ -1,22 +1,126 @@
 package com.cjburkey.itcs3112;
 
 import com.cjburkey.itcs3112.cmd.CommandHandler;
+import com.cjburkey.itcs3112.cmd.CommandLine;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import com.cjburkey.itcs3112.cmd.CommandStats;
+import com.cjburkey.itcs3112.cmd.CommandTable;
 import com.cjburkey.itcs3112.cmd.CmdsImpl;
+import com.cjburkey.itcs3112.cmd.RenderCache;
+import com.cjburkey.itcs3112.search.NameIndex;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 
+/**
+ * Holds every course and the commands used to work with them.
+ *
+ * <p>A handler can be shared by many threads, each with its own {@link Session}. Courses are kept in a concurrent
+ * map, and each course has its own lock, so threads working on different courses don't wait on each other.</p>
+ *
+ * <p>Every change also publishes a new {@link ScheduleVersion}, so the whole schedule can be read as it was at one
+ * moment without stopping anyone, and commands can be undone by going back to an earlier version.</p>
+ */
 public class ScheduleHandler {
 
-    // The currently selected course
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private Optional<ClassSchedule> currentSchedule = Optional.empty();
+    // The number of commands that can be undone
+    private static final int MAX_UNDO = 100;
+
+    // Queries over more courses than this are split into tasks of up to this many courses each
+    private static final int FAN_OUT_BATCH = 256;
+
+    // Counts input that doesn't reach a command, shared by both handlers
+    private final CommandStats commandStats = new CommandStats();
 
     // Command handlers
-    public final CommandHandler scheduleCommands = new CommandHandler();
-    public final CommandHandler courseCommands = new CommandHandler();
+    public final CommandHandler scheduleCommands = new CommandHandler(commandStats);
+    public final CommandHandler courseCommands = new CommandHandler(commandStats);
+
+    // Both sets of commands, looked up at once
+    private final CommandTable commands = new CommandTable(courseCommands, scheduleCommands);
 
     // Map from course names to their respective schedules
-    private final HashMap<String, ClassSchedule> courseSchedules = new HashMap<>();
+    private final ConcurrentHashMap<String, ClassSchedule> courseSchedules = new ConcurrentHashMap<>();
+
+    // Every change holds the read half; pausing changes takes the write half
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    // Set once changes can no longer be saved, after which every change is refused
+    private volatile IOException refusedChanges;
+
+    // Every course and its items, replaced by each change
+    private final AtomicReference<ScheduleVersion> version = new AtomicReference<>(ScheduleVersion.EMPTY);
+
+    // The command running on each thread, which notes the version from before its first change
+    private final ThreadLocal<Checkpoint> checkpoint = new ThreadLocal<>();
+
+    // The versions to go back to when undoing, with the most recent command last. A session may only undo the most
+    // recent command, if it ran it and nothing has changed since.
+    private final ArrayDeque<UndoEntry> undoHistory = new ArrayDeque<>();
+
+    // The item names of every compacted course
+    final NameTable itemNames = new NameTable();
+
+    // Whether courses are compacted whenever a command finishes without changing them
+    private volatile boolean compactStorage;
+
+    // Runs the tasks of queries across many courses
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // The clock used to decide which items are past-due
+    private volatile Clock clock = Clock.systemDefaultZone();
+
+    // The name search index, built the first time it's needed
+    private volatile NameIndex nameIndex;
+
+    // The text last shown for each course
+    private final RenderCache renderCache = new RenderCache(RenderCache.DEFAULT_CAPACITY);
+
+    // Listeners notified of every change, and the single listener that forwards to all of them
+    private final CopyOnWriteArrayList<ScheduleListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduleListener events = new ScheduleListener() {
+        @Override
+        public void courseAdded(ClassSchedule course) {
+            listeners.forEach(l -> l.courseAdded(course));
+        }
+
+        @Override
+        public void courseRemoved(ClassSchedule course) {
+            listeners.forEach(l -> l.courseRemoved(course));
+        }
+
+        @Override
+        public void itemAdded(ClassSchedule course, ScheduledItem item) {
+            listeners.forEach(l -> l.itemAdded(course, item));
+        }
+
+        @Override
+        public void itemRemoved(ClassSchedule course, ScheduledItem item) {
+            listeners.forEach(l -> l.itemRemoved(course, item));
+        }
+
+        @Override
+        public void recurringAdded(ClassSchedule course, RecurringItem rule) {
+            listeners.forEach(l -> l.recurringAdded(course, rule));
+        }
+
+        @Override
+        public void recurringRemoved(ClassSchedule course, RecurringItem rule) {
+            listeners.forEach(l -> l.recurringRemoved(course, rule));
+        }
+    };
 
     public ScheduleHandler() {
         // Main commands
@@ -26,12 +130,27 @@ public class ScheduleHandler {
         scheduleCommands.addCommand(new CmdsImpl.CmdListCourse(this));
         scheduleCommands.addCommand(new CmdsImpl.CmdSelectCourse(this));
         scheduleCommands.addCommand(new CmdsImpl.CmdShow(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdAgenda(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdDueBetween(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdFind(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdSave(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdLoad(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdImport(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdExport(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdStats(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdUndo(this));
+        scheduleCommands.addCommand(new CmdsImpl.CmdCompact(this));
 
         // Course commands
         courseCommands.addCommand(new CmdsImpl.CmdAddItem(this));
+        courseCommands.addCommand(new CmdsImpl.CmdAddRecurring(this));
+        courseCommands.addCommand(new CmdsImpl.CmdOverrideItem(this));
         courseCommands.addCommand(new CmdsImpl.CmdRemItem(this));
         courseCommands.addCommand(new CmdsImpl.CmdShowItem(this));
         courseCommands.addCommand(new CmdsImpl.CmdListItem(this));
+
+        // Forget the text shown for removed courses
+        listeners.add(renderCache);
     }
 
     /**
@@ -44,12 +163,33 @@ public class ScheduleHandler {
     }
 
     /**
-     * Select the course by the provided name.
+     * Get every course and its items as they are right now. The version never changes, so it can be read without
+     * locks while other threads keep changing the schedule.
+     *
+     * @return The current version.
+     */
+    public ScheduleVersion getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Get the course by the provided name.
+     *
+     * @param name The name of the course.
+     * @return An optional-wrapped course, empty if there is no course by that name.
+     */
+    public Optional<ClassSchedule> getCourse(String name) {
+        return Optional.ofNullable(courseSchedules.get(name));
+    }
+
+    /**
+     * Select the course by the provided name in the provided session.
      *
+     * @param session The session to select the course in.
      * @param name The name of the course to select, or {@code null} to deselect.
      * @return Whether there is a course by the provided name.
      */
-    public boolean selectCourse(String name) {
+    public boolean selectCourse(Session session, String name) {
         if (name != null) {
             // Get the course by the provided name
             ClassSchedule schedule = courseSchedules.get(name);
@@ -58,10 +198,10 @@ public class ScheduleHandler {
             }
 
             // Update the current course
-            currentSchedule = Optional.of(schedule);
+            session.select(schedule);
         } else {
             // Deselect
-            currentSchedule = Optional.empty();
+            session.select(null);
         }
 
         return true;
@@ -74,14 +214,70 @@ public class ScheduleHandler {
      * @return Whether the course was created. If {@code false}, a course by that name has already been created.
      */
     public boolean addCourse(String name) {
-        // Return false if the course is already registered
-        if (courseSchedules.containsKey(name)) {
-            return false;
-        }
+        return addCourse(name, null);
+    }
 
-        // Otherwise, create & insert a new course schedule.
-        courseSchedules.put(name, new ClassSchedule(name));
-        return true;
+    /**
+     * Create a new course schedule holding the provided items.
+     * The items aren't copied into memory until the course's items are first accessed.
+     *
+     * @param name The name of the course.
+     * @param items The course's items, or {@code null} for none.
+     * @return Whether the course was created. If {@code false}, a course by that name has already been created.
+     */
+    public boolean addCourse(String name, ItemSource items) {
+        return addCourse(name, items, List.of());
+    }
+
+    /**
+     * Create a new course schedule holding the provided items and recurring items.
+     * The items aren't copied into memory until the course's items are first accessed.
+     *
+     * @param name The name of the course.
+     * @param items The course's items, or {@code null} for none.
+     * @param recurring The course's recurring items, each with a different ID.
+     * @return Whether the course was created. If {@code false}, a course by that name has already been created.
+     */
+    public boolean addCourse(String name, ItemSource items, List<RecurringItem> recurring) {
+        return addCourse(name, items, recurring, 0);
+    }
+
+    /**
+     * Create a new course schedule holding the provided items and recurring items, which gives recurring items
+     * added later IDs from the provided one up, such as when a course is loaded from disk.
+     * The items aren't copied into memory until the course's items are first accessed.
+     *
+     * @param name The name of the course.
+     * @param items The course's items, or {@code null} for none.
+     * @param recurring The course's recurring items, each with a different ID.
+     * @param nextRecurringId The lowest ID to give a recurring item added later. It's raised past the IDs of the
+     *                        provided recurring items if needed.
+     * @return Whether the course was created. If {@code false}, a course by that name has already been created.
+     */
+    public boolean addCourse(String name, ItemSource items, List<RecurringItem> recurring, int nextRecurringId) {
+        RecurringItem[] rules = recurring.toArray(RecurringItems.NONE);
+        Arrays.sort(rules, Comparator.comparingInt(rule -> rule.id));
+        ItemSource source = RecurringItems.of(items != null ? items : ItemList.EMPTY, rules);
+        ClassSchedule course =
+                new ClassSchedule(name, events, source, nextRecurringId, changeLock.readLock(), this);
+
+        // Hold the new course's lock until listeners have heard about it, so nobody can change it first
+        changeLock.readLock().lock();
+        course.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            // Return false if the course is already registered
+            if (courseSchedules.putIfAbsent(name, course) != null) {
+                return false;
+            }
+
+            publish(v -> v.with(course, course.copyAllItems()));
+            events.courseAdded(course);
+            return true;
+        } finally {
+            course.writeLock().unlock();
+            changeLock.readLock().unlock();
+        }
     }
 
     /**
@@ -91,32 +287,577 @@ public class ScheduleHandler {
      * @return Whether the course was removed. If {@code false}, there was not a course registered with the provided name.
      */
     public boolean removeCourse(String name) {
-        return courseSchedules.remove(name) != null;
+        ClassSchedule course = courseSchedules.get(name);
+        if (course == null) {
+            return false;
+        }
+
+        // Mark it removed under its lock so no change to it can land after listeners hear it's gone
+        changeLock.readLock().lock();
+        course.writeLock().lock();
+        try {
+            checkAcceptingChanges();
+            if (course.isRemoved() || !courseSchedules.remove(name, course)) {
+                return false;
+            }
+
+            course.markRemoved();
+            publish(v -> v.without(course));
+            events.courseRemoved(course);
+            return true;
+        } finally {
+            course.writeLock().unlock();
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the next items due across every course, in due date order.
+     * Items due on the same day are ordered by course name, then by the order they were added.
+     *
+     * <p>Each course's items are already sorted, so this merges them lazily, visiting only the items it returns
+     * plus one per course. The items are read from the current version, so changes don't have to wait.</p>
+     *
+     * @param fromDay The earliest due day to include, as the number of days since 1970-01-01.
+     * @param limit The maximum number of items to return.
+     * @return Up to {@code limit} items due on or after {@code fromDay}.
+     */
+    public List<AgendaItem> agenda(long fromDay, int limit) {
+        List<AgendaItem> agenda = new ArrayList<>(Math.min(limit, 1024));
+        merge(getVersion().courses(), fromDay, Long.MAX_VALUE, 0, limit, agenda::add);
+        return agenda;
+    }
+
+    /**
+     * Count the items due within a range of days. Each course is searched in {@code O(log n)} time without visiting
+     * its items, and many courses are searched in parallel as described by {@link #mapCourses}.
+     *
+     * @param fromDay The first due day to include, as the number of days since 1970-01-01.
+     * @param toDay The last due day to include.
+     * @param courses The courses to search, such as the courses in {@link #getVersion()}.
+     * @return The number of items due from {@code fromDay} through {@code toDay}.
+     */
+    public long countDueBetween(long fromDay, long toDay, List<ScheduleVersion.Course> courses) {
+        long count = 0;
+        for (long range : mapCourses(courses, course -> range(course.items(), fromDay, toDay))) {
+            count += (int) range - (range >>> 32);
+        }
+        return count;
+    }
+
+    /**
+     * Pass the items due within a range of days to the provided action as they're found, in due date order.
+     * Items due on the same day are ordered by course name, then by the order they were added.
+     *
+     * <p>Each course is searched for the start of the range in {@code O(log n)} time, then the courses' items are
+     * merged lazily, so only the items passed along (and any skipped before them) are visited. Counting and visiting
+     * the same courses from one version always agree.</p>
+     *
+     * @param fromDay The first due day to include, as the number of days since 1970-01-01.
+     * @param toDay The last due day to include.
+     * @param courses The courses to search, such as the courses in {@link #getVersion()}.
+     * @param skip The number of items at the start of the range to leave out.
+     * @param limit The maximum number of items to pass along.
+     * @param action Receives each item.
+     */
+    public void dueBetween(long fromDay, long toDay, List<ScheduleVersion.Course> courses, long skip, long limit,
+                           Consumer<AgendaItem> action) {
+        merge(courses, fromDay, toDay, skip, limit, action);
+    }
+
+    /**
+     * Stop every thread from changing courses or items until the returned handle is closed.
+     * Changes already in progress finish first. While paused, the whole schedule can be read as it was at one
+     * moment, and the pausing thread itself may still make changes.
+     *
+     * @return A handle that resumes changes when closed.
+     */
+    public Paused pauseChanges() {
+        changeLock.writeLock().lock();
+        return () -> changeLock.writeLock().unlock();
+    }
+
+    /**
+     * Refuse every later change, such as once a store can no longer save them, so the courses in memory don't move
+     * further ahead of what's on disk. Adding or removing a course, changing a course's items or undoing then throws an
+     * {@link UncheckedIOException} with the provided cause, which commands report as a storage error. Reading is
+     * unaffected. Only the first cause is kept.
+     *
+     * @param cause Why changes are refused.
+     */
+    public void refuseChanges(IOException cause) {
+        synchronized (changeLock) {
+            if (refusedChanges == null) {
+                refusedChanges = cause;
+            }
+        }
+    }
+
+    /**
+     * Check whether changes are still accepted. Every change calls this while holding its locks, before making any
+     * change.
+     *
+     * @throws UncheckedIOException If changes have been refused.
+     */
+    void checkAcceptingChanges() {
+        IOException cause = refusedChanges;
+        if (cause != null) {
+            throw new UncheckedIOException("Changes can no longer be saved", cause);
+        }
+    }
+
+    /**
+     * Compute a number for each course, such as a count of its items. When there are many courses, they're split into
+     * runs of neighbouring courses that are computed in parallel on this handler's fork-join pool, so the results
+     * still line up with the courses.
+     *
+     * @param courses The courses, such as the courses in {@link #getVersion()}.
+     * @param mapper Computes each course's number. It may be called from several threads at once.
+     * @return Each course's number, in the same order as the courses.
+     */
+    public long[] mapCourses(List<ScheduleVersion.Course> courses, ToLongFunction<ScheduleVersion.Course> mapper) {
+        long[] results = new long[courses.size()];
+        if (courses.size() <= FAN_OUT_BATCH) {
+            for (int i = 0; i < results.length; i ++) {
+                results[i] = mapper.applyAsLong(courses.get(i));
+            }
+        } else {
+            pool.invoke(new MapTask(courses, mapper, results, 0, results.length));
+        }
+        return results;
+    }
+
+    /**
+     * Replace the pool used to run queries across many courses in parallel. The pool isn't shut down by this handler.
+     *
+     * @param pool The new pool, such as one limited to fewer threads than there are cores.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * Register a listener to be notified after every change to the courses and their items.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(ScheduleListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop notifying the provided listener of changes.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(ScheduleListener listener) {
+        listeners.remove(listener);
     }
 
     /**
      * Attempts to execute the command in the input.
      *
+     * @param session The session of the user who entered the input.
      * @param input The user's input.
-     * @return Whether there is a command by the name provided in the input.
+     * @return The outcome of the command, or {@link CommandResult#UNKNOWN_COMMAND} if there is no command by the
+     * name provided in the input.
      */
-    public boolean execute(String input) {
-        // First, try to execute a course command
-        if (currentSchedule.isPresent() && courseCommands.execute(input)) {
-            return true;
+    public CommandResult execute(Session session, String input) {
+        return execute(session, input, null);
+    }
+
+    /**
+     * Attempts to execute the command in input that may have already been split, such as by a thread reading ahead.
+     *
+     * @param session The session of the user who entered the input.
+     * @param input The user's input, which is what {@code undo} reports.
+     * @param line The input split by {@link CommandLine#parse(String)}, or {@code null} to split it here.
+     * @return The outcome of the command, or {@link CommandResult#UNKNOWN_COMMAND} if there is no command by the
+     * name provided in the input.
+     */
+    public CommandResult execute(Session session, String input, CommandLine line) {
+        // A command run by another command is undone along with it
+        if (checkpoint.get() != null) {
+            return line != null ? commands.execute(session, line) : commands.execute(session, input);
+        }
+
+        Checkpoint point = new Checkpoint(session);
+        checkpoint.set(point);
+        try {
+            // Course commands are tried first when a course is selected
+            return line != null ? commands.execute(session, line) : commands.execute(session, input);
+        } finally {
+            checkpoint.remove();
+            if (point.before != null && !point.ignored) {
+                synchronized (undoHistory) {
+                    long after = point.interleaved ? -1 : point.after;
+                    undoHistory.addLast(new UndoEntry(point.before, input, session, after));
+                    if (undoHistory.size() > MAX_UNDO) {
+                        undoHistory.removeFirst();
+                    }
+                }
+            }
+
+            // Courses being changed by each command stay loaded, so a run of changes to one course only loads it once.
+            // Courses other threads are using right now are left for a later command to compact.
+            if (compactStorage) {
+                for (ClassSchedule course : courseSchedules.values()) {
+                    if (course.isLoaded() && (point.changed == null || !point.changed.contains(course))) {
+                        course.compactIfIdle();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Store every course's items compactly, as described by {@link ClassSchedule#compact()}.
+     *
+     * @return The number of items compacted.
+     */
+    public long compact() {
+        long count = 0;
+        for (ClassSchedule course : courseSchedules.values()) {
+            count += course.compact();
+        }
+        return count;
+    }
+
+    /**
+     * Choose whether courses are kept compact: each time a command finishes, every course it didn't change is
+     * compacted unless another thread is using it, so only the courses being changed hold an object per item. This
+     * saves memory at the cost of loading a course again the next time it changes. Enabling it compacts every course
+     * right away.
+     *
+     * @param compactStorage Whether to keep courses compact.
+     */
+    public void setCompactStorage(boolean compactStorage) {
+        this.compactStorage = compactStorage;
+        if (compactStorage) {
+            compact();
+        }
+    }
+
+    /**
+     * @return Whether courses are kept compact, as set by {@link #setCompactStorage(boolean)}.
+     */
+    public boolean isCompactStorage() {
+        return compactStorage;
+    }
+
+    /**
+     * Undo the most recent command that changed anything, putting every course and item back the way it was before
+     * that command ran. Undo history is shared by every session, so only the session that ran the most recent command
+     * can undo it, and only while nothing else has changed since it started; undoing never reverts another session's
+     * changes. Only the last {@value #MAX_UNDO} commands can be undone.
+     *
+     * @param session The session undoing its command.
+     * @return The input of the command that was undone, or empty if there's nothing to undo.
+     * @throws IllegalStateException If the most recent command was run by another session, or something else changed
+     * while or after it ran.
+     */
+    public Optional<String> undo(Session session) {
+        // Undoing isn't itself recorded
+        Checkpoint point = checkpoint.get();
+        if (point != null) {
+            point.ignored = true;
+        }
+
+        synchronized (undoHistory) {
+            checkAcceptingChanges();
+            try (Paused ignored = pauseChanges()) {
+                UndoEntry entry = undoHistory.peekLast();
+                if (entry == null) {
+                    return Optional.empty();
+                }
+                if (entry.session != session) {
+                    throw new IllegalStateException("The most recent change was made by another session");
+                }
+                if (entry.after != getVersion().number()) {
+                    throw new IllegalStateException("Something else changed since " + entry.input);
+                }
+                undoHistory.removeLast();
+                restore(entry.version);
+
+                // The command before can be undone next if it ended where this one started
+                UndoEntry previous = undoHistory.peekLast();
+                if (previous != null && previous.after == entry.version.number()) {
+                    undoHistory.removeLast();
+                    undoHistory.addLast(new UndoEntry(previous.version, previous.input, previous.session,
+                            getVersion().number()));
+                }
+                return Optional.of(entry.input);
+            }
+        }
+    }
+
+    // Must be called while changes are paused; makes the courses match an earlier version, notifying listeners of
+    // each change as usual
+    private void restore(ScheduleVersion target) {
+        // Courses that were added since, or removed and added again, are removed
+        for (ScheduleVersion.Course course : getVersion().courses()) {
+            Optional<ScheduleVersion.Course> old = target.course(course.name());
+            if (old.isEmpty() || old.get().course() != course.course()) {
+                removeCourse(course.name());
+            }
+        }
+
+        // Courses that are still here get their old items back, and the rest are added again
+        for (ScheduleVersion.Course old : target.courses()) {
+            ClassSchedule course = courseSchedules.get(old.name());
+            if (course == old.course()) {
+                course.restoreItems(old.items());
+            } else {
+                addCourse(old.name(), old.items(), List.of(), old.course().getNextRecurringId());
+            }
+        }
+    }
+
+    // Only called by a course while it holds its write lock, after replacing its items
+    void publish(ClassSchedule course, ItemSource items) {
+        publish(v -> v.with(course, items));
+        Checkpoint point = checkpoint.get();
+        if (point != null) {
+            if (point.changed == null) {
+                point.changed = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+            point.changed.add(course);
         }
+    }
+
+    // Only called by a course while it holds its write lock, after storing the same items differently, so there's
+    // nothing to undo
+    void republish(ClassSchedule course, ItemSource items) {
+        version.updateAndGet(v -> v.withStored(course, items));
+    }
+
+    private void publish(UnaryOperator<ScheduleVersion> change) {
+        ScheduleVersion previous = version.getAndUpdate(change);
+        Checkpoint point = checkpoint.get();
+        if (point != null) {
+            if (point.before == null) {
+                point.before = previous;
+            } else if (previous.number() != point.after) {
+                point.interleaved = true;
+            }
+            point.after = previous.number() + 1;
+        }
+    }
+
+    /**
+     * Get the index used to search course and item names. It's built the first time it's needed, then kept up to date
+     * as courses and items change.
+     *
+     * @return The name index.
+     */
+    public NameIndex getNameIndex() {
+        NameIndex index = nameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameIndex;
+                if (index == null) {
+                    index = NameIndex.open(this);
+                    nameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the cache of the text {@code show} and {@code show-item} last printed for each course.
+     *
+     * @return The render cache.
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
 
-        // If it wasn't one of them, try a schedule command
-        return scheduleCommands.execute(input);
+    /**
+     * Get the current day according to this handler's clock.
+     * Commands should read this once and reuse it for every comparison they make.
+     *
+     * @return The current day, as the number of days since 1970-01-01.
+     */
+    public long today() {
+        return LocalDate.now(clock).toEpochDay();
     }
 
     /**
-     * Get the currently selected course.
+     * Replace the clock used to decide which items are past-due.
      *
-     * @return An optional-wrapped course.
+     * @param clock The new clock, such as {@link Clock#fixed} for repeatable results.
      */
-    public Optional<ClassSchedule> getCurrentSchedule() {
-        return currentSchedule;
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Get the clock used to decide which items are past-due.
+     *
+     * @return The current clock.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * A handle returned by {@link #pauseChanges()}.
+     */
+    @FunctionalInterface
+    public interface Paused extends AutoCloseable {
+
+        /**
+         * Let other threads make changes again.
+         */
+        @Override
+        void close();
+
+    }
+
+    private void merge(List<ScheduleVersion.Course> courses, long fromDay, long toDay, long skip, long limit,
+                       Consumer<AgendaItem> action) {
+        if (limit <= 0) {
+            return;
+        }
+
+        // Start each course at its first item in the range
+        PriorityQueue<AgendaCursor> queue = new PriorityQueue<>();
+        long[] ranges = mapCourses(courses, course -> range(course.items(), fromDay, toDay));
+        for (int i = 0; i < ranges.length; i ++) {
+            int start = (int) (ranges[i] >>> 32);
+            int end = (int) ranges[i];
+            if (start < end) {
+                ScheduleVersion.Course course = courses.get(i);
+                queue.add(new AgendaCursor(course.course(), course.items(), start, end));
+            }
+        }
+
+        // A single course needs no merging, so skipped items can be jumped over
+        if (queue.size() == 1) {
+            AgendaCursor cursor = queue.poll();
+            long start = Math.min(cursor.index + skip, cursor.end);
+            long end = Math.min(start + limit, cursor.end);
+            for (int i = (int) start; i < end; i ++) {
+                action.accept(new AgendaItem(cursor.course, cursor.items.get(i)));
+            }
+            return;
+        }
+
+        // Repeatedly take the earliest item, then move that course's cursor forward
+        while (limit > 0 && !queue.isEmpty()) {
+            AgendaCursor cursor = queue.poll();
+            if (skip > 0) {
+                skip --;
+            } else {
+                action.accept(new AgendaItem(cursor.course, cursor.items.get(cursor.index)));
+                limit --;
+            }
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    // The command running on a thread
+    private static final class Checkpoint {
+
+        final Session session;
+
+        // The version before the command's first change, or null if it hasn't changed anything
+        ScheduleVersion before;
+
+        // The version number after the command's last change, and whether another change came between two of its own
+        long after;
+        boolean interleaved;
+
+        // Set if the command undid something, so it isn't recorded
+        boolean ignored;
+
+        // The courses whose items the command changed, or null if there aren't any
+        Set<ClassSchedule> changed;
+
+        Checkpoint(Session session) {
+            this.session = session;
+        }
+
+    }
+
+    // A version to go back to, the input and session of the command that changed it, and the version number after its
+    // last change, or -1 if another change came between two of its own so it can't be undone
+    private record UndoEntry(ScheduleVersion version, String input, Session session, long after) {
+    }
+
+    // Find the items due within a range of days, as the start index in the high half and the end in the low half
+    private static long range(ItemSource items, long fromDay, long toDay) {
+        int start = items.indexAfter(fromDay - 1);
+        return (long) start << 32 | items.indexAfter(toDay, start);
+    }
+
+    // Computes the numbers for a run of courses, splitting it in half until it's small enough
+    private static final class MapTask extends RecursiveAction {
+
+        private final List<ScheduleVersion.Course> courses;
+        private final ToLongFunction<ScheduleVersion.Course> mapper;
+        private final long[] results;
+        private final int start;
+        private final int end;
+
+        MapTask(List<ScheduleVersion.Course> courses, ToLongFunction<ScheduleVersion.Course> mapper, long[] results,
+                int start, int end) {
+            this.courses = courses;
+            this.mapper = mapper;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= FAN_OUT_BATCH) {
+                for (int i = start; i < end; i ++) {
+                    results[i] = mapper.applyAsLong(courses.get(i));
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new MapTask(courses, mapper, results, start, mid), new MapTask(courses, mapper, results, mid, end));
+        }
+
+    }
+
+    // A position within one course's items while merging several courses' items in due date order
+    private static final class AgendaCursor implements Comparable<AgendaCursor> {
+
+        final ClassSchedule course;
+        final ItemSource items;
+        final int end;
+        int index;
+        long dueDay;
+
+        AgendaCursor(ClassSchedule course, ItemSource items, int index, int end) {
+            this.course = course;
+            this.items = items;
+            this.index = index;
+            this.end = end;
+            this.dueDay = items.dueDay(index);
+        }
+
+        // Returns false once there are no more items in the range
+        boolean advance() {
+            if (++ index >= end) {
+                return false;
+            }
+            dueDay = items.dueDay(index);
+            return true;
+        }
+
+        @Override
+        public int compareTo(AgendaCursor other) {
+            int cmp = Long.compare(dueDay, other.dueDay);
+            return cmp != 0 ? cmp : course.name.compareTo(other.course.name);
+        }
+
     }
 
 }
@@ -0,0 +1,64 @@
+package com.cjburkey.itcs3112;
+
+/**
+ * Receives a callback after each change to the courses, items or recurring items in a {@link ScheduleHandler}.
+ * Callbacks run on the thread that made the change.
+ */
+public interface ScheduleListener {
+
+    /**
+     * Called after a course is created.
+     * The course may already have items if it was loaded from a snapshot.
+     *
+     * @param course The new course.
+     */
+    default void courseAdded(ClassSchedule course) {
+    }
+
+    /**
+     * Called after a course is removed.
+     *
+     * @param course The removed course.
+     */
+    default void courseRemoved(ClassSchedule course) {
+    }
+
+    /**
+     * Called after an item is added to a course.
+     *
+     * @param course The course the item was added to.
+     * @param item The new item.
+     */
+    default void itemAdded(ClassSchedule course, ScheduledItem item) {
+    }
+
+    /**
+     * Called after an item is removed from a course.
+     *
+     * @param course The course the item was removed from.
+     * @param item The removed item.
+     */
+    default void itemRemoved(ClassSchedule course, ScheduledItem item) {
+    }
+
+    /**
+     * Called after a recurring item is added to a course. Skipping one of its occurrences replaces it, which is
+     * reported as the old one being removed and the new one added.
+     *
+     * @param course The course the recurring item was added to.
+     * @param rule The new recurring item.
+     */
+    default void recurringAdded(ClassSchedule course, RecurringItem rule) {
+    }
+
+    /**
+     * Called after a recurring item is removed from a course, or replaced as described by
+     * {@link #recurringAdded(ClassSchedule, RecurringItem)}.
+     *
+     * @param course The course the recurring item was removed from.
+     * @param rule The removed recurring item.
+     */
+    default void recurringRemoved(ClassSchedule course, RecurringItem rule) {
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.cjburkey.itcs3112;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Every course in a {@link ScheduleHandler} and its items, as they were at one moment.
+ *
+ * <p>A version never changes, so it can be read without locks while other threads keep changing the handler. Each
+ * change publishes a new version sharing everything the change didn't touch, so getting the current version takes
+ * constant time, and keeping old versions (such as for undo) costs little.</p>
+ */
+public final class ScheduleVersion {
+
+    static final ScheduleVersion EMPTY = new ScheduleVersion(ChunkTree.empty(), 0);
+
+    /**
+     * One course as it was in a version.
+     *
+     * @param course The course, which may have changed or been removed since.
+     * @param items The course's items as they were in the version.
+     */
+    public record Course(ClassSchedule course, ItemSource items) {
+
+        public String name() {
+            return course.name;
+        }
+
+        /**
+         * Count the items in this version that were due before now.
+         *
+         * @param today The current day, as the number of days since 1970-01-01.
+         * @return The number of past-due items.
+         */
+        public int countPastDue(long today) {
+            return course.countPastDue(items, today);
+        }
+
+    }
+
+    // Sorted by name
+    private final ChunkTree<Course> courses;
+    private final long number;
+
+    private ScheduleVersion(ChunkTree<Course> courses, long number) {
+        this.courses = courses;
+        this.number = number;
+    }
+
+    /**
+     * Get how many changes were made to the handler before this version.
+     * A later version never has a smaller number, and only has the same number if it stores the same items
+     * differently.
+     *
+     * @return The version number.
+     */
+    public long number() {
+        return number;
+    }
+
+    /**
+     * Get every course in this version.
+     *
+     * @return The courses, sorted by name.
+     */
+    public List<Course> courses() {
+        return new Courses();
+    }
+
+    /**
+     * Find the course with the provided name in this version.
+     *
+     * @param name The course's name.
+     * @return The course, or empty if there isn't one by that name.
+     */
+    public Optional<Course> course(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? Optional.of(courses.get(index)) : Optional.empty();
+    }
+
+    // Create the next version with a course's items replaced, adding the course if it isn't in this version
+    ScheduleVersion with(ClassSchedule course, ItemSource items) {
+        int index = indexOf(course.name);
+        Course entry = new Course(course, items);
+        return new ScheduleVersion(index >= 0 ? courses.set(index, entry) : courses.insert(-index - 1, entry),
+                number + 1);
+    }
+
+    // Create a version with a course's same items stored differently, which isn't counted as a change, or return this
+    // version if the course isn't in it
+    ScheduleVersion withStored(ClassSchedule course, ItemSource items) {
+        int index = indexOf(course.name);
+        if (index < 0 || courses.get(index).course != course) {
+            return this;
+        }
+        return new ScheduleVersion(courses.set(index, new Course(course, items)), number);
+    }
+
+    // Create the next version without a course, or return this version if the course isn't in it
+    ScheduleVersion without(ClassSchedule course) {
+        int index = indexOf(course.name);
+        if (index < 0 || courses.get(index).course != course) {
+            return this;
+        }
+        return new ScheduleVersion(courses.remove(index), number + 1);
+    }
+
+    // Binary search by name, returning (-insertion point - 1) if there's no course by the name
+    private int indexOf(String name) {
+        int low = 0;
+        int high = courses.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = courses.get(mid).name().compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private final class Courses extends AbstractList<Course> implements RandomAccess {
+
+        @Override
+        public Course get(int index) {
+            return courses.get(index);
+        }
+
+        @Override
+        public int size() {
+            return courses.size();
+        }
+
+    }
+
+}
@@ -1,41 +1,45 @@
 package com.cjburkey.itcs3112;
 
-import java.time.Instant;
-import java.util.Date;
-
 /**
  * A single item with a due date.
  */
 public class ScheduledItem implements Comparable<ScheduledItem> {
 
+    /**
+     * This item's ID within its course, which never changes.
+     */
+    public final int id;
+
     /**
      * The name of this assignment.
      */
     public final String name;
 
     /**
-     * The date this assignment is due.
+     * The day this assignment is due, as the number of days since 1970-01-01.
      */
-    public Date dueDate;
+    public final long dueDay;
 
-    public ScheduledItem(String name, Date dueDate) {
+    public ScheduledItem(int id, String name, long dueDay) {
+        this.id = id;
         this.name = name;
-        this.dueDate = dueDate;
+        this.dueDay = dueDay;
     }
 
     /**
-     * Check whether this item was due before now.
+     * Check whether this item was due before the provided day.
+     * An item becomes past-due as soon as its due day begins.
      *
+     * @param today The current day, as the number of days since 1970-01-01.
      * @return Whether this item was due before now.
      */
-    public boolean isPastDue() {
-        Date now = Date.from(Instant.now());
-        return dueDate.before(now);
+    public boolean isPastDue(long today) {
+        return dueDay <= today;
     }
 
     @Override
     public int compareTo(ScheduledItem o) {
-        return dueDate.compareTo(o.dueDate);
+        return Long.compare(dueDay, o.dueDay);
     }
 
 }
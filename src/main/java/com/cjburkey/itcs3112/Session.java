@@ -0,0 +1,93 @@
+package com.cjburkey.itcs3112;
+
+import com.cjburkey.itcs3112.cmd.Renderer;
+
+import java.io.PrintStream;
+import java.util.Optional;
+
+/**
+ * The state belonging to one user of a {@link ScheduleHandler}, such as which course they have selected and where
+ * command output should go.
+ * Many sessions can share one handler, but each session should only be used by one thread at a time.
+ */
+public class Session {
+
+    // Where command output and errors are written, or `null` to use `System.out` and `System.err`
+    private final PrintStream out;
+    private final PrintStream err;
+
+    // The currently selected course
+    private ClassSchedule currentSchedule;
+
+    // Reused by each command this session runs
+    private final Renderer renderer = new Renderer();
+
+    /**
+     * Create a session that writes to whatever {@code System.out} and {@code System.err} are at the time.
+     */
+    public Session() {
+        this(null, null);
+    }
+
+    /**
+     * Create a session that writes to the provided streams.
+     *
+     * @param out The stream for command output.
+     * @param err The stream for error messages.
+     */
+    public Session(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Get the stream commands should write their output to.
+     *
+     * @return The output stream.
+     */
+    public PrintStream out() {
+        return out != null ? out : System.out;
+    }
+
+    /**
+     * Get the stream commands should write error messages to.
+     *
+     * @return The error stream.
+     */
+    public PrintStream err() {
+        return err != null ? err : System.err;
+    }
+
+    /**
+     * Get the renderer commands should write their item listings through.
+     * It writes to {@link #out()} and applies any {@code --limit} and {@code --offset} given to the command.
+     *
+     * @return This session's renderer.
+     */
+    public Renderer renderer() {
+        return renderer;
+    }
+
+    /**
+     * Select the provided course.
+     *
+     * @param course The course to select, or {@code null} to deselect.
+     */
+    public void select(ClassSchedule course) {
+        currentSchedule = course;
+    }
+
+    /**
+     * Get the currently selected course.
+     * If the course has been removed since it was selected, it's deselected and nothing is returned.
+     *
+     * @return An optional-wrapped course.
+     */
+    public Optional<ClassSchedule> getCurrentSchedule() {
+        if (currentSchedule != null && currentSchedule.isRemoved()) {
+            currentSchedule = null;
+        }
+        return Optional.ofNullable(currentSchedule);
+    }
+
+}
@@ -1,12 +1,24 @@
 package com.cjburkey.itcs3112.cmd;
 
+import com.cjburkey.itcs3112.AgendaItem;
 import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.DateCodec;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
 import com.cjburkey.itcs3112.ScheduleHandler;
-import com.cjburkey.itcs3112.ScheduledItem;
+import com.cjburkey.itcs3112.ScheduleVersion;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.persist.ExchangeFile;
+import com.cjburkey.itcs3112.persist.ExchangeFormat;
+import com.cjburkey.itcs3112.persist.SnapshotFile;
+import com.cjburkey.itcs3112.search.NameIndex;
 
-import java.text.DateFormat;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -23,22 +35,25 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void execute(String[] args) {
-            System.out.println("Global commands:");
-            System.out.println("  exit");
-            System.out.println("    Description: Exits the application");
-            scheduleHandler.scheduleCommands.getCommands().forEach(CmdHelp::printCmd);
+        public boolean execute(Session session, String[] args) {
+            session.out().println("Wrap arguments in double quotes to include spaces, like `add-item \"Final Project\" 2022-12-11`.");
+            session.out().println();
+            session.out().println("Global commands:");
+            session.out().println("  exit");
+            session.out().println("    Description: Exits the application");
+            scheduleHandler.scheduleCommands.getCommands().forEach(c -> printCmd(session.out(), c));
 
-            System.out.println();
-            System.out.println("Per-course commands:");
-            System.out.println("(A course must be selected for these to work!)");
-            scheduleHandler.courseCommands.getCommands().forEach(CmdHelp::printCmd);
+            session.out().println();
+            session.out().println("Per-course commands:");
+            session.out().println("(A course must be selected for these to work!)");
+            scheduleHandler.courseCommands.getCommands().forEach(c -> printCmd(session.out(), c));
+            return true;
         }
 
-        private static void printCmd(Command cmd) {
-            System.out.printf("  %s\n", cmd.name);
-            System.out.printf("    Usage: %s\n", cmd.getUsageString());
-            System.out.printf("    Description: %s\n", cmd.getDescription());
+        private static void printCmd(PrintStream out, Command cmd) {
+            out.printf("  %s\n", cmd.name);
+            out.printf("    Usage: %s\n", cmd.getUsageString());
+            out.printf("    Description: %s\n", cmd.getDescription());
         }
 
         @Override
@@ -57,14 +72,15 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void execute(String[] args) {
+        public boolean execute(Session session, String[] args) {
             // Try to add the course
             String name = args[0];
-            if (scheduleHandler.addCourse(name) && scheduleHandler.selectCourse(name)) {
-                System.out.printf("Created & selected course: \"%s\".\n", name);
-            } else {
-                System.err.printf("Course by name of \"%s\" already exists.\n", name);
+            if (scheduleHandler.addCourse(name) && scheduleHandler.selectCourse(session, name)) {
+                session.out().printf("Created & selected course: \"%s\".\n", name);
+                return true;
             }
+            session.err().printf("Course by name of \"%s\" already exists.\n", name);
+            return false;
         }
 
         @Override
@@ -84,14 +100,15 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void execute(String[] args) {
+        public boolean execute(Session session, String[] args) {
             // Try to remove the course
             String name = args[0];
             if (scheduleHandler.removeCourse(name)) {
-                System.out.printf("Removed course: \"%s\".\n", name);
-            } else {
-                System.err.printf("No course by name \"%s\".\n", name);
+                session.out().printf("Removed course: \"%s\".\n", name);
+                return true;
             }
+            session.err().printf("No course by name \"%s\".\n", name);
+            return false;
         }
 
         @Override
@@ -111,17 +128,22 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void execute(String[] args) {
+        public boolean execute(Session session, String[] args) {
             // Print courses
-            System.out.println("Courses:");
-            Collection<ClassSchedule> courses = scheduleHandler.getCourseSchedules();
-            for (ClassSchedule course : courses) {
-                System.out.printf("- %s (%s due, %s past-due)\n",
-                        course.name, course.getFutureDue().size(), course.getPastDue().size());
+            Renderer out = session.renderer();
+            out.append("Courses:").newline();
+            long today = scheduleHandler.today();
+            List<ScheduleVersion.Course> courses = scheduleHandler.getVersion().courses();
+            long[] pastDue = scheduleHandler.mapCourses(courses, course -> course.countPastDue(today));
+            for (int i = 0; i < pastDue.length; i ++) {
+                ScheduleVersion.Course course = courses.get(i);
+                out.append("- ").append(course.name()).append(" (").append(course.items().size() - pastDue[i])
+                        .append(" due, ").append(pastDue[i]).append(" past-due)").newline();
             }
             if (courses.size() == 0) {
-                System.out.println("  No courses! Use `add-course <name>` to create one.");
+                out.append("  No courses! Use `add-course <name>` to create one.").newline();
             }
+            return true;
         }
 
         @Override
@@ -141,23 +163,25 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void execute(String[] args) {
+        public boolean execute(Session session, String[] args) {
             if (args.length > 0) {
                 // Try to select the course
                 String name = args[0];
-                if (scheduleHandler.selectCourse(name)) {
-                    System.out.printf("Selected course: \"%s\".\n", name);
-                } else {
-                    System.err.printf("No course by name \"%s\".\n", name);
+                if (scheduleHandler.selectCourse(session, name)) {
+                    session.out().printf("Selected course: \"%s\".\n", name);
+                    return true;
                 }
+                session.err().printf("No course by name \"%s\".\n", name);
+                return false;
+            }
+
+            if (session.getCurrentSchedule().isPresent()) {
+                scheduleHandler.selectCourse(session, null);
+                session.out().println("Deselected course");
             } else {
-                if (scheduleHandler.getCurrentSchedule().isPresent()) {
-                    scheduleHandler.selectCourse(null);
-                    System.out.println("Deselected course");
-                } else {
-                    System.out.println("No course selected");
-                }
+                session.out().println("No course selected");
             }
+            return true;
         }
 
         @Override
@@ -174,45 +198,463 @@ public final class CmdsImpl {
 
         public CmdShow(ScheduleHandler scheduleHandler) {
             super("show", scheduleHandler, 0);
+            enablePaging();
         }
 
         @Override
-        public void execute(String[] args) {
+        public boolean execute(Session session, String[] args) {
             // Print courses
-            System.out.println("Courses:");
-            Collection<ClassSchedule> courses = scheduleHandler.getCourseSchedules();
-            for (ClassSchedule course : courses) {
-                System.out.printf("  %s:\n", course.name);
-
-                // Print upcoming assignments in order from least to most recent
-                System.out.println("    Upcoming:");
-                List<ScheduledItem> items
-                        = course.getFutureDue().stream().sorted().toList();
-                for (ScheduledItem item : items) {
-                    System.out.printf("    - [%s] %s\n", formatDate(item.dueDate), item.name);
+            Renderer out = session.renderer();
+            out.append("Courses:").newline();
+            long today = scheduleHandler.today();
+            List<ScheduleVersion.Course> courses = scheduleHandler.getVersion().courses();
+            long[] pastDue = scheduleHandler.mapCourses(courses, course -> course.countPastDue(today));
+            for (int i = 0; i < pastDue.length; i ++) {
+                ScheduleVersion.Course course = courses.get(i);
+                out.append("  ").append(course.name()).append(':').newline();
+                printItems(out, scheduleHandler.getRenderCache(), course, (int) pastDue[i], today, "    ");
+            }
+            if (courses.size() == 0) {
+                out.append("  No courses! Use `add-course <name>` to create one.").newline();
+            }
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Show all courses and their upcoming/past-due assignments";
+        }
+
+    }
+
+    /**
+     * Command to show the next items due across every course.
+     */
+    public static final class CmdAgenda extends Command {
+
+        // Number of items shown when no limit is provided
+        private static final int DEFAULT_LIMIT = 10;
+
+        public CmdAgenda(ScheduleHandler scheduleHandler) {
+            super("agenda", scheduleHandler, 0, "limit", "from date in format yyyy-MM-dd");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            int limit = DEFAULT_LIMIT;
+            if (args.length > 0) {
+                try {
+                    limit = Integer.parseInt(args[0]);
+                } catch (NumberFormatException e) {
+                    limit = -1;
                 }
-                if (items.size() == 0) {
-                    System.out.println("      None!");
+                if (limit < 1) {
+                    session.err().printf("Invalid limit \"%s\" (must be a positive number)\n", args[0]);
+                    return false;
                 }
+            }
 
-                // Print past-due assignments in order from most to least recent
-                System.out.println("    Past-due:");
-                items = course.getPastDue().stream().sorted(Collections.reverseOrder()).toList();
-                for (ScheduledItem item : items) {
-                    System.out.printf("    - [%s] %s\n", formatDate(item.dueDate), item.name);
+            // Start with the upcoming items by default, matching `show`
+            long fromDay = scheduleHandler.today() + 1;
+            if (args.length > 1) {
+                try {
+                    fromDay = DateCodec.parse(args[1]);
+                } catch (ParseException e) {
+                    session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                    return false;
                 }
-                if (items.size() == 0) {
-                    System.out.println("      None!");
+            }
+
+            // Print the items
+            Renderer out = session.renderer();
+            out.append("Agenda:").newline();
+            List<AgendaItem> agenda = scheduleHandler.agenda(fromDay, limit);
+            for (AgendaItem entry : agenda) {
+                out.append("- [").date(entry.item().dueDay).append("] ").append(entry.course().name).append(": ")
+                        .append(entry.item().name).newline();
+            }
+            if (agenda.size() == 0) {
+                out.append("  Nothing due!").newline();
+            }
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Show the next items due across all courses, starting tomorrow or at the provided date";
+        }
+
+    }
+
+    /**
+     * Command to show the items due within a range of dates, across every course or in one.
+     */
+    public static final class CmdDueBetween extends Command {
+
+        public CmdDueBetween(ScheduleHandler scheduleHandler) {
+            super("due-between", scheduleHandler, 2, "from date in format yyyy-MM-dd", "to date in format yyyy-MM-dd", "course");
+            enablePaging();
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            final long fromDay;
+            final long toDay;
+            try {
+                fromDay = DateCodec.parse(args[0]);
+                toDay = DateCodec.parse(args[1]);
+            } catch (ParseException e) {
+                session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                return false;
+            }
+            if (fromDay > toDay) {
+                session.err().println("The from date must not be after the to date");
+                return false;
+            }
+
+            // Count and print the items from one version, so the page matches the count
+            ScheduleVersion version = scheduleHandler.getVersion();
+            List<ScheduleVersion.Course> courses = version.courses();
+            if (args.length > 2) {
+                Optional<ScheduleVersion.Course> course = version.course(args[2]);
+                if (course.isEmpty()) {
+                    session.err().printf("No course by name \"%s\".\n", args[2]);
+                    return false;
                 }
+                courses = List.of(course.get());
+            }
+
+            Renderer out = session.renderer();
+            out.append("Due from ").date(fromDay).append(" to ").date(toDay).append(':').newline();
+            int count = (int) Math.min(scheduleHandler.countDueBetween(fromDay, toDay, courses), Integer.MAX_VALUE);
+            int skip = out.skip(count);
+            int take = out.take(count - skip);
+            scheduleHandler.dueBetween(fromDay, toDay, courses, skip, take, entry -> out.append("- [")
+                    .date(entry.item().dueDay).append("] ").append(entry.course().name).append(": ")
+                    .append(entry.item().name).newline());
+            if (count == 0) {
+                out.append("  Nothing due!").newline();
+            }
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Show the items due between two dates (inclusive) across all courses, or in the provided course";
+        }
+
+    }
+
+    /**
+     * Command to find the courses and items whose names contain some text.
+     */
+    public static final class CmdFind extends Command {
+
+        public CmdFind(ScheduleHandler scheduleHandler) {
+            super("find", scheduleHandler, 1, "text");
+            enablePaging();
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            if (args[0].isEmpty()) {
+                session.err().println("Provide some text to find");
+                return false;
+            }
+            NameIndex index = scheduleHandler.getNameIndex();
+
+            // Print matching courses
+            Renderer out = session.renderer();
+            out.append("Courses:").newline();
+            List<ClassSchedule> courses = index.findCourses(args[0]);
+            int start = out.skip(courses.size());
+            int end = start + out.take(courses.size() - start);
+            for (int i = start; i < end; i ++) {
+                out.append("- ").append(courses.get(i).name).newline();
             }
             if (courses.size() == 0) {
-                System.out.println("  No courses! Use `add-course <name>` to create one.");
+                out.append("  None!").newline();
             }
+
+            // Print matching items
+            out.append("Items:").newline();
+            List<AgendaItem> items = index.findItems(args[0]);
+            start = out.skip(items.size());
+            end = start + out.take(items.size() - start);
+            for (int i = start; i < end; i ++) {
+                AgendaItem match = items.get(i);
+                out.append("- [").date(match.item().dueDay).append("] ").append(match.course().name).append(": ")
+                        .append(match.item().name).append(" (ID ").append(RecurringItem.formatId(match.item().id))
+                        .append(')').newline();
+            }
+            if (items.size() == 0) {
+                out.append("  None!").newline();
+            }
+            return true;
         }
 
         @Override
         public String getDescription() {
-            return "Show all courses and their upcoming/past-due assignments";
+            return "Find the courses and items whose names contain the provided text, ignoring case";
+        }
+
+    }
+
+    /**
+     * Command to save all courses to a snapshot file.
+     */
+    public static final class CmdSave extends Command {
+
+        public CmdSave(ScheduleHandler scheduleHandler) {
+            super("save", scheduleHandler, 1, "file");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            try {
+                SnapshotFile.save(scheduleHandler, Path.of(args[0]));
+            } catch (IOException | InvalidPathException e) {
+                session.err().printf("Failed to save to \"%s\" (%s)\n", args[0], e.getMessage());
+                return false;
+            }
+            session.out().printf("Saved %s courses to \"%s\".\n", scheduleHandler.getCourseSchedules().size(), args[0]);
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Save all courses and their items to a snapshot file";
+        }
+
+    }
+
+    /**
+     * Command to replace all courses with those from a snapshot file.
+     */
+    public static final class CmdLoad extends Command {
+
+        public CmdLoad(ScheduleHandler scheduleHandler) {
+            super("load", scheduleHandler, 1, "file");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            int count;
+            try {
+                count = SnapshotFile.load(scheduleHandler, Path.of(args[0]));
+            } catch (IOException | InvalidPathException e) {
+                session.err().printf("Failed to load from \"%s\" (%s)\n", args[0], e.getMessage());
+                return false;
+            }
+            session.out().printf("Loaded %s courses from \"%s\".\n", count, args[0]);
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Replace all courses with the ones saved in a snapshot file";
+        }
+
+    }
+
+    /**
+     * Command to add courses and items from a CSV or NDJSON file.
+     */
+    public static final class CmdImport extends Command {
+
+        public CmdImport(ScheduleHandler scheduleHandler) {
+            super("import", scheduleHandler, 1, "file", "format (csv or ndjson)");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            Optional<ExchangeFormat> format = readFormat(session, args);
+            if (format.isEmpty()) {
+                return false;
+            }
+
+            ExchangeFile.ImportResult result;
+            try {
+                result = ExchangeFile.importFrom(scheduleHandler, Path.of(args[0]), format.get());
+            } catch (IOException | InvalidPathException e) {
+                session.err().printf("Failed to import from \"%s\" (%s)\n", args[0], e.getMessage());
+                return false;
+            }
+            session.out().printf("Imported %s items and %s new courses from \"%s\".\n", result.items(), result.courses(), args[0]);
+            if (result.errors() > 0) {
+                session.err().printf("Skipped %s invalid records:\n", result.errors());
+                result.messages().forEach(message -> session.err().printf("  %s\n", message));
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Add courses and items from a CSV or NDJSON file, skipping invalid records";
+        }
+
+    }
+
+    /**
+     * Command to write all courses and items to a CSV or NDJSON file.
+     */
+    public static final class CmdExport extends Command {
+
+        public CmdExport(ScheduleHandler scheduleHandler) {
+            super("export", scheduleHandler, 1, "file", "format (csv or ndjson)");
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            Optional<ExchangeFormat> format = readFormat(session, args);
+            if (format.isEmpty()) {
+                return false;
+            }
+
+            long count;
+            try {
+                count = ExchangeFile.exportTo(scheduleHandler, Path.of(args[0]), format.get());
+            } catch (IOException | InvalidPathException e) {
+                session.err().printf("Failed to export to \"%s\" (%s)\n", args[0], e.getMessage());
+                return false;
+            }
+            session.out().printf("Exported %s items to \"%s\".\n", count, args[0]);
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Write all courses and their items to a CSV or NDJSON file";
+        }
+
+    }
+
+    /**
+     * Command to show how often each command has run and how long it took.
+     */
+    public static final class CmdStats extends Command {
+
+        public CmdStats(ScheduleHandler scheduleHandler) {
+            super("stats", scheduleHandler, 0);
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            CommandStats stats = scheduleHandler.scheduleCommands.getStats();
+            session.out().printf("Unrunnable input: %s parse errors, %s unknown commands\n", stats.getParseErrors(),
+                    stats.getUnknownCommands());
+
+            // Line the columns up across both tables
+            List<CommandMetrics.Snapshot> global = CommandStatsBean.snapshots(scheduleHandler.scheduleCommands);
+            List<CommandMetrics.Snapshot> course = CommandStatsBean.snapshots(scheduleHandler.courseCommands);
+            int width = 4;
+            for (CommandMetrics.Snapshot snapshot : global) {
+                width = Math.max(width, snapshot.getName().length());
+            }
+            for (CommandMetrics.Snapshot snapshot : course) {
+                width = Math.max(width, snapshot.getName().length());
+            }
+            String row = "  %-" + width + "s %8s %8s %8s %10s %10s %10s %10s\n";
+
+            session.out().println("Global commands:");
+            printStats(session.out(), row, global);
+            session.out().println("Per-course commands:");
+            printStats(session.out(), row, course);
+            return true;
+        }
+
+        // Print a row for each command that has been used
+        private static void printStats(PrintStream out, String row, List<CommandMetrics.Snapshot> snapshots) {
+
+            boolean header = false;
+            for (CommandMetrics.Snapshot snapshot : snapshots) {
+                if (snapshot.getRuns() == 0 && snapshot.getUsageErrors() == 0) {
+                    continue;
+                }
+                if (!header) {
+                    out.printf(row, "Name", "Runs", "Failed", "Misused", "Mean", "p50", "p99", "Max");
+                    header = true;
+                }
+                out.printf(row, snapshot.getName(), snapshot.getRuns(), snapshot.getFailures(),
+                        snapshot.getUsageErrors(), formatNanos(snapshot.getMeanNanos()),
+                        formatNanos(snapshot.getP50Nanos()), formatNanos(snapshot.getP99Nanos()),
+                        formatNanos(snapshot.getMaxNanos()));
+            }
+            if (!header) {
+                out.println("  None!");
+            }
+        }
+
+        private static String formatNanos(double nanos) {
+            if (nanos < 1e3) {
+                return String.format("%.0f ns", nanos);
+            } else if (nanos < 1e6) {
+                return String.format("%.1f us", nanos / 1e3);
+            } else if (nanos < 1e9) {
+                return String.format("%.1f ms", nanos / 1e6);
+            }
+            return String.format("%.2f s", nanos / 1e9);
+        }
+
+        @Override
+        public String getDescription() {
+            return "Show how often each command has run, how often it failed, and how long it took";
+        }
+
+    }
+
+    /**
+     * Command to undo the most recent change.
+     */
+    public static final class CmdUndo extends Command {
+
+        public CmdUndo(ScheduleHandler scheduleHandler) {
+            super("undo", scheduleHandler, 0);
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            Optional<String> input;
+            try {
+                input = scheduleHandler.undo(session);
+            } catch (IllegalStateException e) {
+                session.err().printf("Can't undo: %s\n", e.getMessage());
+                return false;
+            }
+            if (input.isEmpty()) {
+                session.err().println("Nothing to undo");
+                return false;
+            }
+            session.out().printf("Undid: %s\n", input.get());
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Undo the most recent command that changed any course, if this session ran it";
+        }
+
+    }
+
+    /**
+     * Command to store every course's items compactly.
+     */
+    public static final class CmdCompact extends Command {
+
+        public CmdCompact(ScheduleHandler scheduleHandler) {
+            super("compact", scheduleHandler, 0);
+        }
+
+        @Override
+        public boolean execute(Session session, String[] args) {
+            session.out().printf("Compacted %s items.\n", scheduleHandler.compact());
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Store every course's items compactly to save memory, until they're next changed";
         }
 
     }
@@ -229,21 +671,24 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void executeCourse(ClassSchedule currentCourse, String[] args) {
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
             // Try to add the item
             String name = args[0];
-            final Date date;
+            final long dueDay;
             try {
-                date = new SimpleDateFormat("yyyy-MM-dd").parse(args[1]);
+                dueDay = DateCodec.parse(args[1]);
             } catch (ParseException e) {
-                System.err.printf("Invalid date format (%s)\n", e.getMessage());
-                return;
+                session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                return false;
             }
 
-            // (date will not be null by here)
-
-            currentCourse.addItem(name, date);
-            System.out.println("Item added");
+            int id = currentCourse.addItem(name, dueDay);
+            if (id < 0) {
+                session.err().printf("Course \"%s\" has been removed\n", currentCourse.name);
+                return false;
+            }
+            session.out().printf("Item added with ID %s\n", id);
+            return true;
         }
 
         @Override
@@ -253,41 +698,173 @@ public final class CmdsImpl {
     }
 
     /**
-     * Command similar to `show` but only shows items for the current course.
+     * Command to add an item that's due repeatedly to the currently selected course.
      */
-    public static final class CmdShowItem extends CourseCommand {
+    public static final class CmdAddRecurring extends CourseCommand {
 
-        public CmdShowItem(ScheduleHandler scheduleHandler) {
-            super("show-item", scheduleHandler, 0);
+        // Occurrences can't be due after the last date that can be entered
+        private static final long LAST_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+        public CmdAddRecurring(ScheduleHandler scheduleHandler) {
+            super("add-recurring", scheduleHandler, 4, "name", "first due date in format yyyy-MM-dd",
+                    "interval in days, or weeks such as 2w", "occurrence count, or last date in format yyyy-MM-dd");
         }
 
         @Override
-        public void executeCourse(ClassSchedule currentCourse, String[] args) {
-            // Print course items
-            System.out.println("Course items:");
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
+            String name = args[0];
+            final long startDay;
+            try {
+                startDay = DateCodec.parse(args[1]);
+            } catch (ParseException e) {
+                session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                return false;
+            }
 
-            // Print upcoming assignments in order from least to most recent
-            System.out.println("  Upcoming:");
-            List<ScheduledItem> items
-                    = currentCourse.getFutureDue().stream().sorted().toList();
-            for (ScheduledItem item : items) {
-                System.out.printf("  - [%s] %s\n", formatDate(item.dueDate), item.name);
+            int interval = parseInterval(args[2]);
+            if (interval < 1) {
+                session.err().printf(
+                        "Invalid interval \"%s\" (must be a positive number of days, or weeks such as 2w)\n", args[2]);
+                return false;
             }
-            if (items.size() == 0) {
-                System.out.println("    None!");
+
+            // A plain number is a count, and anything else should be the last date
+            long count;
+            if (args[3].chars().allMatch(Character::isDigit)) {
+                try {
+                    count = Long.parseLong(args[3]);
+                } catch (NumberFormatException e) {
+                    count = Long.MAX_VALUE;
+                }
+            } else {
+                try {
+                    count = RecurringItem.countUntil(startDay, interval, DateCodec.parse(args[3]));
+                } catch (ParseException e) {
+                    session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                    return false;
+                }
+            }
+            if (count < 1 || count > RecurringItem.MAX_OCCURRENCES) {
+                session.err().printf("Invalid number of occurrences (must be from 1 to %s)\n",
+                        RecurringItem.MAX_OCCURRENCES);
+                return false;
+            }
+            if (startDay + (count - 1) * interval > LAST_DAY) {
+                session.err().println("The last occurrence must be due by 9999-12-31");
+                return false;
             }
 
-            // Print past-due assignments in order from most to least recent
-            System.out.println("  Past-due:");
-            items = currentCourse.getPastDue().stream().sorted(Collections.reverseOrder()).toList();
-            for (ScheduledItem item : items) {
-                System.out.printf("  - [%s] %s\n", formatDate(item.dueDate), item.name);
+            int id = currentCourse.addRecurring(name, startDay, interval, (int) count);
+            if (id < 0) {
+                if (currentCourse.isRemoved()) {
+                    session.err().printf("Course \"%s\" has been removed\n", currentCourse.name);
+                } else {
+                    session.err().printf("Course \"%s\" has too many recurring items\n", currentCourse.name);
+                }
+                return false;
             }
-            if (items.size() == 0) {
-                System.out.println("    None!");
+            session.out().printf("Recurring item added with ID r%s (%s occurrences)\n", id, count);
+            return true;
+        }
+
+        // Returns -1 if the interval is invalid
+        private static int parseInterval(String text) {
+            int unit = 1;
+            if (text.endsWith("w")) {
+                unit = 7;
+                text = text.substring(0, text.length() - 1);
+            } else if (text.endsWith("d")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            try {
+                return Math.multiplyExact(Integer.parseInt(text), unit);
+            } catch (NumberFormatException | ArithmeticException e) {
+                return -1;
             }
         }
 
+        @Override
+        public String getDescription() {
+            return "Add an item due repeatedly to the currently selected course, a number of times or until a date";
+        }
+
+    }
+
+    /**
+     * Command to replace one occurrence of a recurring item with an ordinary item, such as to move it to another date.
+     */
+    public static final class CmdOverrideItem extends CourseCommand {
+
+        public CmdOverrideItem(ScheduleHandler scheduleHandler) {
+            super("override-item", scheduleHandler, 2, "occurrence id", "due date in format yyyy-MM-dd", "name");
+        }
+
+        @Override
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
+            int occurrenceId;
+            try {
+                occurrenceId = RecurringItem.parseId(args[0]);
+            } catch (NumberFormatException e) {
+                occurrenceId = 0;
+            }
+            if (!RecurringItem.isOccurrence(occurrenceId)) {
+                session.err().println("Invalid ID (must be an occurrence such as r0.1, use list-item to see item IDs)");
+                return false;
+            }
+
+            final long dueDay;
+            try {
+                dueDay = DateCodec.parse(args[1]);
+            } catch (ParseException e) {
+                session.err().printf("Invalid date format (%s)\n", e.getMessage());
+                return false;
+            }
+
+            // Keep the occurrence's name unless a new one is provided
+            String name = args.length > 2 ? args[2] : null;
+            if (name == null) {
+                int ruleId = RecurringItem.ruleId(occurrenceId);
+                name = currentCourse.getRecurring().stream().filter(rule -> rule.id == ruleId).findFirst()
+                        .map(rule -> rule.name).orElse("");
+            }
+
+            int id = currentCourse.replaceOccurrence(occurrenceId, name, dueDay);
+            if (id < 0) {
+                session.err().printf("No occurrence with ID %s\n", args[0]);
+                return false;
+            }
+            session.out().printf("Occurrence replaced by item with ID %s\n", id);
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Replace one occurrence of a recurring item with an ordinary item, keeping its name by default";
+        }
+
+    }
+
+    /**
+     * Command similar to `show` but only shows items for the current course.
+     */
+    public static final class CmdShowItem extends CourseCommand {
+
+        public CmdShowItem(ScheduleHandler scheduleHandler) {
+            super("show-item", scheduleHandler, 0);
+            enablePaging();
+        }
+
+        @Override
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
+            // Print course items
+            Renderer out = session.renderer();
+            out.append("Course items:").newline();
+            ScheduleVersion.Course course = new ScheduleVersion.Course(currentCourse, currentCourse.copyAllItems());
+            long today = scheduleHandler.today();
+            printItems(out, scheduleHandler.getRenderCache(), course, course.countPastDue(today), today, "  ");
+            return true;
+        }
+
         @Override
         public String getDescription() {
             return "Show all items from the current course";
@@ -302,22 +879,38 @@ public final class CmdsImpl {
 
         public CmdListItem(ScheduleHandler scheduleHandler) {
             super("list-item", scheduleHandler, 0);
+            enablePaging();
         }
 
         @Override
-        public void executeCourse(ClassSchedule currentCourse, String[] args) {
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
             // Print course items
-            System.out.println("Course items:");
-            List<ScheduledItem> items = currentCourse.getItems();
-            for (int i = 0; i < items.size(); i ++) {
-                ScheduledItem item = items.get(i);
-                System.out.printf("  (%s) [%s] %s\n", i, formatDate(item.dueDate), item.name);
+            Renderer out = session.renderer();
+            out.append("Course items:").newline();
+            ItemSource items = currentCourse.copyAllItems();
+            int start = out.skip(items.size());
+            int end = start + out.take(items.size() - start);
+            for (int i = start; i < end; i ++) {
+                out.append("  (").append(RecurringItem.formatId(items.id(i))).append(") [").date(items.dueDay(i))
+                        .append("] ").append(items.name(i)).newline();
+            }
+
+            // The rules behind any occurrences, which are few enough to always show in full
+            List<RecurringItem> recurring = currentCourse.getRecurring();
+            if (!recurring.isEmpty()) {
+                out.append("Recurring items:").newline();
+            }
+            for (RecurringItem rule : recurring) {
+                out.append("  (r").append(rule.id).append(") [").date(rule.startDay).append("] to [")
+                        .date(rule.dueDay(rule.count - 1)).append("] every ").append(rule.interval).append(" days, ")
+                        .append(rule.size()).append(" left: ").append(rule.name).newline();
             }
+            return true;
         }
 
         @Override
         public String getDescription() {
-            return "List all items & their IDs for the current course";
+            return "List all items & their IDs for the current course, and its recurring items";
         }
 
     }
@@ -329,28 +922,114 @@ public final class CmdsImpl {
         }
 
         @Override
-        public void executeCourse(ClassSchedule currentCourse, String[] args) {
+        public boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args) {
             // Try to remove the item
             try {
-                if (currentCourse.removeItem(Integer.parseInt(args[0]))) {
-                    System.out.println("Removed item");
-                } else {
-                    System.err.println("Provided ID was out of range");
+                // A recurring item's ID alone removes every occurrence
+                if (args[0].startsWith("r") && args[0].indexOf('.') < 0) {
+                    if (currentCourse.removeRecurring(Integer.parseInt(args[0].substring(1)))) {
+                        session.out().println("Removed recurring item");
+                        return true;
+                    }
+                    session.err().printf("No recurring item with ID %s\n", args[0]);
+                    return false;
+                }
+
+                int id = RecurringItem.parseId(args[0]);
+                if (RecurringItem.isOccurrence(id) ? currentCourse.skipOccurrence(id) : currentCourse.removeItem(id)) {
+                    session.out().println("Removed item");
+                    return true;
                 }
-            } catch (Exception e) {
-                System.err.printf("Invalid ID (must be a number 0-%s, use list-item to see item IDs)\n", currentCourse.getItems().size());
+                session.err().printf("No item with ID %s\n", args[0]);
+            } catch (NumberFormatException e) {
+                session.err().println(
+                        "Invalid ID (must be a number or an occurrence such as r0.1, use list-item to see item IDs)");
             }
+            return false;
         }
 
         @Override
         public String getDescription() {
-            return "Remove the item with the given ID number from the currently selected course";
+            return "Remove the item with the given ID from the currently selected course, one occurrence of a "
+                    + "recurring item by an ID such as r0.1, or every occurrence by an ID such as r0";
         }
 
     }
 
-    private static String formatDate(Date date) {
-        return new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).format(date);
+    // Use the provided format, or guess it from the file's extension
+    private static Optional<ExchangeFormat> readFormat(Session session, String[] args) {
+        if (args.length > 1) {
+            Optional<ExchangeFormat> format = ExchangeFormat.named(args[1]);
+            if (format.isEmpty()) {
+                session.err().printf("Unknown format \"%s\" (must be csv or ndjson)\n", args[1]);
+            }
+            return format;
+        }
+        Optional<ExchangeFormat> format;
+        try {
+            format = ExchangeFormat.of(Path.of(args[0]));
+        } catch (InvalidPathException e) {
+            format = Optional.empty();
+        }
+        if (format.isEmpty()) {
+            session.err().printf("Can't tell the format of \"%s\" from its name (provide csv or ndjson)\n", args[0]);
+        }
+        return format;
+    }
+
+    // Print a course's items, reusing the text printed for them last time if they're all on the page and the same
+    // items are past-due
+    private static void printItems(Renderer out, RenderCache cache, ScheduleVersion.Course course, int pastDue,
+                                   long today, String indent) {
+        ItemSource items = course.items();
+        int maxLength = cache.maxLength();
+        if (maxLength == 0 || !out.fits(items.size())) {
+            printItems(out, items, pastDue, indent);
+            return;
+        }
+
+        String text = cache.get(course.course(), indent, items, today);
+        if (text != null) {
+            out.take(items.size());
+            out.append(text);
+            return;
+        }
+        out.startCopy(maxLength);
+        printItems(out, items, pastDue, indent);
+        text = out.endCopy();
+        if (text != null) {
+            cache.put(course.course(), indent, items, pastDue, text);
+        }
+    }
+
+    // Print the page of a course's upcoming and past-due items from one version, so they're consistent
+    private static void printItems(Renderer out, ItemSource items, int pastDue, String indent) {
+        // Print upcoming assignments in order from least to most recent
+        out.append(indent).append("Upcoming:").newline();
+        int upcoming = items.size() - pastDue;
+        int start = out.skip(upcoming);
+        int end = start + out.take(upcoming - start);
+        for (int i = start; i < end; i ++) {
+            printItem(out, items, pastDue + i, indent);
+        }
+        if (upcoming == 0) {
+            out.append(indent).append("  None!").newline();
+        }
+
+        // Print past-due assignments in order from most to least recent
+        out.append(indent).append("Past-due:").newline();
+        start = out.skip(pastDue);
+        end = start + out.take(pastDue - start);
+        for (int i = start; i < end; i ++) {
+            printItem(out, items, pastDue - 1 - i, indent);
+        }
+        if (pastDue == 0) {
+            out.append(indent).append("  None!").newline();
+        }
+    }
+
+    private static void printItem(Renderer out, ItemSource items, int index, String indent) {
+        out.append(indent).append("- [").date(items.dueDay(index)).append("] ").append(items.name(index)).newline();
     }
 
 }
@@ -1,9 +1,11 @@
 package com.cjburkey.itcs3112.cmd;
 
 import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
 
 /**
  * A command that the user may use.
+ * One instance serves every session, so commands keep no per-execution state in their fields.
  */
 public abstract class Command {
 
@@ -11,21 +13,50 @@ public abstract class Command {
     public final int requiredArgs;
     public final String[] argNames;
 
+    /**
+     * How often this command has run and how long it took, recorded by the handler that runs it.
+     */
+    public final CommandMetrics metrics;
+
     protected final ScheduleHandler scheduleHandler;
 
+    // Whether this command accepts `--limit` and `--offset`
+    private boolean paged;
+
     public Command(String name, ScheduleHandler scheduleHandler, int requiredArgs, String... argNames) {
         this.name = name;
         this.requiredArgs = requiredArgs;
         this.argNames = argNames;
+        this.metrics = new CommandMetrics(name);
         this.scheduleHandler = scheduleHandler;
     }
 
+    /**
+     * Let this command's output be paged with {@code --limit} and {@code --offset}, which may appear anywhere among
+     * its arguments. They're removed from the arguments before the command runs, and apply to the items the command
+     * prints through {@link Session#renderer()}.
+     */
+    protected final void enablePaging() {
+        paged = true;
+    }
+
+    /**
+     * Check whether this command's output can be paged.
+     *
+     * @return Whether this command accepts {@code --limit} and {@code --offset}.
+     */
+    public boolean isPaged() {
+        return paged;
+    }
+
     /**
      * Method called when this command is executed.
      *
+     * @param session The session of the user executing the command.
      * @param args The provided whitespace-delimited arguments.
+     * @return Whether the command succeeded. Commands print their own error messages before returning {@code false}.
      */
-    public abstract void execute(String[] args);
+    public abstract boolean execute(Session session, String[] args);
 
     /**
      * Get the description to be displayed when using the help command.
@@ -49,6 +80,9 @@ public abstract class Command {
             str.append(argNames[i]);
             str.append(req ? '>' : ']');
         }
+        if (paged) {
+            str.append(" [--limit n] [--offset n]");
+        }
         return str.toString();
     }
 
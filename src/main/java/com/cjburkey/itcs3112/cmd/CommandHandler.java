@@ -1,62 +1,171 @@
 package com.cjburkey.itcs3112.cmd;
 
+import com.cjburkey.itcs3112.Session;
+
+import java.io.UncheckedIOException;
+import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CommandHandler {
 
-    private final HashMap<String, Command> commands = new HashMap<>();
+    private final ConcurrentHashMap<String, Command> commands = new ConcurrentHashMap<>();
+
+    // Where input that doesn't reach a command is counted
+    private final CommandStats stats;
+
+    // Changes whenever a command is added, so tables built from this handler know to rebuild
+    private volatile int version;
+
+    public CommandHandler() {
+        this(new CommandStats());
+    }
+
+    /**
+     * Create a handler that counts input it can't run in the provided stats, which may be shared with other handlers.
+     *
+     * @param stats Where parse failures and unknown commands are counted.
+     */
+    public CommandHandler(CommandStats stats) {
+        this.stats = stats;
+    }
 
     /**
      * Add the provided command to this handler.
      *
      * @param command The command to add.
      */
-    public void addCommand(Command command) {
+    public synchronized void addCommand(Command command) {
         commands.put(command.name, command);
+        version ++;
     }
 
     /**
      * Attempt to execute the provided input.
      *
+     * @param session The session of the user who entered the input.
      * @param input The input entered by the user.
-     * @return Whether a command handled the input. If {@code false}, there wasn't a command by the name requested.
+     * @return The outcome of the command, or {@link CommandResult#UNKNOWN_COMMAND} if there wasn't a command by the
+     * name requested.
      */
-    public boolean execute(String input) {
-        // Split by whitespace
-        String[] pieces = input.trim().split("\\s");
+    public CommandResult execute(Session session, String input) {
+        // Split into the command name and arguments
+        CommandLine line;
+        try {
+            line = CommandLine.parse(input);
+        } catch (ParseException e) {
+            stats.parseFailed();
+            session.err().printf("Invalid input (%s)\n", e.getMessage());
+            return CommandResult.USAGE_ERROR;
+        }
 
-        // Make sure a command was provided.
-        if (pieces.length < 1) {
-            return false;
+        // Get the command object or report that the command wasn't found
+        Command cmd = commands.get(line.name);
+        if (cmd == null) {
+            stats.unknownCommand();
+            return CommandResult.UNKNOWN_COMMAND;
         }
+        return run(session, cmd, line.args);
+    }
 
-        // Get the command and the arguments passed to it
-        String command = pieces[0];
-        String[] args = Arrays.copyOfRange(pieces, 1, pieces.length);
+    // Run the command, recording the outcome and (for all but some runs of quick commands) how long it took
+    static CommandResult run(Session session, Command cmd, String[] args) {
+        CommandMetrics metrics = cmd.metrics;
+        int weight = metrics.sampleWeight();
+        long start = weight == 0 ? 0 : System.nanoTime();
+        CommandResult result = null;
+        try {
+            result = check(session, cmd, args);
+            return result;
+        } finally {
+            metrics.record(result, weight, weight == 0 ? 0 : System.nanoTime() - start);
+        }
+    }
 
-        // Get the command object or return `false` if the command wasn't found
-        Command cmd = commands.get(command);
-        if (cmd == null) {
-            return false;
+    // Check the argument count, then execute the command
+    private static CommandResult check(Session session, Command cmd, String[] args) {
+        // Take out the paging options
+        long[] page = { 0, Long.MAX_VALUE };
+        if (cmd.isPaged()) {
+            args = readPaging(args, page);
         }
 
         // Make sure the correct number of arguments are passed
-        if (args.length < cmd.requiredArgs || args.length > cmd.argNames.length) {
-            System.err.println("Usage: " + cmd.getUsageString());
-        } else {
-            // Execute the command
-            cmd.execute(args);
+        if (args == null || args.length < cmd.requiredArgs || args.length > cmd.argNames.length) {
+            session.err().println("Usage: " + cmd.getUsageString());
+            return CommandResult.USAGE_ERROR;
+        }
+
+        // Execute the command, reporting storage errors (such as a corrupt snapshot) as a failure of this command
+        Renderer renderer = session.renderer();
+        renderer.begin(session.out(), page[0], page[1]);
+        try {
+            return cmd.execute(session, args) ? CommandResult.SUCCESS : CommandResult.FAILURE;
+        } catch (UncheckedIOException e) {
+            session.err().printf("Storage error (%s)\n", e.getCause().getMessage());
+            return CommandResult.FAILURE;
+        } finally {
+            renderer.end();
+        }
+    }
+
+    // Remove `--limit` and `--offset` from the arguments, storing them in `page`, or return null if one is malformed
+    private static String[] readPaging(String[] args, long[] page) {
+        String[] rest = null;
+        int restCount = 0;
+        for (int i = 0; i < args.length; i ++) {
+            String arg = args[i];
+            int option = arg.startsWith("--offset") ? 0 : arg.startsWith("--limit") ? 1 : -1;
+            if (option < 0) {
+                if (rest != null) {
+                    rest[restCount] = arg;
+                }
+                restCount ++;
+                continue;
+            }
+            if (rest == null) {
+                rest = Arrays.copyOf(args, args.length);
+            }
+
+            // Accept both `--limit 10` and `--limit=10`
+            String name = option == 0 ? "--offset" : "--limit";
+            String value;
+            if (arg.length() == name.length() && i + 1 < args.length) {
+                value = args[++ i];
+            } else if (arg.length() > name.length() && arg.charAt(name.length()) == '=') {
+                value = arg.substring(name.length() + 1);
+            } else {
+                return null;
+            }
+            try {
+                page[option] = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (page[option] < 0) {
+                return null;
+            }
         }
+        return rest == null ? args : Arrays.copyOf(rest, restCount);
+    }
 
-        // A command handled the input
-        return true;
+    /**
+     * Get the counts of input this handler couldn't run.
+     *
+     * @return The stats this handler counts parse failures and unknown commands in.
+     */
+    public CommandStats getStats() {
+        return stats;
     }
 
     public Collection<Command> getCommands() {
         return Collections.unmodifiableCollection(commands.values());
     }
 
+    int version() {
+        return version;
+    }
+
 }
@@ -0,0 +1,113 @@
+package com.cjburkey.itcs3112.cmd;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * A line of input split into a command name and its arguments.
+ *
+ * <p>Words are separated by any amount of whitespace. Wrapping part of a word in double quotes keeps the whitespace
+ * inside it, so {@code add-item "Final Project" 2022-12-11} passes {@code Final Project} as one argument. Inside
+ * quotes, {@code \"} and {@code \\} stand for a quote and a backslash.</p>
+ */
+public final class CommandLine {
+
+    private static final String[] NO_ARGS = new String[0];
+
+    /**
+     * The command name, or an empty string if the line was blank.
+     */
+    public final String name;
+
+    /**
+     * The arguments following the command name.
+     */
+    public final String[] args;
+
+    private CommandLine(String name, String[] args) {
+        this.name = name;
+        this.args = args;
+    }
+
+    /**
+     * Split a line of input in a single pass. Words without quotes are taken directly from the input without
+     * copying them into a buffer first.
+     *
+     * @param input The line to split.
+     * @return The command name and arguments.
+     * @throws ParseException If a quote is never closed.
+     */
+    public static CommandLine parse(String input) throws ParseException {
+        String name = "";
+        String[] args = NO_ARGS;
+        int argCount = -1;
+        StringBuilder quoted = null;
+
+        int length = input.length();
+        int i = 0;
+        while (true) {
+            // Skip to the start of the next word
+            while (i < length && Character.isWhitespace(input.charAt(i))) {
+                i ++;
+            }
+            if (i >= length) {
+                break;
+            }
+
+            // Find the end of the word, only copying it if it contains quotes
+            int start = i;
+            boolean hasQuotes = false;
+            while (i < length && !Character.isWhitespace(input.charAt(i))) {
+                if (input.charAt(i) == '"') {
+                    if (!hasQuotes) {
+                        hasQuotes = true;
+                        quoted = quoted == null ? new StringBuilder() : quoted;
+                        quoted.setLength(0);
+                        quoted.append(input, start, i);
+                    }
+                    i = readQuoted(input, i + 1, quoted);
+                } else {
+                    if (hasQuotes) {
+                        quoted.append(input.charAt(i));
+                    }
+                    i ++;
+                }
+            }
+            String word = hasQuotes ? quoted.toString() : input.substring(start, i);
+
+            // The first word is the command name
+            if (argCount < 0) {
+                name = word;
+            } else {
+                if (argCount == args.length) {
+                    args = Arrays.copyOf(args, Math.max(4, args.length * 2));
+                }
+                args[argCount] = word;
+            }
+            argCount ++;
+        }
+
+        if (argCount > 0 && argCount != args.length) {
+            args = Arrays.copyOf(args, argCount);
+        }
+        return new CommandLine(name, args);
+    }
+
+    // Append the quoted text starting after an opening quote, returning the index after the closing quote
+    private static int readQuoted(String input, int i, StringBuilder out) throws ParseException {
+        int length = input.length();
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\' && i + 1 < length && (input.charAt(i + 1) == '"' || input.charAt(i + 1) == '\\')) {
+                c = input.charAt(++ i);
+            }
+            out.append(c);
+            i ++;
+        }
+        throw new ParseException("Unclosed quote", length);
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.cjburkey.itcs3112.cmd;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often one command runs and fails, and how long it takes.
+ *
+ * <p>Every counter is a {@link LongAdder}, so threads running the same command at once don't contend on one field.
+ * Latencies go into a histogram whose buckets grow with the latency: each power of two nanoseconds is split into four
+ * buckets, so any percentile read from it is at most 25% above the true value.</p>
+ *
+ * <p>Reading the clock twice can cost more than a quick command itself, so once a command has finished in under
+ * {@value #FAST_NANOS} nanoseconds, only one in {@value #SAMPLE_WEIGHT} of its runs is timed. Each timed run then
+ * stands for {@value #SAMPLE_WEIGHT} runs in the histogram, so the latencies stay unbiased. A timed run that takes
+ * longer switches back to timing every run. Run and error counts are always exact.</p>
+ */
+public final class CommandMetrics {
+
+    // Each power of two is split into 2^SUB_BITS buckets, and latencies below 2^SUB_BITS get a bucket each
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // Latencies of 2^MAX_BITS nanoseconds (about 18 minutes) or more share the last bucket
+    private static final int MAX_BITS = 40;
+    private static final long MAX_TRACKED = (1L << MAX_BITS) - 1;
+    static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    // Commands faster than this are only timed one run in SAMPLE_WEIGHT
+    static final long FAST_NANOS = 10_000;
+    static final int SAMPLE_WEIGHT = 16;
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder usageErrors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    // Whether the last timed run was fast, so only some runs need timing
+    private volatile boolean fast;
+
+    CommandMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i ++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Decide whether to time the next run.
+     *
+     * @return The number of runs the next run's latency should stand for, or 0 if it shouldn't be timed.
+     */
+    int sampleWeight() {
+        if (!fast) {
+            return 1;
+        }
+        return (ThreadLocalRandom.current().nextInt() & (SAMPLE_WEIGHT - 1)) == 0 ? SAMPLE_WEIGHT : 0;
+    }
+
+    /**
+     * Record one attempt to run the command.
+     *
+     * @param result The outcome, or {@code null} if the command threw, which counts as a failure.
+     * @param weight The weight from {@link #sampleWeight()}, or 0 if the attempt wasn't timed.
+     * @param nanos How long the attempt took, if it was timed. Usage errors aren't timed, since the command never ran.
+     */
+    void record(CommandResult result, int weight, long nanos) {
+        if (result == CommandResult.USAGE_ERROR) {
+            usageErrors.increment();
+            return;
+        }
+        runs.increment();
+        if (result != CommandResult.SUCCESS) {
+            failures.increment();
+        }
+        if (weight == 0) {
+            return;
+        }
+        buckets[bucket(nanos)].add(weight);
+        totalNanos.add(nanos * weight);
+        maxNanos.accumulate(nanos);
+
+        // Only write when it changes, so threads running the same command don't keep taking the line from each other
+        boolean isFast = nanos < FAST_NANOS;
+        if (isFast != fast) {
+            fast = isFast;
+        }
+    }
+
+    /**
+     * Read the current counts. Runs that finish while this is reading may be only partly included.
+     *
+     * @return The counts and latencies so far.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long timed = 0;
+        for (int i = 0; i < BUCKETS; i ++) {
+            counts[i] = buckets[i].sum();
+            timed += counts[i];
+        }
+        return new Snapshot(name, runs.sum(), failures.sum(), usageErrors.sum(), timed, totalNanos.sum(),
+                maxNanos.get(), counts);
+    }
+
+    static int bucket(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKED);
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int top = 63 - Long.numberOfLeadingZeros(value);
+        return (top - SUB_BITS + 1) * SUB_COUNT + (int) (value >>> (top - SUB_BITS) & (SUB_COUNT - 1));
+    }
+
+    // The smallest latency that lands in the bucket
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int top = bucket / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << (top - SUB_BITS);
+    }
+
+    /**
+     * The counts and latencies of one command at one moment. The getters let it be read through JMX.
+     */
+    public static final class Snapshot {
+
+        private final String name;
+        private final long runs;
+        private final long failures;
+        private final long usageErrors;
+        private final long timed;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        private Snapshot(String name, long runs, long failures, long usageErrors, long timed, long totalNanos,
+                         long maxNanos, long[] buckets) {
+            this.name = name;
+            this.runs = runs;
+            this.failures = failures;
+            this.usageErrors = usageErrors;
+            this.timed = timed;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        /**
+         * @return The command's name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of times the command ran, whether or not it succeeded.
+         */
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return The number of runs that reported an error or threw.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The number of times the command wasn't run because it was given the wrong arguments.
+         */
+        public long getUsageErrors() {
+            return usageErrors;
+        }
+
+        /**
+         * @return The estimated total time spent running the command.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return The longest any timed run took.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return The average time a run took, or 0 if it hasn't run.
+         */
+        public double getMeanNanos() {
+            return timed == 0 ? 0 : (double) totalNanos / timed;
+        }
+
+        /**
+         * @return The median time a run took, as with {@link #percentileNanos}.
+         */
+        public long getP50Nanos() {
+            return percentileNanos(0.5);
+        }
+
+        /**
+         * @return The time within which 90% of runs finished, as with {@link #percentileNanos}.
+         */
+        public long getP90Nanos() {
+            return percentileNanos(0.9);
+        }
+
+        /**
+         * @return The time within which 99% of runs finished, as with {@link #percentileNanos}.
+         */
+        public long getP99Nanos() {
+            return percentileNanos(0.99);
+        }
+
+        /**
+         * Estimate the time within which the provided fraction of runs finished.
+         *
+         * @param fraction The fraction of runs, such as {@code 0.99} for the 99th percentile.
+         * @return The upper bound of the histogram bucket holding that percentile, or 0 if the command hasn't run.
+         */
+        public long percentileNanos(double fraction) {
+            if (timed == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(fraction * timed));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i ++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    long upper = i + 1 < buckets.length ? lowerBound(i + 1) - 1 : maxNanos;
+                    return Math.min(upper, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.cjburkey.itcs3112.cmd;
+
+/**
+ * The outcome of attempting to execute some input.
+ */
+public enum CommandResult {
+
+    /**
+     * The command ran and did what was asked.
+     */
+    SUCCESS,
+
+    /**
+     * The command ran but reported an error, such as an invalid date or a missing course.
+     */
+    FAILURE,
+
+    /**
+     * The command exists but was given the wrong number of arguments, or the input couldn't be split into arguments
+     * (such as when a quote isn't closed).
+     */
+    USAGE_ERROR,
+
+    /**
+     * No command by the requested name exists.
+     */
+    UNKNOWN_COMMAND;
+
+    /**
+     * Check whether a command by the requested name was found.
+     *
+     * @return Whether this result came from a command rather than a failed lookup.
+     */
+    public boolean isHandled() {
+        return this != UNKNOWN_COMMAND;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.cjburkey.itcs3112.cmd;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts input that never reached a command: lines that couldn't be split into arguments, and names that didn't match
+ * any command. Each command counts its own runs in its {@link Command#metrics}.
+ */
+public final class CommandStats {
+
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder unknownCommands = new LongAdder();
+
+    void parseFailed() {
+        parseErrors.increment();
+    }
+
+    void unknownCommand() {
+        unknownCommands.increment();
+    }
+
+    /**
+     * @return The number of lines that couldn't be split into arguments, such as when a quote wasn't closed.
+     */
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    /**
+     * @return The number of lines naming a command that doesn't exist.
+     */
+    public long getUnknownCommands() {
+        return unknownCommands.sum();
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Shows a handler's command counts and latencies through JMX, such as in JConsole. Every read takes a fresh snapshot
+ * of the counts.
+ */
+public final class CommandStatsBean implements CommandStatsMXBean {
+
+    private final ScheduleHandler scheduleHandler;
+
+    public CommandStatsBean(ScheduleHandler scheduleHandler) {
+        this.scheduleHandler = scheduleHandler;
+    }
+
+    /**
+     * Register a bean for the handler with the platform MBean server, under
+     * {@code com.cjburkey.itcs3112:type=CommandStats}.
+     *
+     * @param scheduleHandler The handler whose commands should be shown.
+     * @return The name the bean was registered under.
+     * @throws JMException If the bean can't be registered, such as when another is already registered by that name.
+     */
+    public static ObjectName register(ScheduleHandler scheduleHandler) throws JMException {
+        ObjectName name = new ObjectName("com.cjburkey.itcs3112:type=CommandStats");
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new CommandStatsBean(scheduleHandler), name);
+        return name;
+    }
+
+    @Override
+    public long getParseErrors() {
+        return scheduleHandler.scheduleCommands.getStats().getParseErrors();
+    }
+
+    @Override
+    public long getUnknownCommands() {
+        return scheduleHandler.scheduleCommands.getStats().getUnknownCommands();
+    }
+
+    @Override
+    public List<CommandMetrics.Snapshot> getGlobalCommands() {
+        return snapshots(scheduleHandler.scheduleCommands);
+    }
+
+    @Override
+    public List<CommandMetrics.Snapshot> getCourseCommands() {
+        return snapshots(scheduleHandler.courseCommands);
+    }
+
+    /**
+     * Read the counts of every command in a handler.
+     *
+     * @param commandHandler The handler holding the commands.
+     * @return A snapshot of each command, sorted by name.
+     */
+    static List<CommandMetrics.Snapshot> snapshots(CommandHandler commandHandler) {
+        return commandHandler.getCommands().stream()
+                .map(cmd -> cmd.metrics.snapshot())
+                .sorted(Comparator.comparing(CommandMetrics.Snapshot::getName))
+                .toList();
+    }
+
+}
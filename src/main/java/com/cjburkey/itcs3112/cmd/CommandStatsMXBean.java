@@ -0,0 +1,31 @@
+package com.cjburkey.itcs3112.cmd;
+
+import java.util.List;
+
+/**
+ * The command counts and latencies of one {@link com.cjburkey.itcs3112.ScheduleHandler}, as shown through JMX.
+ * Latencies are in nanoseconds.
+ */
+public interface CommandStatsMXBean {
+
+    /**
+     * @return The number of lines that couldn't be split into arguments.
+     */
+    long getParseErrors();
+
+    /**
+     * @return The number of lines naming a command that doesn't exist.
+     */
+    long getUnknownCommands();
+
+    /**
+     * @return The counts and latencies of each global command, sorted by name.
+     */
+    List<CommandMetrics.Snapshot> getGlobalCommands();
+
+    /**
+     * @return The counts and latencies of each per-course command, sorted by name.
+     */
+    List<CommandMetrics.Snapshot> getCourseCommands();
+
+}
@@ -0,0 +1,108 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.Session;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the command for a line of input in one lookup, covering both the course commands and the global commands.
+ * Course commands take priority while a course is selected, and are skipped otherwise.
+ *
+ * <p>The combined table is rebuilt the first time it's used after a command is added to either handler.</p>
+ */
+public final class CommandTable {
+
+    private final CommandHandler courseCommands;
+    private final CommandHandler globalCommands;
+    private final CommandStats stats;
+
+    // The current table, replaced whole whenever either handler changes
+    private volatile Table table;
+
+    /**
+     * Create a table covering both handlers, counting input it can't run in the global handler's stats.
+     *
+     * @param courseCommands The commands for the selected course.
+     * @param globalCommands The commands that work with or without a selected course.
+     */
+    public CommandTable(CommandHandler courseCommands, CommandHandler globalCommands) {
+        this.courseCommands = courseCommands;
+        this.globalCommands = globalCommands;
+        this.stats = globalCommands.getStats();
+    }
+
+    /**
+     * Split the input once and execute the matching command.
+     *
+     * @param session The session of the user who entered the input.
+     * @param input The input entered by the user.
+     * @return The outcome of the command, or {@link CommandResult#UNKNOWN_COMMAND} if there wasn't a command by the
+     * name requested.
+     */
+    public CommandResult execute(Session session, String input) {
+        CommandLine line;
+        try {
+            line = CommandLine.parse(input);
+        } catch (ParseException e) {
+            stats.parseFailed();
+            session.err().printf("Invalid input (%s)\n", e.getMessage());
+            return CommandResult.USAGE_ERROR;
+        }
+        return execute(session, line);
+    }
+
+    /**
+     * Execute the command matching input that has already been split.
+     *
+     * @param session The session of the user who entered the input.
+     * @param line The input, split by {@link CommandLine#parse(String)}.
+     * @return The outcome of the command, or {@link CommandResult#UNKNOWN_COMMAND} if there wasn't a command by the
+     * name requested.
+     */
+    public CommandResult execute(Session session, CommandLine line) {
+        Entry entry = table().commands.get(line.name);
+        if (entry == null) {
+            stats.unknownCommand();
+            return CommandResult.UNKNOWN_COMMAND;
+        }
+        Command cmd = entry.courseCommand != null && session.getCurrentSchedule().isPresent()
+                ? entry.courseCommand
+                : entry.globalCommand;
+        if (cmd == null) {
+            stats.unknownCommand();
+            return CommandResult.UNKNOWN_COMMAND;
+        }
+        return CommandHandler.run(session, cmd, line.args);
+    }
+
+    private Table table() {
+        // Read the versions before the commands, so a command added during a rebuild triggers another one
+        Table current = table;
+        int courseVersion = courseCommands.version();
+        int globalVersion = globalCommands.version();
+        if (current != null && current.courseVersion == courseVersion && current.globalVersion == globalVersion) {
+            return current;
+        }
+
+        Map<String, Entry> commands = new HashMap<>();
+        for (Command cmd : globalCommands.getCommands()) {
+            commands.put(cmd.name, new Entry(null, cmd));
+        }
+        for (Command cmd : courseCommands.getCommands()) {
+            Entry global = commands.get(cmd.name);
+            commands.put(cmd.name, new Entry(cmd, global == null ? null : global.globalCommand));
+        }
+        current = new Table(courseVersion, globalVersion, commands);
+        table = current;
+        return current;
+    }
+
+    private record Entry(Command courseCommand, Command globalCommand) {
+    }
+
+    private record Table(int courseVersion, int globalVersion, Map<String, Entry> commands) {
+    }
+
+}
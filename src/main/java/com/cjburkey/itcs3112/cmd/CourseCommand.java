@@ -2,6 +2,7 @@ package com.cjburkey.itcs3112.cmd;
 
 import com.cjburkey.itcs3112.ClassSchedule;
 import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
 
 /**
  * A command that is executed on a currently selected course.
@@ -13,17 +14,21 @@ public abstract class CourseCommand extends Command {
     }
 
     @Override
-    public final void execute(String[] args) {
-        scheduleHandler.getCurrentSchedule().ifPresentOrElse(c -> executeCourse(c, args),
-                () -> System.err.println("No currently selected course but we're trying to access a course command! This shouldn't be allowed!"));
+    public final boolean execute(Session session, String[] args) {
+        return session.getCurrentSchedule().map(c -> executeCourse(session, c, args)).orElseGet(() -> {
+            session.err().println("No currently selected course but we're trying to access a course command! This shouldn't be allowed!");
+            return false;
+        });
     }
 
     /**
      * Method called when a course command is executed.
      *
+     * @param session The session of the user executing the command.
      * @param currentCourse The currently selected course
      * @param args The arguments passed to the command.
+     * @return Whether the command succeeded.
      */
-    public abstract void executeCourse(ClassSchedule currentCourse, String[] args);
+    public abstract boolean executeCourse(Session session, ClassSchedule currentCourse, String[] args);
 
 }
@@ -0,0 +1,190 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.ScheduleListener;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the text {@code show} and {@code show-item} last printed for each course, so showing a course that hasn't
+ * changed only copies that text instead of formatting every item again.
+ *
+ * <p>Text is kept for one version of a course's items, and only for the days on which the same items are past-due:
+ * once a day passes an upcoming item's due day, the text no longer matches and is printed again. Versions never
+ * change, so the text can't go stale while its version is current. The least recently shown text is dropped once the
+ * cache holds more than its capacity, and one course's text may use at most a quarter of it. Each kept text also
+ * counts {@value #ENTRY_OVERHEAD} characters against the capacity for the entry holding it.</p>
+ *
+ * <p>The version is only held weakly, so kept text doesn't stop old versions from being collected; text for a
+ * collected version is never reused. Registered as a listener, the cache drops a course's text when the course is
+ * removed.</p>
+ *
+ * <p>Safe to use from any number of threads at once.</p>
+ */
+public final class RenderCache implements ScheduleListener {
+
+    /**
+     * The default capacity, in characters.
+     */
+    public static final long DEFAULT_CAPACITY = 4L << 20;
+
+    /**
+     * The characters each kept text counts against the capacity besides its own length, for its key, entry, reference
+     * and map node.
+     */
+    public static final int ENTRY_OVERHEAD = 64;
+
+    // Ordered from least to most recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacity;
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity The most characters of text to keep, or 0 to keep none.
+     */
+    public RenderCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the text printed for a course's items, if it's still accurate.
+     *
+     * @param course The course.
+     * @param indent The indentation the items were printed with.
+     * @param items The version of the items being shown.
+     * @param today The current day, as the number of days since 1970-01-01.
+     * @return The text, or {@code null} if there isn't any for this version and day.
+     */
+    synchronized String get(ClassSchedule course, String indent, ItemSource items, long today) {
+        Entry entry = entries.get(new Key(course, indent));
+        if (entry == null || entry.items.get() != items || today < entry.fromDay || today > entry.untilDay) {
+            misses ++;
+            return null;
+        }
+        hits ++;
+        return entry.text;
+    }
+
+    /**
+     * Keep the text printed for a course's items, replacing any kept before.
+     *
+     * @param course The course.
+     * @param indent The indentation the items were printed with.
+     * @param items The version of the items that was printed.
+     * @param pastDue The number of items printed as past-due.
+     * @param text The printed text.
+     */
+    synchronized void put(ClassSchedule course, String indent, ItemSource items, int pastDue, String text) {
+        if (text.length() > maxLength() || course.isRemoved()) {
+            return;
+        }
+
+        // The same items are past-due from the last past-due item's day until the day before the next is due
+        long fromDay = pastDue > 0 ? items.dueDay(pastDue - 1) : Long.MIN_VALUE;
+        long untilDay = pastDue < items.size() ? items.dueDay(pastDue) - 1 : Long.MAX_VALUE;
+        Entry entry = new Entry(new WeakReference<>(items), fromDay, untilDay, text);
+        Entry previous = entries.put(new Key(course, indent), entry);
+        if (previous != null) {
+            size -= previous.weight();
+        }
+        size += entry.weight();
+        evict();
+    }
+
+    /**
+     * Drop the text kept for a removed course.
+     *
+     * @param course The removed course.
+     */
+    @Override
+    public synchronized void courseRemoved(ClassSchedule course) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            if (next.getKey().course == course) {
+                size -= next.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The most characters of text one course may keep.
+     */
+    synchronized int maxLength() {
+        return (int) Math.min(capacity / 4, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Change the most characters of text to keep, dropping the least recently shown text if there's now too much.
+     *
+     * @param capacity The capacity, in characters, or 0 to keep none.
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * @return The most characters of text to keep.
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of characters of text kept right now, including each entry's overhead.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of times kept text was reused.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of times there was no accurate text to reuse.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Drop all kept text.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            size -= eldest.next().getValue().weight();
+            eldest.remove();
+        }
+    }
+
+    private record Key(ClassSchedule course, String indent) {
+    }
+
+    // The items are compared by identity, since a version of them never changes
+    private record Entry(WeakReference<ItemSource> items, long fromDay, long untilDay, String text) {
+
+        long weight() {
+            return text.length() + ENTRY_OVERHEAD;
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.DateCodec;
+
+import java.io.PrintStream;
+
+/**
+ * Builds a command's output in a reusable buffer and writes it to the output stream in large pieces, instead of
+ * formatting and printing each line separately.
+ *
+ * <p>A renderer also tracks which items fall on the page requested with {@code --limit} and {@code --offset}.
+ * Commands describe each run of items they're about to print with {@link #skip(int)} and {@link #take(int)}, and
+ * only print the items those return, so items off the page are never visited.</p>
+ *
+ * <p>Each {@link com.cjburkey.itcs3112.Session} has its own renderer, used by one command at a time.</p>
+ */
+public final class Renderer {
+
+    // The buffer is written out once it holds this many characters
+    private static final int WRITE_THRESHOLD = 1 << 14;
+
+    private final StringBuilder buffer = new StringBuilder(WRITE_THRESHOLD + 256);
+    private PrintStream out;
+
+    // The requested page, and the number of items skipped, taken and offered so far
+    private long offset;
+    private long limit;
+    private long skipped;
+    private long taken;
+    private long total;
+
+    // Where a copy of the output started in the buffer, and the most characters it may hold, while one is being made
+    private int copyStart = -1;
+    private int copyLimit;
+
+    /**
+     * Start rendering a command's output.
+     *
+     * @param out The stream to write the output to.
+     * @param offset The number of items to skip before the page starts.
+     * @param limit The maximum number of items on the page.
+     */
+    void begin(PrintStream out, long offset, long limit) {
+        this.out = out;
+        this.offset = offset;
+        this.limit = limit;
+        skipped = 0;
+        taken = 0;
+        total = 0;
+        copyStart = -1;
+        buffer.setLength(0);
+    }
+
+    /**
+     * Finish rendering a command's output, noting which items were shown if some were left off the page, and write
+     * out whatever is still buffered.
+     */
+    void end() {
+        if (taken < total) {
+            if (taken == 0) {
+                append("No items on this page (").append(total).append(" in total).").newline();
+            } else {
+                append("Showed items ").append(skipped + 1).append('-').append(skipped + taken).append(" of ")
+                        .append(total).append(". Use --offset and --limit to see others.").newline();
+            }
+        }
+        write();
+        out = null;
+    }
+
+    /**
+     * Find how many of the next items come before the page.
+     *
+     * @param count The number of items in the run about to be printed.
+     * @return The number of items at the start of the run to leave out.
+     */
+    public int skip(int count) {
+        int skip = (int) Math.min(count, offset - skipped);
+        skipped += skip;
+        total += skip;
+        return skip;
+    }
+
+    /**
+     * Find how many of the next items fit on the page. Call this after {@link #skip(int)} with the items that weren't
+     * skipped.
+     *
+     * @param count The number of items left in the run.
+     * @return The number of items to print.
+     */
+    public int take(int count) {
+        int take = (int) Math.min(count, limit - taken);
+        taken += take;
+        total += count;
+        return take;
+    }
+
+    /**
+     * Check whether the next items would all be on the page, such as when no page was requested.
+     * This doesn't count them; {@link #skip(int)} and {@link #take(int)} still need calling.
+     *
+     * @param count The number of items.
+     * @return Whether none of them would be left out.
+     */
+    public boolean fits(int count) {
+        return skipped >= offset && limit - taken >= count;
+    }
+
+    /**
+     * Start copying everything appended from now on, such as to cache it. The output is still written as usual.
+     *
+     * @param maxLength The most characters to copy. The copy is abandoned once more are appended.
+     */
+    public void startCopy(int maxLength) {
+        copyStart = buffer.length();
+        copyLimit = maxLength;
+    }
+
+    /**
+     * Stop copying the output.
+     *
+     * @return Everything appended since {@link #startCopy(int)}, or {@code null} if there was too much.
+     */
+    public String endCopy() {
+        String copy = copyStart >= 0 ? buffer.substring(copyStart) : null;
+        copyStart = -1;
+        if (buffer.length() >= WRITE_THRESHOLD) {
+            write();
+        }
+        return copy;
+    }
+
+    /**
+     * Append text to the output.
+     *
+     * @param text The text.
+     * @return This renderer.
+     */
+    public Renderer append(String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    /**
+     * Append a character to the output.
+     *
+     * @param c The character.
+     * @return This renderer.
+     */
+    public Renderer append(char c) {
+        buffer.append(c);
+        return this;
+    }
+
+    /**
+     * Append a number to the output.
+     *
+     * @param number The number.
+     * @return This renderer.
+     */
+    public Renderer append(long number) {
+        buffer.append(number);
+        return this;
+    }
+
+    /**
+     * Append a day to the output as a {@code yyyy-MM-dd} date.
+     *
+     * @param epochDay The day, as the number of days since 1970-01-01.
+     * @return This renderer.
+     */
+    public Renderer date(long epochDay) {
+        DateCodec.appendTo(buffer, epochDay);
+        return this;
+    }
+
+    /**
+     * End the current line, writing out the buffer if it's full.
+     *
+     * @return This renderer.
+     */
+    public Renderer newline() {
+        buffer.append('\n');
+        if (buffer.length() >= WRITE_THRESHOLD) {
+            // Keep what's being copied in the buffer, unless it's grown too long to copy
+            if (copyStart >= 0 && buffer.length() - copyStart > copyLimit) {
+                copyStart = -1;
+            }
+            if (copyStart < 0) {
+                write();
+            }
+        }
+        return this;
+    }
+
+    private void write() {
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+    }
+
+}
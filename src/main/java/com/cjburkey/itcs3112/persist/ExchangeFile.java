@@ -0,0 +1,220 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.ScheduleHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Imports and exports courses and items as CSV or NDJSON text files (see {@link ExchangeFormat}).
+ *
+ * <p>Imports read the file in chunks that each end at a record boundary, and parse and validate the chunks in
+ * parallel on the common fork-join pool. Only a few chunks are in flight at once, so memory use doesn't grow with the
+ * file. Parsed chunks are applied in file order, with each chunk's items added to each course in one bulk insert, so
+ * items keep the order they had in the file. Invalid records are skipped and reported by line number.</p>
+ *
+ * <p>Exports write each course's items straight from the course, including courses still in a snapshot, without
+ * copying them first. Each course is written as it is at one moment, but other courses may change during an
+ * export.</p>
+ */
+public final class ExchangeFile {
+
+    // The size of the chunks an import is split into. A chunk grows past this only to fit one very long record.
+    static final int CHUNK_SIZE = 4 << 20;
+
+    // No single record may be longer than this, which usually means a quote was never closed
+    private static final int MAX_RECORD_SIZE = 256 << 20;
+
+    /**
+     * The outcome of an import.
+     *
+     * @param courses The number of courses created.
+     * @param items The number of items added.
+     * @param errors The number of records skipped because they were invalid.
+     * @param messages Descriptions of the first few invalid records, with their line numbers.
+     */
+    public record ImportResult(int courses, long items, long errors, List<String> messages) {
+    }
+
+    private ExchangeFile() {
+    }
+
+    /**
+     * Add the courses and items from a file to the handler. Courses that already exist get the new items added to
+     * them.
+     *
+     * @param scheduleHandler The handler to import into.
+     * @param file The file to read.
+     * @param format The file's format.
+     * @return The number of courses and items added, and any records that were skipped.
+     * @throws IOException If the file can't be read.
+     */
+    public static ImportResult importFrom(ScheduleHandler scheduleHandler, Path file, ExchangeFormat format)
+            throws IOException {
+        return importFrom(scheduleHandler, file, format, CHUNK_SIZE);
+    }
+
+    // Import in chunks of the provided size, which tests make small to put records across chunk boundaries
+    static ImportResult importFrom(ScheduleHandler scheduleHandler, Path file, ExchangeFormat format, int chunkSize)
+            throws IOException {
+        Importer importer = new Importer(scheduleHandler);
+        int maxInFlight = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+        ArrayDeque<CompletableFuture<RecordParser.Batch>> inFlight = new ArrayDeque<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] chunk = new byte[chunkSize];
+            int filled = 0;
+            boolean first = true;
+            boolean eof = false;
+            while (!eof) {
+                // Fill the chunk, then cut it after the last complete record
+                ByteBuffer target = ByteBuffer.wrap(chunk, filled, chunk.length - filled);
+                while (target.hasRemaining() && !eof) {
+                    eof = channel.read(target) < 0;
+                }
+                filled = target.position();
+                int end = eof ? filled : RecordParser.lastRecordEnd(format, chunk, 0, filled);
+                if (end < 0) {
+                    // Not even one record fits, so make room for a longer one
+                    if (chunk.length >= MAX_RECORD_SIZE) {
+                        throw new IOException("A record is longer than " + (MAX_RECORD_SIZE >> 20) + " MiB (is a quote left open?)");
+                    }
+                    chunk = Arrays.copyOf(chunk, chunk.length * 2);
+                    continue;
+                }
+
+                // Start the next chunk with whatever followed the cut
+                byte[] next = new byte[Math.max(chunkSize, filled - end)];
+                System.arraycopy(chunk, end, next, 0, filled - end);
+                byte[] data = chunk;
+                boolean isFirst = first;
+                if (end > 0) {
+                    if (inFlight.size() >= maxInFlight) {
+                        importer.apply(join(inFlight.poll()));
+                    }
+                    inFlight.add(CompletableFuture.supplyAsync(() -> RecordParser.parse(format, data, 0, end, isFirst)));
+                }
+                chunk = next;
+                filled -= end;
+                first = false;
+            }
+        } finally {
+            // Finish applying the chunks already parsed, even if reading failed partway
+            while (!inFlight.isEmpty()) {
+                importer.apply(join(inFlight.poll()));
+            }
+        }
+        return new ImportResult(importer.courses, importer.items, importer.errors, List.copyOf(importer.messages));
+    }
+
+    /**
+     * Write every course and item in the handler to a file. Courses are written in order of name, and each course's
+     * items in due date order. Recurring items are written as one item per occurrence, so importing the file gives
+     * back the same items, but as ordinary items.
+     *
+     * @param scheduleHandler The handler holding the courses.
+     * @param file The file to write, replaced once the export is complete.
+     * @param format The format to write.
+     * @return The number of items written.
+     * @throws IOException If writing fails.
+     */
+    public static long exportTo(ScheduleHandler scheduleHandler, Path file, ExchangeFormat format) throws IOException {
+        List<ClassSchedule> courses = new ArrayList<>(scheduleHandler.getCourseSchedules());
+        courses.sort(Comparator.comparing(course -> course.name));
+
+        long count = 0;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordWriter writer = new RecordWriter(channel, format);
+            for (ClassSchedule course : courses) {
+                // The formats have no recurring items, so each occurrence is written as an item of its own
+                ItemSource items = course.copyAllItems();
+                if (items.size() == 0) {
+                    writer.course(course.name);
+                }
+                for (int i = 0; i < items.size(); i ++) {
+                    writer.item(course.name, items.name(i), items.dueDay(i));
+                }
+                count += items.size();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static RecordParser.Batch join(CompletableFuture<RecordParser.Batch> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Applies parsed chunks in file order, keeping the totals
+    private static final class Importer {
+
+        private final ScheduleHandler scheduleHandler;
+        private final List<String> messages = new ArrayList<>();
+        private long lines;
+        private int courses;
+        private long items;
+        private long errors;
+
+        Importer(ScheduleHandler scheduleHandler) {
+            this.scheduleHandler = scheduleHandler;
+        }
+
+        void apply(RecordParser.Batch batch) {
+            for (RecordParser.RecordError error : batch.errors) {
+                if (messages.size() < RecordParser.MAX_REPORTED_ERRORS) {
+                    messages.add("Line " + (lines + error.line() + 1) + ": " + error.message());
+                }
+            }
+            errors += batch.errorCount;
+            lines += batch.lines;
+
+            for (Map.Entry<String, RecordParser.CourseBatch> entry : batch.courses.entrySet()) {
+                RecordParser.CourseBatch courseBatch = entry.getValue();
+                while (true) {
+                    // Create the course if needed, trying again if another thread removes it first
+                    Optional<ClassSchedule> course = scheduleHandler.getCourse(entry.getKey());
+                    if (course.isEmpty()) {
+                        if (scheduleHandler.addCourse(entry.getKey())) {
+                            courses ++;
+                        }
+                        continue;
+                    }
+                    if (courseBatch.count == 0) {
+                        break;
+                    }
+                    int added = course.get().addItems(courseBatch.names, courseBatch.dueDays, courseBatch.count);
+                    if (added >= 0) {
+                        items += added;
+                        break;
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.cjburkey.itcs3112.persist;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The text formats courses and items can be imported from and exported to.
+ *
+ * <p>Each record is one item, with its course's name, its own name and its due date in {@code yyyy-MM-dd} format. A
+ * record with no due date (and no name) creates its course without adding an item, so empty courses survive an
+ * export and import.</p>
+ */
+public enum ExchangeFormat {
+
+    /**
+     * Comma-separated values with a {@code course,name,due} header line. Fields containing commas, quotes or line
+     * breaks are wrapped in double quotes, with any quote inside doubled.
+     */
+    CSV("csv"),
+
+    /**
+     * Newline-delimited JSON: one object per line, such as
+     * {@code {"course":"MATH 1241","name":"Homework 1","due":"2022-09-02"}}. Other fields are ignored.
+     */
+    NDJSON("ndjson", "jsonl");
+
+    private final String[] extensions;
+
+    ExchangeFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Find the format with the provided name or file extension, ignoring case.
+     *
+     * @param name The format's name, such as {@code csv}.
+     * @return The format, or empty if there isn't one by that name.
+     */
+    public static Optional<ExchangeFormat> named(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (ExchangeFormat format : values()) {
+            for (String extension : format.extensions) {
+                if (extension.equals(lower)) {
+                    return Optional.of(format);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Guess a file's format from its extension.
+     *
+     * @param file The file.
+     * @return The format, or empty if the extension isn't recognized.
+     */
+    public static Optional<ExchangeFormat> of(Path file) {
+        String name = file.getFileName() == null ? "" : file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? Optional.empty() : named(name.substring(dot + 1));
+    }
+
+}
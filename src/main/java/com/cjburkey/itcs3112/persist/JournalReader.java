@@ -0,0 +1,86 @@
+package com.cjburkey.itcs3112.persist;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records written by a {@link JournalWriter}.
+ */
+final class JournalReader {
+
+    /**
+     * Handles one record read from a journal.
+     */
+    @FunctionalInterface
+    interface RecordHandler {
+
+        void handle(DataInputStream record) throws IOException;
+
+    }
+
+    private JournalReader() {
+    }
+
+    /**
+     * Pass every intact record in the file to the handler, in order.
+     * Reading stops at the first truncated or corrupt record, which is what a crash part-way through a write leaves
+     * behind; the file is then cut off at that point so future appends follow the last good record.
+     *
+     * @param file The journal file to read.
+     * @param handler The handler to receive each record.
+     * @return The number of records read.
+     * @throws IOException If reading the file fails or the handler throws.
+     */
+    static int read(Path file, RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(JournalWriter.HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            long size = channel.size();
+            long position = 0;
+            int count = 0;
+
+            while (position + JournalWriter.HEADER_SIZE <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                int length = header.getInt(0);
+                int checksum = header.getInt(4);
+                if (length < 0 || position + JournalWriter.HEADER_SIZE + length > size) {
+                    break;
+                }
+
+                byte[] record = new byte[length];
+                readFully(channel, ByteBuffer.wrap(record), position + JournalWriter.HEADER_SIZE);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                handler.handle(new DataInputStream(new ByteArrayInputStream(record)));
+                position += JournalWriter.HEADER_SIZE + length;
+                count ++;
+            }
+
+            // Drop any torn record at the end
+            if (position < size) {
+                channel.truncate(position);
+            }
+            return count;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+}
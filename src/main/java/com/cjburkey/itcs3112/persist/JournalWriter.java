@@ -0,0 +1,269 @@
+package com.cjburkey.itcs3112.persist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Appends length-prefixed, checksummed records to a journal file.
+ * Appending only copies the record into memory; a background thread writes everything appended since its last pass
+ * and forces it to disk with a single fsync, so many records share the cost of one sync (group commit).
+ * Callers that need durability wait for it with {@link #await(long)} or {@link #sync()}.
+ * Once a write fails, or the background thread is interrupted, every later append, sync and rotation fails with the
+ * same error.
+ *
+ * <p>Each record is stored as its length, the CRC-32 of its bytes, and then the bytes themselves.</p>
+ */
+final class JournalWriter implements Closeable {
+
+    /**
+     * The number of bytes written before each record's contents.
+     */
+    static final int HEADER_SIZE = 8;
+
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final Thread flusher;
+
+    // Told about the first failed write, from the flusher thread
+    private final Consumer<IOException> onFailure;
+
+    // Records appended but not yet handed to the flusher, and the buffer the flusher is writing
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+
+    private FileChannel channel;
+    private long segmentSize;
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean rotating;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Start appending to the end of a journal file.
+     *
+     * @param channel The journal file.
+     * @param onFailure Told about the first write that fails, as soon as it fails.
+     * @throws IOException If the file's size can't be read.
+     */
+    JournalWriter(FileChannel channel, Consumer<IOException> onFailure) throws IOException {
+        this.channel = channel;
+        this.onFailure = onFailure;
+        this.segmentSize = channel.size();
+        channel.position(segmentSize);
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Append a record. The record isn't durable until {@link #await(long)} returns for the returned sequence number.
+     *
+     * @param record The array containing the record.
+     * @param length The number of bytes of the record, starting at index 0.
+     * @return The sequence number of the record.
+     * @throws IOException If an earlier write failed or the journal is closed.
+     */
+    long append(byte[] record, int length) throws IOException {
+        synchronized (lock) {
+            while (rotating) {
+                waitOnLock();
+            }
+            checkOpen();
+
+            if (pending.remaining() < HEADER_SIZE + length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + length));
+                pending.flip();
+                pending = bigger.put(pending);
+            }
+            crc.reset();
+            crc.update(record, 0, length);
+            pending.putInt(length).putInt((int) crc.getValue()).put(record, 0, length);
+            segmentSize += HEADER_SIZE + length;
+
+            lock.notifyAll();
+            return ++ appendedSeq;
+        }
+    }
+
+    /**
+     * Block until the record with the provided sequence number (and every record before it) is on disk.
+     *
+     * @param seq The sequence number returned by {@link #append(byte[], int)}.
+     * @throws IOException If writing the journal failed.
+     */
+    void await(long seq) throws IOException {
+        synchronized (lock) {
+            while (durableSeq < seq && failure == null) {
+                waitOnLock();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Block until every record appended so far is on disk.
+     *
+     * @throws IOException If writing the journal failed.
+     */
+    void sync() throws IOException {
+        long seq;
+        synchronized (lock) {
+            seq = appendedSeq;
+        }
+        await(seq);
+    }
+
+    /**
+     * Get the number of bytes in the current journal file, including records not yet on disk.
+     *
+     * @return The size of the current segment.
+     */
+    long segmentSize() {
+        synchronized (lock) {
+            return segmentSize;
+        }
+    }
+
+    /**
+     * Finish writing the current journal file and continue appending to the provided one.
+     * Appends made during the switch wait until it's complete, so every record lands in exactly one file.
+     *
+     * @param next The file to write future records to.
+     * @throws IOException If writing or closing the current file fails.
+     */
+    void rotate(FileChannel next) throws IOException {
+        FileChannel old;
+        synchronized (lock) {
+            rotating = true;
+            try {
+                while (durableSeq < appendedSeq && failure == null) {
+                    waitOnLock();
+                }
+                checkOpen();
+                old = channel;
+                channel = next;
+                segmentSize = next.size();
+                next.position(segmentSize);
+            } finally {
+                rotating = false;
+                lock.notifyAll();
+            }
+        }
+        old.close();
+    }
+
+    /**
+     * Write and sync everything appended so far, then close the journal file.
+     *
+     * @throws IOException If writing or closing the journal fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        }
+
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            flushUntilClosed();
+        } catch (InterruptedException e) {
+            // Nothing appended from now on would be written, so waiters are failed instead of waiting forever
+            Thread.currentThread().interrupt();
+            fail(new InterruptedIOException("Journal flusher was interrupted"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void flushUntilClosed() throws IOException, InterruptedException {
+        while (true) {
+            long seq;
+            FileChannel target;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed) {
+                    lock.wait();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+
+                // Take everything appended so far as one group
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                seq = appendedSeq;
+                target = channel;
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    target.write(writing);
+                }
+                target.force(false);
+            } finally {
+                writing.clear();
+            }
+
+            synchronized (lock) {
+                durableSeq = seq;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Called once, from the flusher thread, when it stops without being closed
+    private void fail(IOException e) {
+        synchronized (lock) {
+            failure = e;
+            lock.notifyAll();
+        }
+        onFailure.accept(e);
+    }
+
+    // Must hold the lock
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+    }
+
+    // Must hold the lock
+    private void waitOnLock() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+    }
+
+}
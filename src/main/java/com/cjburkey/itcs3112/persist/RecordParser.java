@@ -0,0 +1,663 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.DateCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * Parses and validates one chunk of an import file, grouping its items by course.
+ * Chunks always start at the beginning of a record, so any number of them can be parsed at once, each by its own
+ * parser.
+ */
+final class RecordParser {
+
+    // Errors past this many in one chunk are counted but not described
+    static final int MAX_REPORTED_ERRORS = 10;
+
+    private static final byte[] COURSE_KEY = "course".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAME_KEY = "name".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DUE_KEY = "due".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] KEYS = {COURSE_KEY, NAME_KEY, DUE_KEY};
+    private static final String CSV_HEADER = "course,name,due";
+
+    /**
+     * The items from one chunk, grouped by course in the order each course first appeared.
+     */
+    static final class Batch {
+
+        final Map<String, CourseBatch> courses = new LinkedHashMap<>();
+        final List<RecordError> errors = new ArrayList<>();
+        int errorCount;
+
+        // The number of line breaks in the chunk
+        int lines;
+
+    }
+
+    /**
+     * A record that couldn't be imported.
+     *
+     * @param line The record's line number within its chunk, starting at 0.
+     * @param message What was wrong with the record.
+     */
+    record RecordError(int line, String message) {
+    }
+
+    /**
+     * The items for one course within a chunk, in the order they appeared.
+     */
+    static final class CourseBatch {
+
+        String[] names = new String[16];
+        long[] dueDays = new long[16];
+        int count;
+
+        void add(String name, long dueDay) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                dueDays = Arrays.copyOf(dueDays, count * 2);
+            }
+            names[count] = name;
+            dueDays[count] = dueDay;
+            count ++;
+        }
+
+    }
+
+    private final ExchangeFormat format;
+    private final byte[] data;
+    private final int end;
+    private final Batch batch = new Batch();
+    private final DateText dateText = new DateText();
+
+    private int position;
+    private int line;
+
+    // The last course a record was added to, so records from the same course skip decoding and looking up its name.
+    // The start is -1 unless the name was read straight from the data.
+    private String lastCourseName;
+    private CourseBatch lastCourse;
+    private int lastCourseStart = -1;
+    private int lastCourseLength;
+
+    // The fields of the record being parsed. The due date is only located, not decoded.
+    private String course;
+    private int courseStart;
+    private int courseLength;
+    private String name;
+    private int dueStart;
+    private int dueEnd;
+    private boolean hasDue;
+
+    private RecordParser(ExchangeFormat format, byte[] data, int start, int end) {
+        this.format = format;
+        this.data = data;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse a chunk of records.
+     *
+     * @param format The format of the records.
+     * @param data The bytes holding the chunk.
+     * @param start The index of the chunk's first byte, which begins a record.
+     * @param end The index after the chunk's last byte, which ends a record.
+     * @param first Whether this is the start of the file, which may hold a header.
+     * @return The records, grouped by course, and any errors.
+     */
+    static Batch parse(ExchangeFormat format, byte[] data, int start, int end, boolean first) {
+        RecordParser parser = new RecordParser(format, data, start, end);
+        if (first && format == ExchangeFormat.CSV) {
+            parser.skipHeader();
+        }
+        parser.parseAll();
+        return parser.batch;
+    }
+
+    /**
+     * Find where the last complete record in a region ends.
+     *
+     * @param format The format of the records.
+     * @param data The bytes holding the region, which starts at the beginning of a record.
+     * @param start The index of the region's first byte.
+     * @param end The index after the region's last byte.
+     * @return The index after the last line break that ends a record, or {@code -1} if there isn't one.
+     */
+    static int lastRecordEnd(ExchangeFormat format, byte[] data, int start, int end) {
+        if (format == ExchangeFormat.NDJSON) {
+            for (int i = end - 1; i >= start; i --) {
+                if (data[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        // Line breaks inside quoted CSV fields don't end records, so quotes have to be tracked from the start, by the
+        // same rules the parser follows: only a quote starting a field opens a quoted field, a doubled quote inside
+        // one is an escaped quote, and any other quote is an ordinary character
+        int last = -1;
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = start; i < end; i ++) {
+            byte b = data[i];
+            if (quoted) {
+                if (b == '"') {
+                    if (i + 1 < end && data[i + 1] == '"') {
+                        i ++;
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if (b == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (b == '\n') {
+                last = i + 1;
+                fieldStart = true;
+            } else {
+                fieldStart = b == ',';
+            }
+        }
+        return last;
+    }
+
+    private void skipHeader() {
+        int lineEnd = position;
+        while (lineEnd < end && data[lineEnd] != '\n') {
+            lineEnd ++;
+        }
+        String header = new String(data, position, lineEnd - position, StandardCharsets.UTF_8).strip();
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        if (header.equalsIgnoreCase(CSV_HEADER)) {
+            position = Math.min(lineEnd + 1, end);
+            if (lineEnd < end) {
+                line ++;
+            }
+        }
+    }
+
+    private void parseAll() {
+        while (position < end) {
+            int recordLine = line;
+            course = null;
+            courseStart = -1;
+            name = null;
+            hasDue = false;
+            try {
+                boolean found = format == ExchangeFormat.CSV ? parseCsvRecord() : parseJsonRecord();
+                if (found) {
+                    accept();
+                }
+            } catch (RecordException e) {
+                error(recordLine, e.getMessage());
+            }
+            skipLine();
+        }
+        batch.lines = line;
+    }
+
+    // Validate the record's fields and add it to its course's batch
+    private void accept() throws RecordException {
+        if (course == null || course.isEmpty()) {
+            throw new RecordException("Missing course name");
+        }
+        long dueDay = 0;
+        if (hasDue) {
+            try {
+                dueDay = DateCodec.parse(dateText, dueStart, dueEnd);
+            } catch (ParseException e) {
+                throw new RecordException("Invalid due date (" + e.getMessage() + ")");
+            }
+        } else if (name != null && !name.isEmpty()) {
+            throw new RecordException("Missing due date");
+        }
+
+        if (!course.equals(lastCourseName)) {
+            lastCourse = batch.courses.computeIfAbsent(course, c -> new CourseBatch());
+            lastCourseName = course;
+        }
+        lastCourseStart = courseStart;
+        lastCourseLength = courseLength;
+        if (hasDue) {
+            lastCourse.add(name == null ? "" : name, dueDay);
+        }
+    }
+
+    private void error(int recordLine, String message) {
+        if (batch.errors.size() < MAX_REPORTED_ERRORS) {
+            batch.errors.add(new RecordError(recordLine, message));
+        }
+        batch.errorCount ++;
+    }
+
+    // Move past the end of the record's line, skipping the rest of it if the record couldn't be parsed
+    private void skipLine() {
+        while (position < end && data[position] != '\n') {
+            position ++;
+        }
+        if (position < end) {
+            position ++;
+            line ++;
+        }
+    }
+
+    // -- CSV -- //
+
+    // Returns false for a blank line
+    private boolean parseCsvRecord() throws RecordException {
+        if (atLineEnd()) {
+            return false;
+        }
+
+        int field = 0;
+        while (true) {
+            if (field == 0 && data[position] != '"') {
+                readCourseField();
+            } else {
+                String value = readCsvField(field == 2);
+                if (field == 0) {
+                    course = value;
+                } else if (field == 1) {
+                    name = value;
+                }
+            }
+            field ++;
+
+            if (atLineEnd()) {
+                break;
+            }
+            if (data[position] != ',') {
+                throw new RecordException("Unexpected character after quoted field");
+            }
+            if (field == 3) {
+                throw new RecordException("Too many fields (expected course, name and due date)");
+            }
+            position ++;
+        }
+        if (field < 2) {
+            throw new RecordException("Too few fields (expected course, name and due date)");
+        }
+        return true;
+    }
+
+    // Read an unquoted course field, reusing the last course's name if the bytes are the same
+    private void readCourseField() {
+        int start = position;
+        while (position < end && data[position] != ',' && data[position] != '\n') {
+            position ++;
+        }
+        int length = trimReturn(start, position) - start;
+        if (lastCourseStart >= 0 && length == lastCourseLength
+                && Arrays.equals(data, start, start + length, data, lastCourseStart, lastCourseStart + length)) {
+            course = lastCourseName;
+        } else {
+            course = new String(data, start, length, StandardCharsets.UTF_8);
+        }
+        courseStart = start;
+        courseLength = length;
+    }
+
+    // Read one field, leaving the position at the comma or line break after it. The due date is only located.
+    private String readCsvField(boolean due) throws RecordException {
+        if (position < end && data[position] == '"') {
+            String value = readQuotedField();
+            if (due && !value.isEmpty()) {
+                setDue(value);
+            }
+            return value;
+        }
+
+        int start = position;
+        while (position < end && data[position] != ',' && data[position] != '\n') {
+            position ++;
+        }
+        int fieldEnd = trimReturn(start, position);
+        if (due) {
+            if (fieldEnd > start) {
+                dateText.bytes = data;
+                dateText.text = null;
+                dueStart = start;
+                dueEnd = fieldEnd;
+                hasDue = true;
+            }
+            return null;
+        }
+        return new String(data, start, fieldEnd - start, StandardCharsets.UTF_8);
+    }
+
+    private String readQuotedField() throws RecordException {
+        int recordLine = line;
+        position ++;
+        int start = position;
+        byte[] unescaped = null;
+        int length = 0;
+        while (true) {
+            if (position >= end) {
+                line = recordLine;
+                throw new RecordException("Unclosed quote");
+            }
+            byte b = data[position];
+            if (b == '"') {
+                if (position + 1 < end && data[position + 1] == '"') {
+                    // A doubled quote stands for one quote, so the field has to be copied
+                    if (unescaped == null) {
+                        unescaped = new byte[end - start];
+                        length = position - start;
+                        System.arraycopy(data, start, unescaped, 0, length);
+                    }
+                    unescaped[length ++] = '"';
+                    position += 2;
+                    continue;
+                }
+                break;
+            }
+            if (b == '\n') {
+                line ++;
+            }
+            if (unescaped != null) {
+                unescaped[length ++] = b;
+            }
+            position ++;
+        }
+        String value = unescaped == null
+                ? new String(data, start, position - start, StandardCharsets.UTF_8)
+                : new String(unescaped, 0, length, StandardCharsets.UTF_8);
+        position ++;
+        return value;
+    }
+
+    // -- NDJSON -- //
+
+    // Returns false for a blank line
+    private boolean parseJsonRecord() throws RecordException {
+        skipSpaces();
+        if (atLineEnd()) {
+            return false;
+        }
+        expect('{');
+        skipSpaces();
+        if (peek() == '}') {
+            position ++;
+        } else {
+            while (true) {
+                skipSpaces();
+                expect('"');
+                int keyStart = position;
+                String key = readJsonString();
+                int keyEnd = position - 1;
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+
+                byte[] known = key != null ? matchKey(key) : matchKey(keyStart, keyEnd);
+                if (known == COURSE_KEY) {
+                    course = readJsonStringValue("course");
+                } else if (known == NAME_KEY) {
+                    name = readJsonStringValue("name");
+                } else if (known == DUE_KEY) {
+                    String due = readJsonStringValue("due");
+                    if (due != null) {
+                        setDue(due);
+                    }
+                } else {
+                    skipJsonValue(0);
+                }
+
+                skipSpaces();
+                byte next = peek();
+                position ++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new RecordException("Expected ',' or '}' in object");
+                }
+            }
+        }
+        skipSpaces();
+        if (!atLineEnd()) {
+            throw new RecordException("Unexpected text after object");
+        }
+        return true;
+    }
+
+    private static byte[] matchKey(String key) {
+        return switch (key) {
+            case "course" -> COURSE_KEY;
+            case "name" -> NAME_KEY;
+            case "due" -> DUE_KEY;
+            default -> null;
+        };
+    }
+
+    private byte[] matchKey(int start, int end) {
+        for (byte[] key : KEYS) {
+            if (Arrays.equals(data, start, end, key, 0, key.length)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    // Read a string or null value for one of the known fields
+    private String readJsonStringValue(String field) throws RecordException {
+        if (peek() == 'n') {
+            expectWord("null");
+            return null;
+        }
+        if (peek() != '"') {
+            throw new RecordException("Expected a string for \"" + field + "\"");
+        }
+        position ++;
+        int start = position;
+        String value = readJsonString();
+        return value != null ? value : new String(data, start, position - 1 - start, StandardCharsets.UTF_8);
+    }
+
+    // Read a string whose opening quote was just passed. Returns null if it had no escapes, in which case it's the
+    // bytes before the closing quote.
+    private String readJsonString() throws RecordException {
+        int start = position;
+        StringBuilder unescaped = null;
+        while (true) {
+            if (position >= end || data[position] == '\n') {
+                throw new RecordException("Unclosed string");
+            }
+            byte b = data[position];
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder(new String(data, start, position - start, StandardCharsets.UTF_8));
+                }
+                position ++;
+                unescaped.append(readEscape());
+                continue;
+            }
+            if (unescaped != null) {
+                // Copy a run of ordinary bytes at once so multi-byte characters decode correctly
+                int run = position;
+                while (position < end && data[position] != '"' && data[position] != '\\' && data[position] != '\n') {
+                    position ++;
+                }
+                unescaped.append(new String(data, run, position - run, StandardCharsets.UTF_8));
+                continue;
+            }
+            position ++;
+        }
+        position ++;
+        return unescaped == null ? null : unescaped.toString();
+    }
+
+    private char readEscape() throws RecordException {
+        byte b = peek();
+        position ++;
+        return switch (b) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '/' -> '/';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                if (position + 4 > end) {
+                    throw new RecordException("Invalid escape in string");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i ++) {
+                    int digit = Character.digit(data[position ++], 16);
+                    if (digit < 0) {
+                        throw new RecordException("Invalid escape in string");
+                    }
+                    value = value << 4 | digit;
+                }
+                yield (char) value;
+            }
+            default -> throw new RecordException("Invalid escape in string");
+        };
+    }
+
+    // Skip a value of a field that isn't used, including any objects or arrays nested in it
+    private void skipJsonValue(int depth) throws RecordException {
+        if (depth > 64) {
+            throw new RecordException("Value is nested too deeply");
+        }
+        byte b = peek();
+        if (b == '"') {
+            position ++;
+            readJsonString();
+        } else if (b == '{' || b == '[') {
+            byte close = b == '{' ? (byte) '}' : (byte) ']';
+            position ++;
+            skipSpaces();
+            if (peek() == close) {
+                position ++;
+                return;
+            }
+            while (true) {
+                skipSpaces();
+                if (b == '{') {
+                    expect('"');
+                    readJsonString();
+                    skipSpaces();
+                    expect(':');
+                    skipSpaces();
+                }
+                skipJsonValue(depth + 1);
+                skipSpaces();
+                byte next = peek();
+                position ++;
+                if (next == close) {
+                    return;
+                }
+                if (next != ',') {
+                    throw new RecordException("Expected ',' or '" + (char) close + "'");
+                }
+            }
+        } else {
+            // A number, true, false or null
+            int start = position;
+            while (position < end && data[position] != ',' && data[position] != '}' && data[position] != ']'
+                    && data[position] != '\n' && data[position] > ' ') {
+                position ++;
+            }
+            if (position == start) {
+                throw new RecordException("Expected a value");
+            }
+        }
+    }
+
+    private void expectWord(String word) throws RecordException {
+        for (int i = 0; i < word.length(); i ++) {
+            expect(word.charAt(i));
+        }
+    }
+
+    private void expect(char c) throws RecordException {
+        if (peek() != c) {
+            throw new RecordException("Expected '" + c + "'");
+        }
+        position ++;
+    }
+
+    private byte peek() throws RecordException {
+        if (position >= end || data[position] == '\n') {
+            throw new RecordException("Unexpected end of line");
+        }
+        return data[position];
+    }
+
+    private void skipSpaces() {
+        while (position < end && (data[position] == ' ' || data[position] == '\t' || data[position] == '\r')) {
+            position ++;
+        }
+    }
+
+    // -- Shared -- //
+
+    private boolean atLineEnd() {
+        return position >= end || data[position] == '\n' || data[position] == '\r'
+                && (position + 1 >= end || data[position + 1] == '\n');
+    }
+
+    // Use a due date that had to be decoded, such as from a quoted field
+    private void setDue(String text) {
+        dateText.bytes = null;
+        dateText.text = text;
+        dueStart = 0;
+        dueEnd = text.length();
+        hasDue = true;
+    }
+
+    // Leave a carriage return before a line break out of a field
+    private int trimReturn(int start, int fieldEnd) {
+        return fieldEnd > start && data[fieldEnd - 1] == '\r' ? fieldEnd - 1 : fieldEnd;
+    }
+
+    // Lets dates be parsed straight from the data, or from a decoded string when they were quoted or escaped
+    private static final class DateText implements CharSequence {
+
+        byte[] bytes;
+        String text;
+
+        @Override
+        public int length() {
+            return bytes != null ? bytes.length : text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return bytes != null ? (char) (bytes[index] & 0xFF) : text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return bytes != null ? new String(bytes, start, end - start, StandardCharsets.UTF_8) : text.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+
+    }
+
+    // A record that can't be imported
+    private static final class RecordException extends Exception {
+
+        RecordException(String message) {
+            super(message);
+        }
+
+    }
+
+}
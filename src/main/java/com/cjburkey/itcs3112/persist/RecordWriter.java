@@ -0,0 +1,176 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.DateCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes records for an export file straight into a reusable buffer, writing it to the channel each time it fills.
+ */
+final class RecordWriter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Room for the longest encoding of one character, or one formatted date
+    private static final int MAX_PUT = DateCodec.LENGTH;
+
+    private final WritableByteChannel channel;
+    private final ExchangeFormat format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final char[] date = new char[DateCodec.LENGTH];
+
+    RecordWriter(WritableByteChannel channel, ExchangeFormat format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        if (format == ExchangeFormat.CSV) {
+            putAscii("course,name,due\n");
+        }
+    }
+
+    /**
+     * Write a record that only creates a course.
+     *
+     * @param course The course's name.
+     * @throws IOException If writing fails.
+     */
+    void course(String course) throws IOException {
+        if (format == ExchangeFormat.CSV) {
+            putCsv(course);
+            putAscii(",,\n");
+        } else {
+            putAscii("{\"course\":");
+            putJson(course);
+            putAscii("}\n");
+        }
+    }
+
+    /**
+     * Write a record for one item.
+     *
+     * @param course The name of the item's course.
+     * @param name The item's name.
+     * @param dueDay The day the item is due, as the number of days since 1970-01-01.
+     * @throws IOException If writing fails.
+     */
+    void item(String course, String name, long dueDay) throws IOException {
+        if (format == ExchangeFormat.CSV) {
+            putCsv(course);
+            put((byte) ',');
+            putCsv(name);
+            put((byte) ',');
+            putDate(dueDay);
+            put((byte) '\n');
+        } else {
+            putAscii("{\"course\":");
+            putJson(course);
+            putAscii(",\"name\":");
+            putJson(name);
+            putAscii(",\"due\":\"");
+            putDate(dueDay);
+            putAscii("\"}\n");
+        }
+    }
+
+    /**
+     * Write out whatever is still buffered.
+     *
+     * @throws IOException If writing fails.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Quote the field only if it holds a comma, quote or line break
+    private void putCsv(String text) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i ++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            putText(text, false);
+            return;
+        }
+        put((byte) '"');
+        putText(text, false);
+        put((byte) '"');
+    }
+
+    private void putJson(String text) throws IOException {
+        put((byte) '"');
+        putText(text, true);
+        put((byte) '"');
+    }
+
+    // Encode text as UTF-8, escaping it for a JSON string or doubling quotes for a quoted CSV field
+    private void putText(String text, boolean json) throws IOException {
+        for (int i = 0; i < text.length(); i ++) {
+            if (buffer.remaining() < MAX_PUT) {
+                flush();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer.put(json ? (byte) '\\' : (byte) '"').put((byte) '"');
+                } else if (json && c == '\\') {
+                    buffer.put((byte) '\\').put((byte) '\\');
+                } else if (json && (c == '\n' || c == '\r' || c == '\t')) {
+                    buffer.put((byte) '\\').put((byte) (c == '\n' ? 'n' : c == '\r' ? 'r' : 't'));
+                } else if (json && c < 0x20) {
+                    buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                            .put(hex(c >> 4)).put(hex(c & 0xF));
+                } else {
+                    buffer.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++ i));
+                buffer.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can't be encoded, so it's replaced, as String.getBytes would
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private void putDate(long dueDay) throws IOException {
+        if (buffer.remaining() < MAX_PUT) {
+            flush();
+        }
+        if (DateCodec.format(dueDay, date, 0) < 0) {
+            putAscii(DateCodec.format(dueDay));
+            return;
+        }
+        for (char c : date) {
+            buffer.put((byte) c);
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i ++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+
+    private static byte hex(int digit) {
+        return (byte) "0123456789abcdef".charAt(digit);
+    }
+
+}
@@ -0,0 +1,425 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduleListener;
+import com.cjburkey.itcs3112.ScheduledItem;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link ScheduleHandler}'s courses and items on disk.
+ *
+ * <p>Every change is appended to a binary journal as it happens. Once the current journal segment grows past a
+ * threshold, a new segment is started and a background thread writes a snapshot of the state at that moment, after
+ * which the older segments are deleted. Opening a store loads the latest snapshot and replays only the segments
+ * written after it, so startup time depends on the amount of data rather than the length of its history.</p>
+ *
+ * <p>If the journal can't be written, the handler is told to {@link ScheduleHandler#refuseChanges refuse changes}
+ * from then on, so the schedule in memory never gets more than the failed write ahead of the one on disk.</p>
+ */
+public final class ScheduleStore implements ScheduleListener, Closeable {
+
+    /**
+     * The default journal segment size, in bytes, that triggers a compaction.
+     */
+    public static final long DEFAULT_COMPACT_THRESHOLD = 8L << 20;
+
+    private static final String SNAPSHOT_NAME = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Journal record types. Each record is its type, its course's name, then its fields; strings are length-prefixed
+    // UTF-8.
+    private static final byte ADD_COURSE = 1;
+    private static final byte REMOVE_COURSE = 2;
+    private static final byte ADD_ITEM = 3;
+    private static final byte REMOVE_ITEM = 4;
+    private static final byte ADD_RECURRING = 5;
+    private static final byte REMOVE_RECURRING = 6;
+
+    private final Path directory;
+    private final ScheduleHandler scheduleHandler;
+    private final long compactThreshold;
+
+    // Reused to encode each record before it's copied into the journal
+    private final RecordBuffer record = new RecordBuffer();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "schedule-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> compaction;
+
+    private JournalWriter journal;
+    private long segment;
+
+    private ScheduleStore(Path directory, ScheduleHandler scheduleHandler, long compactThreshold) {
+        this.directory = directory;
+        this.scheduleHandler = scheduleHandler;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * Load the schedule stored in the provided directory into the handler, then record all future changes made
+     * through the handler.
+     *
+     * @param directory The directory holding the snapshot and journal, created if missing.
+     * @param scheduleHandler The handler to load into. It should have no courses yet.
+     * @return The opened store.
+     * @throws IOException If the stored schedule can't be read or the journal can't be opened.
+     */
+    public static ScheduleStore open(Path directory, ScheduleHandler scheduleHandler) throws IOException {
+        return open(directory, scheduleHandler, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Load the schedule stored in the provided directory into the handler, then record all future changes made
+     * through the handler.
+     *
+     * @param directory The directory holding the snapshot and journal, created if missing.
+     * @param scheduleHandler The handler to load into. It should have no courses yet.
+     * @param compactThreshold The journal segment size, in bytes, that triggers a compaction.
+     * @return The opened store.
+     * @throws IOException If the stored schedule can't be read or the journal can't be opened.
+     */
+    public static ScheduleStore open(Path directory, ScheduleHandler scheduleHandler, long compactThreshold)
+            throws IOException {
+        Files.createDirectories(directory);
+        ScheduleStore store = new ScheduleStore(directory, scheduleHandler, compactThreshold);
+        store.recover();
+        scheduleHandler.addListener(store);
+        return store;
+    }
+
+    private void recover() throws IOException {
+        // Load the latest snapshot, if there is one
+        long firstSegment = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_NAME);
+        if (Files.exists(snapshot)) {
+            firstSegment = SnapshotFile.read(snapshot, scheduleHandler::addCourse);
+        }
+
+        // Replay the changes made since the snapshot, skipping segments it already covers
+        long lastSegment = firstSegment - 1;
+        for (long id : listSegments()) {
+            if (id < firstSegment) {
+                Files.delete(segmentPath(id));
+                continue;
+            }
+            if (JournalReader.read(segmentPath(id), this::replay) == 0) {
+                // Nothing was written to it before the last exit
+                Files.delete(segmentPath(id));
+            }
+            lastSegment = id;
+        }
+
+        // Always start appending to a fresh segment
+        segment = lastSegment + 1;
+        journal = new JournalWriter(openSegment(segment), this::fail);
+    }
+
+    private void replay(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String courseName = readString(in);
+        switch (type) {
+            case ADD_COURSE -> scheduleHandler.addCourse(courseName, null, List.of(), in.readInt());
+            case REMOVE_COURSE -> scheduleHandler.removeCourse(courseName);
+            case ADD_ITEM -> {
+                int id = in.readInt();
+                String name = readString(in);
+                long dueDay = in.readLong();
+                replayCourse(courseName).addItem(id, name, dueDay);
+            }
+            case REMOVE_ITEM -> replayCourse(courseName).removeItem(in.readInt());
+            case ADD_RECURRING -> replayCourse(courseName).addRecurring(readRecurring(in));
+            case REMOVE_RECURRING -> replayCourse(courseName).removeRecurring(in.readInt());
+            default -> throw new IOException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static RecurringItem readRecurring(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String name = readString(in);
+        long startDay = in.readLong();
+        int interval = in.readInt();
+        int count = in.readInt();
+        int[] skipped = new int[in.readInt()];
+        for (int i = 0; i < skipped.length; i ++) {
+            skipped[i] = in.readInt();
+        }
+        try {
+            return new RecurringItem(id, name, startDay, interval, count, skipped);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Journal has an invalid recurring item", e);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Journal has an invalid string length: " + length);
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private ClassSchedule replayCourse(String name) throws IOException {
+        return scheduleHandler.getCourse(name)
+                .orElseThrow(() -> new IOException("Journal refers to missing course: " + name));
+    }
+
+    /**
+     * Block until every change made so far is on disk.
+     *
+     * @throws IOException If writing the journal failed.
+     */
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    @Override
+    public void courseAdded(ClassSchedule course) {
+        synchronized (this) {
+            begin(ADD_COURSE, course.name);
+            record.putInt(course.getNextRecurringId());
+            end();
+
+            // Courses loaded from a snapshot file arrive with their items
+            ItemSource items = course.copyItems();
+            for (int i = 0; i < items.size(); i ++) {
+                appendItem(course, items.id(i), items.name(i), items.dueDay(i));
+            }
+            course.getRecurring().forEach(rule -> appendRecurring(course, rule));
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public void courseRemoved(ClassSchedule course) {
+        synchronized (this) {
+            begin(REMOVE_COURSE, course.name);
+            end();
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public void itemAdded(ClassSchedule course, ScheduledItem item) {
+        synchronized (this) {
+            appendItem(course, item.id, item.name, item.dueDay);
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public void itemRemoved(ClassSchedule course, ScheduledItem item) {
+        synchronized (this) {
+            begin(REMOVE_ITEM, course.name);
+            record.putInt(item.id);
+            end();
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public void recurringAdded(ClassSchedule course, RecurringItem rule) {
+        synchronized (this) {
+            appendRecurring(course, rule);
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public void recurringRemoved(ClassSchedule course, RecurringItem rule) {
+        synchronized (this) {
+            begin(REMOVE_RECURRING, course.name);
+            record.putInt(rule.id);
+            end();
+            compactIfNeeded();
+        }
+    }
+
+    private void appendRecurring(ClassSchedule course, RecurringItem rule) {
+        begin(ADD_RECURRING, course.name);
+        record.putInt(rule.id);
+        record.putString(rule.name);
+        record.putLong(rule.startDay);
+        record.putInt(rule.interval);
+        record.putInt(rule.count);
+        int[] skipped = rule.getSkipped();
+        record.putInt(skipped.length);
+        for (int occurrence : skipped) {
+            record.putInt(occurrence);
+        }
+        end();
+    }
+
+    private void appendItem(ClassSchedule course, int id, String name, long dueDay) {
+        begin(ADD_ITEM, course.name);
+        record.putInt(id);
+        record.putString(name);
+        record.putLong(dueDay);
+        end();
+    }
+
+    // Start encoding a record, which can't fail however long its strings are
+    private void begin(byte type, String courseName) {
+        record.reset();
+        record.putByte(type);
+        record.putString(courseName);
+    }
+
+    // Append the encoded record. The change it records is already in memory, so if it can't be appended, no more
+    // changes are accepted.
+    private void end() {
+        try {
+            journal.append(record.array(), record.size());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Called once for the write that failed, and again for each change that was already under way
+    private void fail(IOException e) {
+        scheduleHandler.refuseChanges(e);
+    }
+
+    // Only called once a change has been completely journaled
+    private void compactIfNeeded() {
+        if (journal.segmentSize() >= compactThreshold && (compaction == null || compaction.isDone())) {
+            compact();
+        }
+    }
+
+    /**
+     * Start a new journal segment and write a snapshot of the current state in the background.
+     * This is done automatically as the journal grows. If a compaction is already running, that one is returned
+     * instead.
+     *
+     * @return The background task writing the snapshot.
+     */
+    public synchronized Future<?> compact() {
+        if (compaction != null && !compaction.isDone()) {
+            return compaction;
+        }
+
+        compaction = compactor.submit(() -> {
+            long nextSegment;
+            List<SnapshotFile.Course> courses;
+
+            // Pause every change so the snapshot lines up exactly with the start of the new segment
+            try (ScheduleHandler.Paused ignored = scheduleHandler.pauseChanges()) {
+                synchronized (this) {
+                    nextSegment = segment + 1;
+                    journal.rotate(openSegment(nextSegment));
+                    segment = nextSegment;
+                }
+
+                // Items never change once created, so copying each course's item references is enough
+                courses = SnapshotFile.capture(scheduleHandler);
+            }
+
+            SnapshotFile.write(directory.resolve(SNAPSHOT_NAME), nextSegment, courses);
+            for (long id : listSegments()) {
+                if (id < nextSegment) {
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+            return null;
+        });
+        return compaction;
+    }
+
+    /**
+     * Stop recording changes, wait for any compaction in progress, and sync the journal.
+     *
+     * @throws IOException If a compaction or the final sync failed.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduleHandler.removeListener(this);
+        try {
+            Future<?> running;
+            synchronized (this) {
+                running = compaction;
+            }
+            if (running != null) {
+                running.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compaction");
+        } catch (ExecutionException e) {
+            throw new IOException("Compaction failed", e.getCause());
+        } finally {
+            compactor.shutdown();
+            journal.close();
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .map(n -> Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    // Encodes records as `DataInputStream` reads them, except for strings, and exposes the backing array so records
+    // can be appended without copying them first
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        void putByte(byte value) {
+            write(value);
+        }
+
+        void putInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        // Length-prefixed UTF-8
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+    }
+
+}
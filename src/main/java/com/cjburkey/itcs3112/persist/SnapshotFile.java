@@ -0,0 +1,427 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the full contents of a schedule at one point in time.
+ *
+ * <p>Snapshots are memory-mapped when read. The header and course table are checked and read up front, but each
+ * course's items stay in the mapped file until the course is first used, so opening even a very large snapshot only
+ * costs one small object per course. The layout is:</p>
+ * <pre>
+ * header:       magic, version, next journal segment, course count, CRC-32 of the header and course table
+ * course table: per course, its block offset, name offset, name length, item count, block length and block CRC-32
+ * course names: UTF-8
+ * course block: per item, its due day, name offset (from the start of the block), name length and ID, then the
+ *               item names in UTF-8, then per recurring item its ID, start day, interval, occurrence count, skipped
+ *               occurrences and name, then the length of the recurring items, then the ID the course's next
+ *               recurring item gets
+ * </pre>
+ * <p>Items in each block are sorted by due date, so due date searches can run directly against the mapped file.</p>
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x434A5353;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int COURSE_ENTRY_SIZE = 32;
+    private static final int ITEM_ENTRY_SIZE = 20;
+
+    /**
+     * The contents of one course at the time the snapshot was taken.
+     *
+     * @param name The course's name.
+     * @param items The course's items, in due date order.
+     * @param recurring The course's recurring items.
+     * @param nextRecurringId The ID the course's next recurring item gets.
+     */
+    record Course(String name, ItemSource items, List<RecurringItem> recurring, int nextRecurringId) {
+    }
+
+    /**
+     * Receives each course read from a snapshot.
+     */
+    @FunctionalInterface
+    interface CourseHandler {
+
+        void handle(String name, ItemSource items, List<RecurringItem> recurring, int nextRecurringId);
+
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Save every course in the handler to a snapshot file.
+     *
+     * @param scheduleHandler The handler holding the courses.
+     * @param file The file to write, replaced if it exists.
+     * @throws IOException If writing fails.
+     */
+    public static void save(ScheduleHandler scheduleHandler, Path file) throws IOException {
+        List<Course> courses;
+        try (ScheduleHandler.Paused ignored = scheduleHandler.pauseChanges()) {
+            courses = capture(scheduleHandler);
+        }
+        write(file, 0, courses);
+    }
+
+    /**
+     * Replace every course in the handler with the courses from a snapshot file.
+     * Items are read from the file as each course is first used.
+     *
+     * @param scheduleHandler The handler to load into.
+     * @param file The snapshot file.
+     * @return The number of courses loaded.
+     * @throws IOException If reading fails or the snapshot is corrupt. The handler is unchanged in that case.
+     */
+    public static int load(ScheduleHandler scheduleHandler, Path file) throws IOException {
+        // Read everything first so a bad file doesn't leave the handler half-replaced
+        List<Course> courses = new ArrayList<>();
+        read(file, (name, items, recurring, nextRecurringId) ->
+                courses.add(new Course(name, items, recurring, nextRecurringId)));
+
+        // Nobody else sees a mix of old and new courses
+        try (ScheduleHandler.Paused ignored = scheduleHandler.pauseChanges()) {
+            for (ClassSchedule course : List.copyOf(scheduleHandler.getCourseSchedules())) {
+                scheduleHandler.removeCourse(course.name);
+            }
+            for (Course course : courses) {
+                scheduleHandler.addCourse(course.name(), course.items(), course.recurring(), course.nextRecurringId());
+            }
+        }
+        return courses.size();
+    }
+
+    /**
+     * Copy the current contents of every course without loading any that haven't been loaded yet.
+     * Changes should be paused while this runs so the copy reflects a single moment.
+     *
+     * @param scheduleHandler The handler holding the courses.
+     * @return The courses.
+     */
+    static List<Course> capture(ScheduleHandler scheduleHandler) {
+        List<Course> courses = new ArrayList<>();
+        for (ClassSchedule course : scheduleHandler.getCourseSchedules()) {
+            courses.add(new Course(course.name, course.copyItems(), course.getRecurring(),
+                    course.getNextRecurringId()));
+        }
+        return courses;
+    }
+
+    /**
+     * Write a snapshot, replacing any existing one only once the new one is completely on disk.
+     *
+     * @param file The snapshot file.
+     * @param nextSegment The first journal segment containing changes made after this snapshot.
+     * @param courses The courses to write.
+     * @throws IOException If writing fails.
+     */
+    static void write(Path file, long nextSegment, List<Course> courses) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Course names go right after the table, and the blocks follow them
+            byte[][] courseNames = new byte[courses.size()][];
+            long namesSize = 0;
+            for (int i = 0; i < courses.size(); i ++) {
+                courseNames[i] = courses.get(i).name().getBytes(StandardCharsets.UTF_8);
+                namesSize += courseNames[i].length;
+            }
+            long tableSize = (long) COURSE_ENTRY_SIZE * courses.size();
+            ByteBuffer table = ByteBuffer.allocate(Math.toIntExact(HEADER_SIZE + tableSize + namesSize));
+            table.position(HEADER_SIZE);
+
+            // Write each course's block, filling in its table entry as we go
+            long blockOffset = table.capacity();
+            long nameOffset = HEADER_SIZE + tableSize;
+            CRC32 crc = new CRC32();
+            BlockWriter blockWriter = new BlockWriter();
+            for (int i = 0; i < courses.size(); i ++) {
+                ByteBuffer block = blockWriter.encode(courses.get(i));
+                crc.reset();
+                crc.update(block.duplicate());
+                int blockLength = block.remaining();
+                writeFully(channel, block, blockOffset);
+
+                table.putLong(blockOffset);
+                table.putLong(nameOffset);
+                table.putInt(courseNames[i].length);
+                table.putInt(courses.get(i).items().size());
+                table.putInt(blockLength);
+                table.putInt((int) crc.getValue());
+                blockOffset += blockLength;
+                nameOffset += courseNames[i].length;
+            }
+            for (byte[] name : courseNames) {
+                table.put(name);
+            }
+
+            // Finally, the header
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            table.putLong(8, nextSegment);
+            table.putInt(16, courses.size());
+            table.putInt(20, headerChecksum(table));
+            writeFully(channel, table.flip(), 0);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a snapshot, passing each course to the handler.
+     *
+     * @param file The snapshot file.
+     * @param handler The handler to receive each course.
+     * @return The first journal segment containing changes made after this snapshot.
+     * @throws IOException If reading fails or the snapshot is corrupt.
+     */
+    static long read(Path file, CourseHandler handler) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8) {
+                throw new IOException("Not a supported schedule snapshot: " + file);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Schedule snapshot is too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int version = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || version != VERSION) {
+            throw new IOException("Not a supported schedule snapshot: " + file);
+        }
+
+        int courseCount = buffer.getInt(16);
+        long tableEnd = HEADER_SIZE + (long) COURSE_ENTRY_SIZE * courseCount;
+        if (courseCount < 0 || tableEnd > buffer.limit()) {
+            throw new IOException("Corrupt schedule snapshot: " + file);
+        }
+
+        // Read the course names first so the whole header can be checked before anything is handed out
+        List<String> names = new ArrayList<>(courseCount);
+        int namesEnd = (int) tableEnd;
+        for (int i = 0; i < courseCount; i ++) {
+            int entry = HEADER_SIZE + COURSE_ENTRY_SIZE * i;
+            long nameOffset = buffer.getLong(entry + 8);
+            int nameLength = buffer.getInt(entry + 16);
+            if (nameOffset < tableEnd || nameLength < 0 || nameOffset + nameLength > buffer.limit()) {
+                throw new IOException("Corrupt schedule snapshot: " + file);
+            }
+            names.add(decode(buffer, (int) nameOffset, nameLength));
+            namesEnd = Math.max(namesEnd, (int) nameOffset + nameLength);
+        }
+        if (headerChecksum(buffer.duplicate().limit(namesEnd)) != buffer.getInt(20)) {
+            throw new IOException("Corrupt schedule snapshot: " + file);
+        }
+
+        for (int i = 0; i < courseCount; i ++) {
+            int entry = HEADER_SIZE + COURSE_ENTRY_SIZE * i;
+            long blockOffset = buffer.getLong(entry);
+            int itemCount = buffer.getInt(entry + 20);
+            int blockLength = buffer.getInt(entry + 24);
+            if (blockOffset < namesEnd || itemCount < 0 || blockLength < (long) ITEM_ENTRY_SIZE * itemCount
+                    || blockOffset + blockLength > buffer.limit()) {
+                throw new IOException("Corrupt schedule snapshot: " + file);
+            }
+            ByteBuffer block = buffer.slice((int) blockOffset, blockLength);
+            MappedItems items = new MappedItems(file, block, itemCount, buffer.getInt(entry + 28));
+            List<RecurringItem> recurring = readRecurring(file, items, (long) ITEM_ENTRY_SIZE * itemCount);
+            handler.handle(names.get(i), items, recurring, block.getInt(blockLength - 4));
+        }
+        return buffer.getLong(8);
+    }
+
+    // Read the recurring items from the end of a course's block, which is checked first since they're read right away.
+    // The block ends with their length, then the next recurring item ID.
+    private static List<RecurringItem> readRecurring(Path file, MappedItems items, long entriesEnd)
+            throws IOException {
+        ByteBuffer block = items.block;
+        if (block.limit() - entriesEnd < 8) {
+            throw new IOException("Corrupt schedule snapshot: " + file);
+        }
+        int trailer = block.limit() - 8;
+        int length = block.getInt(trailer);
+        if (length == 0 && block.getInt(trailer + 4) == 0) {
+            return List.of();
+        }
+        if (length < 0 || length > trailer - entriesEnd) {
+            throw new IOException("Corrupt schedule snapshot: " + file);
+        }
+        try {
+            items.verify();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ByteBuffer in = block.slice(trailer - length, length);
+        List<RecurringItem> recurring = new ArrayList<>();
+        try {
+            while (in.hasRemaining()) {
+                int id = in.getInt();
+                long startDay = in.getLong();
+                int interval = in.getInt();
+                int count = in.getInt();
+                int[] skipped = new int[in.getInt()];
+                for (int i = 0; i < skipped.length; i ++) {
+                    skipped[i] = in.getInt();
+                }
+                int nameLength = in.getInt();
+                String name = decode(in, in.position(), nameLength);
+                in.position(in.position() + nameLength);
+                recurring.add(new RecurringItem(id, name, startDay, interval, count, skipped));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt schedule snapshot: " + file, e);
+        }
+        return recurring;
+    }
+
+    // Covers the header (except the checksum itself), the course table and the course names
+    private static int headerChecksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(20));
+        crc.update(buffer.duplicate().position(HEADER_SIZE).limit(buffer.limit()));
+        return (int) crc.getValue();
+    }
+
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Encodes course blocks, reusing its buffers between courses
+    private static final class BlockWriter {
+
+        private ByteBuffer entries = ByteBuffer.allocate(1 << 12);
+        private ByteArrayOutputStream names = new ByteArrayOutputStream(1 << 12);
+        private ByteArrayOutputStream rulesBuffer = new ByteArrayOutputStream();
+        private DataOutputStream rules = new DataOutputStream(rulesBuffer);
+
+        ByteBuffer encode(Course course) throws IOException {
+            ItemSource items = course.items();
+            int entriesSize = Math.multiplyExact(ITEM_ENTRY_SIZE, items.size());
+            if (entries.capacity() < entriesSize) {
+                entries = ByteBuffer.allocate(entriesSize);
+            }
+            entries.clear();
+            names.reset();
+            rulesBuffer.reset();
+
+            for (int i = 0; i < items.size(); i ++) {
+                byte[] name = items.name(i).getBytes(StandardCharsets.UTF_8);
+                entries.putLong(items.dueDay(i));
+                entries.putInt(Math.addExact(entriesSize, names.size()));
+                entries.putInt(name.length);
+                entries.putInt(items.id(i));
+                names.write(name);
+            }
+
+            for (RecurringItem rule : course.recurring()) {
+                byte[] name = rule.name.getBytes(StandardCharsets.UTF_8);
+                rules.writeInt(rule.id);
+                rules.writeLong(rule.startDay);
+                rules.writeInt(rule.interval);
+                rules.writeInt(rule.count);
+                int[] skipped = rule.getSkipped();
+                rules.writeInt(skipped.length);
+                for (int occurrence : skipped) {
+                    rules.writeInt(occurrence);
+                }
+                rules.writeInt(name.length);
+                rules.write(name);
+            }
+
+            ByteBuffer block = ByteBuffer.allocate(Math.addExact(entriesSize, names.size() + rulesBuffer.size() + 8));
+            block.put(entries.flip());
+            block.put(names.toByteArray());
+            block.put(rulesBuffer.toByteArray());
+            block.putInt(rulesBuffer.size());
+            block.putInt(course.nextRecurringId());
+            return block.flip();
+        }
+
+    }
+
+    // One course's items, read straight from the mapped file
+    private static final class MappedItems implements ItemSource {
+
+        private final Path file;
+        final ByteBuffer block;
+        private final int size;
+        private final int checksum;
+        private volatile boolean verified;
+
+        MappedItems(Path file, ByteBuffer block, int size, int checksum) {
+            this.file = file;
+            this.block = block;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long dueDay(int index) {
+            verify();
+            return block.getLong(ITEM_ENTRY_SIZE * index);
+        }
+
+        @Override
+        public String name(int index) {
+            verify();
+            int entry = ITEM_ENTRY_SIZE * index;
+            return decode(block, block.getInt(entry + 8), block.getInt(entry + 12));
+        }
+
+        @Override
+        public int id(int index) {
+            verify();
+            return block.getInt(ITEM_ENTRY_SIZE * index + 16);
+        }
+
+        // Check the whole block the first time anything is read from it, so a corrupt block is reported as a storage
+        // error instead of giving out garbage
+        void verify() {
+            if (!verified) {
+                CRC32 crc = new CRC32();
+                crc.update(block.duplicate().clear());
+                if ((int) crc.getValue() != checksum) {
+                    throw new UncheckedIOException(new IOException("Corrupt course in schedule snapshot: " + file));
+                }
+                verified = true;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.cjburkey.itcs3112.remind;
+
+import com.cjburkey.itcs3112.DateCodec;
+
+import java.io.PrintStream;
+import java.time.Duration;
+
+/**
+ * Prints each reminder as a line of text.
+ */
+public final class PrintReminderSink implements ReminderSink {
+
+    private final PrintStream out;
+
+    /**
+     * Create a sink that prints to the provided stream.
+     *
+     * @param out The stream to print reminders to.
+     */
+    public PrintReminderSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void remind(Reminder reminder) {
+        String when = reminder.leadTime().isZero() ? "is now due" : "is due in " + describe(reminder.leadTime());
+        out.printf("Reminder: %s \"%s\" %s (%s)\n", reminder.course().name, reminder.item().name, when,
+                DateCodec.format(reminder.item().dueDay));
+        out.flush();
+    }
+
+    private static String describe(Duration duration) {
+        if (duration.toDays() > 0 && duration.equals(Duration.ofDays(duration.toDays()))) {
+            return plural(duration.toDays(), "day");
+        }
+        if (duration.toHours() > 0 && duration.equals(Duration.ofHours(duration.toHours()))) {
+            return plural(duration.toHours(), "hour");
+        }
+        return plural(Math.max(duration.toMinutes(), 1), "minute");
+    }
+
+    private static String plural(long count, String unit) {
+        return count + " " + unit + (count == 1 ? "" : "s");
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.cjburkey.itcs3112.remind;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduledItem;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A notice that an item is coming due.
+ *
+ * @param course The course the item belongs to.
+ * @param item The item.
+ * @param leadTime How long before the item is due this reminder was meant to be sent. Zero means it's now due.
+ * @param dueAt The moment the item becomes due, which is the start of its due day.
+ */
+public record Reminder(ClassSchedule course, ScheduledItem item, Duration leadTime, Instant dueAt) {
+}
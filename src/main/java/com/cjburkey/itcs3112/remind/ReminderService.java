@@ -0,0 +1,437 @@
+package com.cjburkey.itcs3112.remind;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduleListener;
+import com.cjburkey.itcs3112.ScheduledItem;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Sends reminders as the items in a {@link ScheduleHandler} come due.
+ *
+ * <p>Every upcoming item gets one timer in a {@link TimingWheel}, set for its next reminder. Items are due at the
+ * start of their due day in the handler's clock's time zone, and each lead time sends one reminder that long before
+ * then. Adding, removing and re-timing reminders takes constant time, so millions of items can be waiting at once.
+ * When an item or course is removed, its reminders are cancelled.</p>
+ *
+ * <p>A recurring item also gets a single timer, set for the next reminder of its next upcoming occurrence. Once an
+ * occurrence's last reminder is sent, the timer moves on to the following occurrence.</p>
+ *
+ * <p>Time is read from the handler's clock, so replacing the clock (such as with a simulated one) moves reminders
+ * along with it. {@link #start()} runs a scheduler thread that checks for due reminders once per tick; without it,
+ * reminders are only sent when {@link #poll()} is called.</p>
+ */
+public final class ReminderService implements ScheduleListener, Closeable {
+
+    /**
+     * The lead times used unless others are given: a day before, an hour before, and when the item becomes due.
+     */
+    public static final List<Duration> DEFAULT_LEAD_TIMES = List.of(Duration.ofDays(1), Duration.ofHours(1), Duration.ZERO);
+
+    /**
+     * The default timer resolution.
+     */
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    private final ScheduleHandler scheduleHandler;
+    private final Duration[] leadTimes;
+    private final long[] leadMillis;
+    private final long tickMillis;
+    private final CopyOnWriteArrayList<ReminderSink> sinks = new CopyOnWriteArrayList<>();
+
+    // Guards everything below
+    private final Object lock = new Object();
+    private final TimingWheel wheel;
+    private final Map<ClassSchedule, Map<Integer, ItemTimer>> timers = new HashMap<>();
+    private final List<Due> due = new ArrayList<>();
+    private Thread thread;
+    private boolean closed;
+
+    private ReminderService(ScheduleHandler scheduleHandler, List<Duration> leadTimes, Duration tick) {
+        this.scheduleHandler = scheduleHandler;
+
+        // Earliest reminder first
+        this.leadTimes = leadTimes.stream().distinct().sorted(Comparator.reverseOrder()).toArray(Duration[]::new);
+        leadMillis = Arrays.stream(this.leadTimes).mapToLong(Duration::toMillis).toArray();
+        tickMillis = Math.max(tick.toMillis(), 1);
+        wheel = new TimingWheel(Math.floorDiv(scheduleHandler.getClock().millis(), tickMillis));
+    }
+
+    /**
+     * Set reminders for every upcoming item in the handler, using the default lead times and tick, and keep them up
+     * to date as courses and items change.
+     *
+     * @param scheduleHandler The handler whose items should be reminded of.
+     * @return The service, which doesn't send reminders until it's started or polled.
+     */
+    public static ReminderService open(ScheduleHandler scheduleHandler) {
+        return open(scheduleHandler, DEFAULT_LEAD_TIMES, DEFAULT_TICK);
+    }
+
+    /**
+     * Set reminders for every upcoming item in the handler, and keep them up to date as courses and items change.
+     *
+     * @param scheduleHandler The handler whose items should be reminded of.
+     * @param leadTimes How long before each item is due to send a reminder. {@link Duration#ZERO} sends one when the
+     *                  item becomes due.
+     * @param tick The timer resolution. Reminders may be sent up to one tick late.
+     * @return The service, which doesn't send reminders until it's started or polled.
+     */
+    public static ReminderService open(ScheduleHandler scheduleHandler, List<Duration> leadTimes, Duration tick) {
+        if (leadTimes.isEmpty() || leadTimes.stream().anyMatch(Duration::isNegative)) {
+            throw new IllegalArgumentException("Lead times must be zero or positive, and there must be at least one");
+        }
+        ReminderService service = new ReminderService(scheduleHandler, leadTimes, tick);
+
+        // Register while changes are paused so no item is missed or registered twice
+        try (ScheduleHandler.Paused ignored = scheduleHandler.pauseChanges()) {
+            scheduleHandler.addListener(service);
+            for (ClassSchedule course : scheduleHandler.getCourseSchedules()) {
+                service.courseAdded(course);
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Start the scheduler thread, which sends reminders as they come due.
+     *
+     * @return This service.
+     */
+    public ReminderService start() {
+        synchronized (lock) {
+            if (thread == null && !closed) {
+                thread = new Thread(this::run, "reminder-scheduler");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Register a sink to receive reminders.
+     *
+     * @param sink The sink to add.
+     */
+    public void addSink(ReminderSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Unregister a sink so it no longer receives reminders.
+     *
+     * @param sink The sink to remove.
+     */
+    public void removeSink(ReminderSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Get the number of items waiting for a reminder.
+     *
+     * @return The number of pending items.
+     */
+    public int pending() {
+        synchronized (lock) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * Send every reminder that's due by the clock's current time.
+     * If the clock has moved past several of an item's lead times at once, only the latest of them is sent.
+     *
+     * @return The number of reminders sent.
+     */
+    public int poll() {
+        long now = scheduleHandler.getClock().millis();
+        List<Due> ready;
+        synchronized (lock) {
+            wheel.advance(Math.floorDiv(now, tickMillis), timer -> expire((ItemTimer) timer, now));
+            ready = List.copyOf(due);
+            due.clear();
+        }
+
+        // Deliver without holding the lock, skipping items removed in the meantime
+        int sent = 0;
+        for (Due next : ready) {
+            ScheduledItem item = item(next.timer);
+            if (item == null) {
+                continue;
+            }
+            Reminder reminder = new Reminder(next.timer.course, item, leadTimes[next.lead], Instant.ofEpochMilli(next.timer.dueAt));
+            for (ReminderSink sink : sinks) {
+                try {
+                    sink.remind(reminder);
+                } catch (RuntimeException e) {
+                    // One broken sink shouldn't stop the others
+                    e.printStackTrace();
+                }
+            }
+            sent ++;
+        }
+        return sent;
+    }
+
+    @Override
+    public void courseAdded(ClassSchedule course) {
+        // Only items due after today can still be reminded of
+        ItemSource items = course.copyItems();
+        List<RecurringItem> rules = course.getRecurring();
+        long now = scheduleHandler.getClock().millis();
+        synchronized (lock) {
+            for (int i = items.indexAfter(scheduleHandler.today()); i < items.size(); i ++) {
+                schedule(course, items.id(i), items.dueDay(i), now);
+            }
+            for (RecurringItem rule : rules) {
+                scheduleNext(course, rule, 0, now);
+            }
+        }
+    }
+
+    @Override
+    public void courseRemoved(ClassSchedule course) {
+        synchronized (lock) {
+            Map<Integer, ItemTimer> courseTimers = timers.remove(course);
+            if (courseTimers != null) {
+                courseTimers.values().forEach(wheel::cancel);
+            }
+        }
+    }
+
+    @Override
+    public void itemAdded(ClassSchedule course, ScheduledItem item) {
+        long now = scheduleHandler.getClock().millis();
+        synchronized (lock) {
+            schedule(course, item.id, item.dueDay, now);
+        }
+    }
+
+    @Override
+    public void itemRemoved(ClassSchedule course, ScheduledItem item) {
+        synchronized (lock) {
+            Map<Integer, ItemTimer> courseTimers = timers.get(course);
+            ItemTimer timer = courseTimers == null ? null : courseTimers.remove(item.id);
+            if (timer != null) {
+                wheel.cancel(timer);
+            }
+        }
+    }
+
+    @Override
+    public void recurringAdded(ClassSchedule course, RecurringItem rule) {
+        long now = scheduleHandler.getClock().millis();
+        synchronized (lock) {
+            scheduleNext(course, rule, 0, now);
+        }
+    }
+
+    @Override
+    public void recurringRemoved(ClassSchedule course, RecurringItem rule) {
+        synchronized (lock) {
+            Map<Integer, ItemTimer> courseTimers = timers.get(course);
+            ItemTimer timer = courseTimers == null ? null : courseTimers.get(ruleKey(rule.id));
+            if (timer != null && timer.rule == rule) {
+                courseTimers.remove(timer.key);
+                wheel.cancel(timer);
+            }
+        }
+    }
+
+    /**
+     * Stop sending reminders and stop following changes to the handler.
+     */
+    @Override
+    public void close() {
+        scheduleHandler.removeListener(this);
+        Thread running;
+        synchronized (lock) {
+            closed = true;
+            running = thread;
+            lock.notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        Clock clock = scheduleHandler.getClock();
+        while (true) {
+            poll();
+
+            // Sleep until the next tick begins
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    lock.wait(tickMillis - Math.floorMod(clock.millis(), tickMillis));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            clock = scheduleHandler.getClock();
+        }
+    }
+
+    // Must hold the lock
+    private void schedule(ClassSchedule course, int id, long dueDay, long now) {
+        long dueAt = startOfDay(dueDay, scheduleHandler.getClock().getZone());
+        int lead = firstLead(dueAt, now);
+        if (lead < leadMillis.length) {
+            add(new ItemTimer(course, id, id, null, dueAt), lead);
+        }
+    }
+
+    // Must hold the lock; sets a recurring item's timer for the first occurrence from `from` on with a reminder left
+    private void scheduleNext(ClassSchedule course, RecurringItem rule, int from, long now) {
+        ZoneId zone = scheduleHandler.getClock().getZone();
+
+        // Skip the occurrences due before yesterday without looking at them, since a day may begin before midnight UTC
+        long yesterday = Math.floorDiv(now, 86_400_000L) - 1;
+        int occurrence = from;
+        if (yesterday > rule.startDay) {
+            occurrence = (int) Math.max(from, Math.min(rule.count, (yesterday - rule.startDay) / rule.interval));
+        }
+        for (; occurrence < rule.count; occurrence ++) {
+            if (rule.isSkipped(occurrence)) {
+                continue;
+            }
+            long dueAt = startOfDay(rule.dueDay(occurrence), zone);
+            int lead = firstLead(dueAt, now);
+            if (lead < leadMillis.length) {
+                ItemTimer timer = new ItemTimer(course, ruleKey(rule.id), rule.occurrenceId(occurrence), rule, dueAt);
+                timer.occurrence = occurrence;
+                add(timer, lead);
+                return;
+            }
+        }
+
+        // Every occurrence has passed
+        Map<Integer, ItemTimer> courseTimers = timers.get(course);
+        ItemTimer old = courseTimers == null ? null : courseTimers.remove(ruleKey(rule.id));
+        if (old != null) {
+            wheel.cancel(old);
+        }
+    }
+
+    // Must hold the lock; replaces any timer with the same key
+    private void add(ItemTimer timer, int lead) {
+        timer.lead = lead;
+        ItemTimer old = timers.computeIfAbsent(timer.course, c -> new HashMap<>()).put(timer.key, timer);
+        if (old != null) {
+            wheel.cancel(old);
+        }
+        wheel.add(timer, fireTick(timer));
+    }
+
+    // The first lead time that hasn't passed yet for an item due at an instant, or the number of lead times if none
+    private int firstLead(long dueAt, long now) {
+        int lead = 0;
+        while (lead < leadMillis.length && dueAt - leadMillis[lead] < now) {
+            lead ++;
+        }
+        return lead;
+    }
+
+    // The item a timer is for, or null if it's been removed
+    private static ScheduledItem item(ItemTimer timer) {
+        if (timer.rule == null) {
+            return timer.course.getItem(timer.id);
+        }
+        if (timer.course.isRemoved() || !timer.course.getRecurring().contains(timer.rule)) {
+            return null;
+        }
+        return new ScheduledItem(timer.id, timer.rule.name, timer.rule.dueDay(timer.occurrence));
+    }
+
+    // Recurring items' timers are kept under negative keys, so they never clash with an ordinary item's ID
+    private static int ruleKey(int ruleId) {
+        return ~ruleId;
+    }
+
+    // Must hold the lock; called by the wheel as each timer expires
+    private void expire(ItemTimer timer, long now) {
+        // Send only the latest reminder that's come due, then wait for the next one
+        int lead = timer.lead;
+        while (lead + 1 < leadMillis.length && timer.dueAt - leadMillis[lead + 1] <= now) {
+            lead ++;
+        }
+        due.add(new Due(timer, lead));
+
+        timer.lead = lead + 1;
+        if (timer.lead < leadMillis.length) {
+            wheel.add(timer, fireTick(timer));
+        } else if (timer.rule != null) {
+            scheduleNext(timer.course, timer.rule, timer.occurrence + 1, now);
+        } else {
+            Map<Integer, ItemTimer> courseTimers = timers.get(timer.course);
+            if (courseTimers != null && courseTimers.get(timer.key) == timer) {
+                courseTimers.remove(timer.key);
+            }
+        }
+    }
+
+    // The instant a day starts in the zone, skipping the calendar lookup for zones that are always at the same offset
+    private static long startOfDay(long epochDay, ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            return (epochDay * 86400 - rules.getOffset(Instant.EPOCH).getTotalSeconds()) * 1000;
+        }
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    // The first tick at or after the timer's next reminder
+    private long fireTick(ItemTimer timer) {
+        return -Math.floorDiv(-(timer.dueAt - leadMillis[timer.lead]), tickMillis);
+    }
+
+    // The single timer for an item or recurring item, set for its next reminder
+    private static final class ItemTimer extends TimingWheel.Timer {
+
+        final ClassSchedule course;
+        final int key;
+        final int id;
+        final RecurringItem rule;
+        final long dueAt;
+        int lead;
+
+        // The occurrence the timer is for, if it's for a recurring item
+        int occurrence;
+
+        // The key is the item's ID, or the recurring item's key; the ID is the item's or the occurrence's
+        ItemTimer(ClassSchedule course, int key, int id, RecurringItem rule, long dueAt) {
+            this.course = course;
+            this.key = key;
+            this.id = id;
+            this.rule = rule;
+            this.dueAt = dueAt;
+        }
+
+    }
+
+    // A reminder to send for a timer that expired
+    private record Due(ItemTimer timer, int lead) {
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.cjburkey.itcs3112.remind;
+
+/**
+ * Receives reminders from a {@link ReminderService}.
+ * Sinks are called one at a time on the service's scheduler thread, so they should hand off any slow work.
+ */
+@FunctionalInterface
+public interface ReminderSink {
+
+    /**
+     * Called when a reminder is due.
+     *
+     * @param reminder The reminder.
+     */
+    void remind(Reminder reminder);
+
+}
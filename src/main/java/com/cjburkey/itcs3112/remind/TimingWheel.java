@@ -0,0 +1,205 @@
+package com.cjburkey.itcs3112.remind;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: timers are kept in buckets by deadline, with one wheel of buckets per level and each
+ * level's buckets covering {@value #WHEEL_SIZE} times as many ticks as the level below. Adding and cancelling a timer
+ * only links or unlinks it from a bucket, no matter how many timers there are. As time advances, timers in a higher
+ * level move down a level once their bucket comes up, until they reach the lowest level and expire.
+ *
+ * <p>Deadlines are measured in ticks, whose length is up to the owner. This class isn't thread-safe.</p>
+ */
+final class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 8;
+
+    // Timers further out than this are parked in the top level until they come into range
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * An entry in the wheel. Extend it to attach data to a timer.
+     */
+    static class Timer {
+
+        long deadline;
+
+        // Links within the bucket holding this timer, or `null` if it isn't in the wheel
+        private Timer prev;
+        private Timer next;
+        private int level;
+
+        /**
+         * Get the tick this timer expires on.
+         *
+         * @return The deadline, in ticks.
+         */
+        long deadline() {
+            return deadline;
+        }
+
+        /**
+         * Check whether this timer is waiting in a wheel.
+         *
+         * @return Whether the timer is scheduled.
+         */
+        boolean isScheduled() {
+            return next != null;
+        }
+
+    }
+
+    // Each bucket is a circular list around a sentinel
+    private final Timer[] buckets = new Timer[LEVELS * WHEEL_SIZE];
+    private final int[] levelCounts = new int[LEVELS];
+    private int size;
+
+    // The next tick to process; every earlier tick has been processed
+    private long currentTick;
+
+    /**
+     * Create an empty wheel.
+     *
+     * @param startTick The first tick that hasn't passed yet.
+     */
+    TimingWheel(long startTick) {
+        currentTick = startTick;
+        for (int i = 0; i < buckets.length; i ++) {
+            Timer sentinel = new Timer();
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            buckets[i] = sentinel;
+        }
+    }
+
+    /**
+     * Add a timer. A timer whose deadline has already passed expires on the next tick that hasn't been processed.
+     *
+     * @param timer The timer, which must not already be scheduled.
+     * @param deadline The tick the timer expires on.
+     */
+    void add(Timer timer, long deadline) {
+        timer.deadline = deadline;
+        insert(timer);
+        size ++;
+    }
+
+    /**
+     * Remove a timer before it expires.
+     *
+     * @param timer The timer.
+     * @return Whether the timer was scheduled.
+     */
+    boolean cancel(Timer timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+        unlink(timer);
+        size --;
+        return true;
+    }
+
+    /**
+     * Get the number of scheduled timers.
+     *
+     * @return The number of timers.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Process every tick up to and including the provided one, passing each timer that expires to the consumer.
+     * Stretches of time with no timers in the lower levels are skipped rather than processed one tick at a time.
+     *
+     * @param now The latest tick to process.
+     * @param expired Receives each expired timer, which is no longer scheduled. It may add timers to this wheel.
+     */
+    void advance(long now, Consumer<Timer> expired) {
+        while (currentTick <= now) {
+            if (size == 0) {
+                currentTick = now + 1;
+                return;
+            }
+            long tick = currentTick;
+
+            // Move timers down from every level whose wheel has come back around, starting from the top
+            for (int level = highestAlignedLevel(tick); level > 0; level --) {
+                cascade(level, (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            }
+
+            // Expire the lowest level's bucket for this tick
+            Timer head = buckets[(int) tick & WHEEL_MASK];
+            while (head.next != head) {
+                Timer timer = head.next;
+                unlink(timer);
+                size --;
+                expired.accept(timer);
+            }
+            currentTick = tick + 1;
+
+            // Jump to the next tick where something could happen
+            int emptyLevels = 0;
+            while (emptyLevels < LEVELS && levelCounts[emptyLevels] == 0) {
+                emptyLevels ++;
+            }
+            if (emptyLevels > 0 && emptyLevels < LEVELS) {
+                int shift = WHEEL_BITS * emptyLevels;
+                long boundary = ((currentTick + (1L << shift) - 1) >>> shift) << shift;
+                currentTick = Math.min(boundary, now + 1);
+            }
+        }
+    }
+
+    // The highest level whose bucket index changes at this tick
+    private static int highestAlignedLevel(long tick) {
+        int level = 0;
+        while (level < LEVELS - 1 && (tick & ((1L << (WHEEL_BITS * (level + 1))) - 1)) == 0) {
+            level ++;
+        }
+        return level;
+    }
+
+    private void cascade(int level, int index) {
+        Timer head = buckets[level * WHEEL_SIZE + index];
+        Timer timer = head.next;
+        head.next = head;
+        head.prev = head;
+        while (timer != head) {
+            Timer next = timer.next;
+            levelCounts[level] --;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delta = Math.min(Math.max(timer.deadline - currentTick, 0), MAX_DELTA);
+        long target = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level ++;
+        }
+        int index = (int) (target >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+
+        Timer head = buckets[level * WHEEL_SIZE + index];
+        timer.level = level;
+        timer.prev = head.prev;
+        timer.next = head;
+        head.prev.next = timer;
+        head.prev = timer;
+        levelCounts[level] ++;
+    }
+
+    private void unlink(Timer timer) {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        levelCounts[timer.level] --;
+    }
+
+}
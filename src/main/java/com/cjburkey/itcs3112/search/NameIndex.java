@@ -0,0 +1,455 @@
+package com.cjburkey.itcs3112.search;
+
+import com.cjburkey.itcs3112.AgendaItem;
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduleListener;
+import com.cjburkey.itcs3112.ScheduledItem;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Finds the courses and items whose names contain some text, ignoring case, without scanning every name.
+ *
+ * <p>Every name is broken into its n-grams, the runs of one to three characters within it, and each n-gram maps to a
+ * list of the names containing it. Text up to three characters long is one n-gram, so its list holds exactly the
+ * names that match. Longer text can only be in names that contain all of its three-character n-grams, so only the
+ * names in the shortest of those lists are checked. Prefixes need nothing extra, since a prefix is a substring.</p>
+ *
+ * <p>The index follows its handler as a listener, so names are added and removed as courses and items change.
+ * Removed names are only marked as removed, and are dropped from a list once most of the list has been removed.
+ * A recurring item's name is indexed once, and a match is expanded into each of its occurrences.</p>
+ */
+public final class NameIndex implements ScheduleListener {
+
+    private static final int MAX_GRAM = 3;
+
+    // Guards everything below
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final PostingTable postings = new PostingTable();
+    private final Map<ClassSchedule, CourseEntries> courses = new HashMap<>();
+
+    private NameIndex() {
+    }
+
+    /**
+     * Index the names of every course and item in the handler, and keep them indexed as courses and items change.
+     *
+     * @param scheduleHandler The handler whose names should be indexed.
+     * @return The index.
+     */
+    public static NameIndex open(ScheduleHandler scheduleHandler) {
+        NameIndex index = new NameIndex();
+
+        // Register while changes are paused so no name is missed or indexed twice
+        try (ScheduleHandler.Paused ignored = scheduleHandler.pauseChanges()) {
+            scheduleHandler.addListener(index);
+            for (ClassSchedule course : scheduleHandler.getCourseSchedules()) {
+                index.courseAdded(course);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Find the courses whose names contain the provided text, ignoring case.
+     *
+     * @param text The text to find.
+     * @return The matching courses, sorted by name.
+     */
+    public List<ClassSchedule> findCourses(String text) {
+        List<ClassSchedule> found = new ArrayList<>();
+        search(text, entry -> {
+            if (entry.item == null && entry.rule == null) {
+                found.add(entry.course);
+            }
+        });
+        found.sort(Comparator.comparing(course -> course.name));
+        return found;
+    }
+
+    /**
+     * Find the items whose names contain the provided text, ignoring case, including each occurrence of matching
+     * recurring items.
+     *
+     * @param text The text to find.
+     * @return The matching items with their courses, sorted by course name and then by due date.
+     */
+    public List<AgendaItem> findItems(String text) {
+        List<AgendaItem> found = new ArrayList<>();
+        search(text, entry -> {
+            if (entry.item != null) {
+                found.add(new AgendaItem(entry.course, entry.item));
+            } else if (entry.rule != null) {
+                RecurringItem rule = entry.rule;
+                for (int i = 0; i < rule.count; i ++) {
+                    if (!rule.isSkipped(i)) {
+                        found.add(new AgendaItem(entry.course, new ScheduledItem(rule.occurrenceId(i), rule.name,
+                                rule.dueDay(i))));
+                    }
+                }
+            }
+        });
+        found.sort(Comparator.comparing((AgendaItem match) -> match.course().name)
+                .thenComparingLong(match -> match.item().dueDay)
+                .thenComparingInt(match -> match.item().id));
+        return found;
+    }
+
+    @Override
+    public void courseAdded(ClassSchedule course) {
+        ItemSource items = course.copyItems();
+        List<RecurringItem> rules = course.getRecurring();
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = new CourseEntries(new Entry(course, null, null, course.name));
+            courses.put(course, entries);
+            index(entries.course);
+            for (int i = 0; i < items.size(); i ++) {
+                ScheduledItem item = items.get(i);
+                Entry entry = new Entry(course, item, null, item.name);
+                entries.items.put(item.id, entry);
+                index(entry);
+            }
+            for (RecurringItem rule : rules) {
+                Entry entry = new Entry(course, null, rule, rule.name);
+                entries.rules.put(rule.id, entry);
+                index(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void courseRemoved(ClassSchedule course) {
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = courses.remove(course);
+            if (entries != null) {
+                unindex(entries.course);
+                entries.items.values().forEach(this::unindex);
+                entries.rules.values().forEach(this::unindex);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void itemAdded(ClassSchedule course, ScheduledItem item) {
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = courses.get(course);
+            if (entries != null) {
+                Entry entry = new Entry(course, item, null, item.name);
+                Entry old = entries.items.put(item.id, entry);
+                if (old != null) {
+                    unindex(old);
+                }
+                index(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void itemRemoved(ClassSchedule course, ScheduledItem item) {
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = courses.get(course);
+            Entry entry = entries == null ? null : entries.items.remove(item.id);
+            if (entry != null) {
+                unindex(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recurringAdded(ClassSchedule course, RecurringItem rule) {
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = courses.get(course);
+            if (entries != null) {
+                Entry entry = new Entry(course, null, rule, rule.name);
+                Entry old = entries.rules.put(rule.id, entry);
+                if (old != null) {
+                    unindex(old);
+                }
+                index(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recurringRemoved(ClassSchedule course, RecurringItem rule) {
+        lock.writeLock().lock();
+        try {
+            CourseEntries entries = courses.get(course);
+            Entry entry = entries == null ? null : entries.rules.get(rule.id);
+            if (entry != null && entry.rule == rule) {
+                entries.rules.remove(rule.id);
+                unindex(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Pass every name containing the text to the consumer, while holding the read lock
+    private void search(String text, Consumer<Entry> found) {
+        String key = text.toLowerCase(Locale.ROOT);
+        if (key.isEmpty()) {
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            // Short text is a single n-gram whose list is exactly the matches
+            if (key.length() <= MAX_GRAM) {
+                Posting posting = postings.get(gram(key, 0, key.length()));
+                if (posting != null) {
+                    posting.forEachLive(found);
+                }
+                return;
+            }
+
+            // Otherwise check each name in the shortest list of any of the text's n-grams
+            Posting shortest = null;
+            for (int i = 0; i + MAX_GRAM <= key.length(); i ++) {
+                Posting posting = postings.get(gram(key, i, MAX_GRAM));
+                if (posting == null) {
+                    return;
+                }
+                if (shortest == null || posting.size < shortest.size) {
+                    shortest = posting;
+                }
+            }
+            shortest.forEachLive(entry -> {
+                if (entry.key.contains(key)) {
+                    found.accept(entry);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Must hold the write lock
+    private void index(Entry entry) {
+        for (long gram : grams(entry.key)) {
+            postings.getOrAdd(gram).add(entry);
+        }
+    }
+
+    // Must hold the write lock
+    private void unindex(Entry entry) {
+        entry.removed = true;
+        for (long gram : grams(entry.key)) {
+            Posting posting = postings.get(gram);
+            if (posting != null && posting.remove()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    // The distinct n-grams in a name
+    private static long[] grams(String key) {
+        int length = key.length();
+        long[] grams = new long[length * MAX_GRAM];
+        int count = 0;
+        for (int i = 0; i < length; i ++) {
+            for (int n = 1; n <= MAX_GRAM && i + n <= length; n ++) {
+                grams[count ++] = gram(key, i, n);
+            }
+        }
+        Arrays.sort(grams, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i ++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct ++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    // Packs up to three characters into one key, led by their count so n-grams of different lengths never collide
+    private static long gram(String key, int start, int length) {
+        long gram = length;
+        for (int i = start; i < start + length; i ++) {
+            gram = gram << Character.SIZE | key.charAt(i);
+        }
+        return gram;
+    }
+
+    // A course, item or recurring item name in the index
+    private static final class Entry {
+
+        final ClassSchedule course;
+        final ScheduledItem item;
+        final RecurringItem rule;
+        final String key;
+        boolean removed;
+
+        // Item and rule are both null for the course's own name
+        Entry(ClassSchedule course, ScheduledItem item, RecurringItem rule, String name) {
+            this.course = course;
+            this.item = item;
+            this.rule = rule;
+            this.key = name.toLowerCase(Locale.ROOT);
+        }
+
+    }
+
+    // The entries for one course, so they can be found when items or the course are removed
+    private static final class CourseEntries {
+
+        final Entry course;
+        final Map<Integer, Entry> items = new HashMap<>();
+        final Map<Integer, Entry> rules = new HashMap<>();
+
+        CourseEntries(Entry course) {
+            this.course = course;
+        }
+
+    }
+
+    // Maps n-grams to their lists with open addressing, so looking up an n-gram doesn't box it
+    private static final class PostingTable {
+
+        private long[] keys = new long[1024];
+        private Posting[] values = new Posting[1024];
+        private int size;
+
+        Posting get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        Posting getOrAdd(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+
+            Posting posting = new Posting();
+            keys[i] = key;
+            values[i] = posting;
+            if (++ size * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            return posting;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                return;
+            }
+
+            // Shift later entries of the same run back so no lookup stops early at the gap
+            int gap = i;
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            values[gap] = null;
+            size --;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Posting[] oldValues = values;
+            keys = new long[capacity];
+            values = new Posting[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i ++) {
+                if (oldValues[i] != null) {
+                    int j = slot(oldKeys[i], mask);
+                    while (values[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+    }
+
+    // The names containing one n-gram, some of which may have been removed since
+    private static final class Posting {
+
+        Entry[] entries = new Entry[4];
+        int size;
+        int removed;
+
+        void add(Entry entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size ++] = entry;
+        }
+
+        // Note that one entry was removed, dropping removed entries once they make up most of the list. Returns true
+        // if the list is now empty.
+        boolean remove() {
+            if (++ removed * 2 > size) {
+                int live = 0;
+                for (int i = 0; i < size; i ++) {
+                    if (!entries[i].removed) {
+                        entries[live ++] = entries[i];
+                    }
+                }
+                Arrays.fill(entries, live, size, null);
+                size = live;
+                removed = 0;
+                if (entries.length > 4 && size < entries.length / 4) {
+                    entries = Arrays.copyOf(entries, Math.max(size * 2, 4));
+                }
+            }
+            return size == 0;
+        }
+
+        void forEachLive(Consumer<Entry> action) {
+            for (int i = 0; i < size; i ++) {
+                if (!entries[i].removed) {
+                    action.accept(entries[i]);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.cjburkey.itcs3112.server;
+
+import com.cjburkey.itcs3112.cmd.CommandResult;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Connects to a {@link CommandServer} and sends it commands one at a time.
+ * A client is meant to be used by one thread.
+ */
+public final class CommandClient implements Closeable {
+
+    /**
+     * The server's response to one command.
+     *
+     * @param result The outcome of the command.
+     * @param output Everything the command printed, one line per line.
+     */
+    public record Response(CommandResult result, String output) {
+    }
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    private CommandClient(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Connect to a server on this machine.
+     *
+     * @param port The port the server is listening on.
+     * @return The connected client.
+     * @throws IOException If the connection fails.
+     */
+    public static CommandClient connect(int port) throws IOException {
+        return new CommandClient(new Socket(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Send a command and wait for its response.
+     *
+     * @param command The command, as it would be typed at the terminal.
+     * @return The server's response.
+     * @throws IOException If the connection fails or closes before the response is complete.
+     */
+    public Response execute(String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+
+        StringBuilder output = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(CommandServer.RESULT_PREFIX)) {
+                return new Response(CommandResult.valueOf(line.substring(CommandServer.RESULT_PREFIX.length())),
+                        output.toString());
+            }
+            output.append(line).append('\n');
+        }
+        throw new EOFException("Server closed the connection");
+    }
+
+    /**
+     * Disconnect from the server.
+     *
+     * @throws IOException If closing the socket fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("exit\n");
+            out.flush();
+        } catch (IOException ignored) {
+            // Already disconnected
+        }
+        socket.close();
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.cjburkey.itcs3112.server;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import com.cjburkey.itcs3112.persist.ScheduleStore;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts connections on a local port and runs the commands each client sends against a shared
+ * {@link ScheduleHandler}.
+ *
+ * <p>The protocol is line based. Each line a client sends is executed exactly as if it were typed at the terminal,
+ * with its own {@link Session} per connection. Everything the command prints (including errors) is sent back,
+ * followed by a line holding {@link #RESULT_PREFIX} and the name of the {@link CommandResult}, such as
+ * {@code %SUCCESS}. Sending {@code exit} closes the connection.</p>
+ *
+ * <p>When the handler is backed by a {@link ScheduleStore}, a response is only sent once the command's changes are
+ * on disk. Clients waiting at the same time share a single journal sync.</p>
+ *
+ * <p>Each connection is served by its own thread. On Java 21 and newer those are virtual threads, so thousands of
+ * mostly idle clients cost little more than their sockets.</p>
+ */
+public final class CommandServer implements Closeable {
+
+    /**
+     * Starts the line that ends each response.
+     */
+    public static final String RESULT_PREFIX = "%";
+
+    // How long to wait after a failed accept, doubling with each failure in a row up to the most
+    private static final long MIN_ACCEPT_RETRY_MILLIS = 10;
+    private static final long MAX_ACCEPT_RETRY_MILLIS = 1000;
+
+    private final ScheduleHandler scheduleHandler;
+    private final ScheduleStore store;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = newConnectionExecutor();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Thread acceptThread;
+    private volatile boolean closed;
+
+    private CommandServer(ScheduleHandler scheduleHandler, ScheduleStore store, ServerSocket serverSocket) {
+        this.scheduleHandler = scheduleHandler;
+        this.store = store;
+        this.serverSocket = serverSocket;
+
+        acceptThread = new Thread(this::acceptLoop, "command-server-accept");
+        acceptThread.setDaemon(true);
+    }
+
+    /**
+     * Start listening on the loopback address.
+     *
+     * @param scheduleHandler The handler every client's commands run against.
+     * @param port The port to listen on, or {@code 0} to pick a free one.
+     * @param store The store saving the handler's changes, or {@code null} if they aren't saved.
+     * @return The running server.
+     * @throws IOException If the port can't be bound.
+     */
+    public static CommandServer start(ScheduleHandler scheduleHandler, int port, ScheduleStore store)
+            throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        return start(scheduleHandler, store, serverSocket);
+    }
+
+    // Start accepting connections from an already bound socket
+    static CommandServer start(ScheduleHandler scheduleHandler, ScheduleStore store, ServerSocket serverSocket) {
+        CommandServer server = new CommandServer(scheduleHandler, store, serverSocket);
+        server.acceptThread.start();
+        return server;
+    }
+
+    /**
+     * Get the port this server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Block until the server is closed.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptThread.join();
+    }
+
+    private void acceptLoop() {
+        long retryMillis = MIN_ACCEPT_RETRY_MILLIS;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) {
+                    break;
+                }
+
+                // Failures like running out of file descriptors last a while, so wait rather than retry at once
+                System.err.printf("Failed to accept connection, retrying in %sms (%s)\n", retryMillis, e.getMessage());
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    // Closing
+                    break;
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_ACCEPT_RETRY_MILLIS);
+                continue;
+            }
+            retryMillis = MIN_ACCEPT_RETRY_MILLIS;
+
+            clients.add(socket);
+            connectionExecutor.execute(() -> serve(socket));
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8);
+            Session session = new Session(out, out);
+
+            String input;
+            while ((input = in.readLine()) != null) {
+                input = input.trim();
+                if (input.equals("exit")) {
+                    break;
+                }
+
+                CommandResult result = scheduleHandler.execute(session, input);
+                if (!result.isHandled()) {
+                    out.println("Unknown command");
+                }
+                if (store != null) {
+                    store.sync();
+                }
+                out.print(RESULT_PREFIX);
+                out.println(result.name());
+
+                // Clients that send many commands at once get their responses in as few packets as possible
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (SocketException e) {
+            // The client disconnected or the server is closing
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.printf("Connection failed (%s)\n", e.getMessage());
+            }
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * Stop accepting connections and disconnect every client.
+     *
+     * @throws IOException If the listening socket can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        acceptThread.interrupt();
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        connectionExecutor.shutdown();
+    }
+
+    // Prefer a virtual thread per connection, which needs Java 21
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "command-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
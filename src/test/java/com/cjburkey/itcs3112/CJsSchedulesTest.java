@@ -0,0 +1,53 @@
+package com.cjburkey.itcs3112;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CJsSchedulesTest {
+
+    @Test
+    void pipelinedBatchesPrintTheSameAsPlainOnes() throws Exception {
+        // Enough commands to fill several of the pipeline's batches, with every kind of result along the way
+        StringBuilder script = new StringBuilder("# A comment\n\n  add-course Math  \n");
+        for (int i = 0; i < 2000; i ++) {
+            switch (i % 10) {
+                case 0 -> script.append("add-course C").append(i % 30).append('\n');
+                case 1 -> script.append("select-course C").append((i + 10) % 30).append('\n');
+                case 2 -> script.append("add-item Item").append(i).append(" 2030-01-").append(10 + i % 20).append('\n');
+                case 3 -> script.append("add-item \"Unclosed ").append(i).append('\n');
+                case 4 -> script.append("add-item\n");
+                case 5 -> script.append("no-such-command ").append(i).append('\n');
+                case 6 -> script.append("show\n");
+                case 7 -> script.append("rem-course C").append((i + 20) % 30).append('\n');
+                case 8 -> script.append(i % 3 == 0 ? "\n" : "list-course\n");
+                default -> script.append("find Item").append(i / 100).append('\n');
+            }
+        }
+        script.append("exit\nadd-course Never\n");
+
+        ByteArrayOutputStream batchOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream batchErr = new ByteArrayOutputStream();
+        int batchFailures = new CJsSchedules().runBatch(new BufferedReader(new StringReader(script.toString())),
+                new PrintStream(batchOut), new PrintStream(batchErr));
+
+        ByteArrayOutputStream pipelineOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream pipelineErr = new ByteArrayOutputStream();
+        CJsSchedules pipelined = new CJsSchedules();
+        int pipelineFailures = pipelined.runPipelined(new BufferedReader(new StringReader(script.toString())),
+                new PrintStream(pipelineOut), new PrintStream(pipelineErr));
+
+        assertTrue(batchFailures > 0);
+        assertEquals(batchFailures, pipelineFailures);
+        assertEquals(batchOut.toString(), pipelineOut.toString());
+        assertEquals(batchErr.toString(), pipelineErr.toString());
+        assertTrue(batchErr.toString().contains("Line "), "Unknown commands are reported by line");
+        assertTrue(pipelined.scheduleHandler.getCourse("Never").isEmpty());
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.cjburkey.itcs3112;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactStorageTest {
+
+    private static final int COURSES = 50;
+    private static final int ITEMS_PER_COURSE = 2000;
+    private static final String[] NAME_PREFIXES = { "Homework ", "Quiz ", "Lab ", "Reading ", "Exam ", "Project " };
+
+    @Test
+    void compactedItemsTakeLessThanHalfTheHeapOfAnArrayList() {
+        int count = COURSES * ITEMS_PER_COURSE;
+        SplittableRandom random = new SplittableRandom(5);
+        String[] names = new String[count];
+        long[] days = new long[count];
+        for (int i = 0; i < count; i ++) {
+            names[i] = NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + (1 + random.nextInt(15));
+            days[i] = 19000 + random.nextInt(365);
+        }
+
+        // Each name is a separate string, as if typed in or parsed from a file
+        long arrayList = measure(() -> {
+            List<List<ScheduledItem>> courses = new ArrayList<>();
+            for (int c = 0; c < COURSES; c ++) {
+                ArrayList<ScheduledItem> items = new ArrayList<>();
+                for (int i = 0; i < ITEMS_PER_COURSE; i ++) {
+                    int index = c * ITEMS_PER_COURSE + i;
+                    items.add(new ScheduledItem(i, new String(names[index]), days[index]));
+                }
+                items.sort(null);
+                courses.add(items);
+            }
+            return courses;
+        });
+        long compacted = measure(() -> {
+            ScheduleHandler handler = new ScheduleHandler();
+            for (int c = 0; c < COURSES; c ++) {
+                handler.addCourse("C" + c);
+                String[] courseNames = new String[ITEMS_PER_COURSE];
+                for (int i = 0; i < ITEMS_PER_COURSE; i ++) {
+                    courseNames[i] = new String(names[c * ITEMS_PER_COURSE + i]);
+                }
+                long[] courseDays = new long[ITEMS_PER_COURSE];
+                System.arraycopy(days, c * ITEMS_PER_COURSE, courseDays, 0, ITEMS_PER_COURSE);
+                handler.getCourse("C" + c).orElseThrow().addItems(courseNames, courseDays, ITEMS_PER_COURSE);
+            }
+            assertEquals(count, handler.compact());
+            return handler;
+        });
+
+        // An item object with its own name string costs over 50 bytes; a compacted item is 16 bytes of columns
+        assertTrue(arrayList / count >= 48, "ArrayList layout used " + arrayList / count + " bytes per item");
+        assertTrue(compacted * 2 <= arrayList,
+                "Compacted layout used " + compacted + " bytes, against " + arrayList + " for an ArrayList");
+    }
+
+    @Test
+    void changesRaceSafelyWithCompaction() throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.setCompactStorage(true);
+        int threadCount = 4;
+        int adds = 2000;
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t ++) {
+            String name = "C" + t;
+            handler.addCourse(name);
+            threads.add(new Thread(() -> {
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                Session session = new Session(new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+                handler.execute(session, "select-course " + name);
+                ClassSchedule course = session.getCurrentSchedule().orElseThrow();
+
+                // Each command compacts every other course, while their own threads are changing them
+                for (int i = 0; i < adds; i ++) {
+                    int id = course.addItem("Item " + i, i % 50);
+                    if (i % 2 == 1) {
+                        assertTrue(course.removeItem(id));
+                    }
+                    assertNotNull(handler.execute(session, "show-item"));
+                    course.getItems();
+                }
+                assertEquals("", err.toString());
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, first: " + failures.peek());
+
+        // Every remaining item can still be found by its ID, so no slot was taken without its item being added
+        for (ClassSchedule course : handler.getCourseSchedules()) {
+            List<ScheduledItem> items = course.getItems();
+            assertEquals(adds / 2, items.size());
+            for (ScheduledItem item : items) {
+                assertSame(item, course.getItem(item.id));
+            }
+            assertTrue(course.addItem("Last", 0) >= 0);
+            assertEquals(adds / 2 + 1, course.size());
+        }
+    }
+
+    // The heap retained by the built object, which is kept reachable until measured
+    private static long measure(Supplier<Object> build) {
+        long before = usedHeap();
+        Object retained = build.get();
+        long after = usedHeap();
+        assertNotNull(retained);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i ++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+}
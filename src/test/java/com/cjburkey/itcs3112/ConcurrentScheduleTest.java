@@ -0,0 +1,119 @@
+package com.cjburkey.itcs3112;
+
+import com.cjburkey.itcs3112.persist.ScheduleStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentScheduleTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 3000;
+
+    @Test
+    void sessionsShareOneHandlerAndStore(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        int[] expectedSizes = new int[THREADS];
+
+        // A small threshold keeps the journal compacting while the sessions change things
+        try (ScheduleStore store = ScheduleStore.open(dir, handler, 4096)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t ++) {
+                int index = t;
+                threads.add(new Thread(() -> {
+                    ByteArrayOutputStream err = new ByteArrayOutputStream();
+                    PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+                    Session session = new Session(out, new PrintStream(err));
+                    SplittableRandom random = new SplittableRandom(index);
+                    String own = "Own" + index;
+                    await(start);
+
+                    handler.execute(session, "add-course " + own);
+                    handler.execute(session, "select-course " + own);
+                    ClassSchedule course = session.getCurrentSchedule().orElseThrow();
+                    List<Integer> ids = new ArrayList<>();
+                    for (int i = 0; i < ROUNDS; i ++) {
+                        switch (random.nextInt(4)) {
+                            case 0 -> handler.execute(session, "add-item Item" + i + " 2030-01-"
+                                    + String.format("%02d", 1 + random.nextInt(28)));
+                            case 1 -> ids.add(course.addItem("Direct" + i, 21900 + random.nextInt(60)));
+                            case 2 -> {
+                                if (!ids.isEmpty()) {
+                                    assertTrue(course.removeItem(ids.remove(random.nextInt(ids.size()))));
+                                }
+                            }
+                            default -> handler.execute(session, "show");
+                        }
+                    }
+                    String ownErrors = err.toString();
+
+                    // Every session also fights over one shared course, which others may remove while it's selected
+                    for (int i = 0; i < ROUNDS / 10; i ++) {
+                        handler.execute(session, "add-course Shared");
+                        handler.execute(session, "select-course Shared");
+                        handler.execute(session, "add-item Shared" + i + " 2030-02-01");
+                        handler.execute(session, "rem-course Shared");
+                        session.getCurrentSchedule().ifPresent(selected -> assertFalse(selected.isRemoved()));
+                    }
+                    if (index % 4 == 0) {
+                        store.compact();
+                    }
+
+                    assertEquals("", ownErrors);
+                    expectedSizes[index] = course.size();
+                }));
+            }
+
+            for (Thread thread : threads) {
+                thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(failures.isEmpty(), () -> failures.size() + " failures, first: " + failures.peek());
+        }
+
+        // Whatever each course ended up with is exactly what the snapshot and journal bring back
+        ScheduleHandler reopened = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, reopened)) {
+            assertEquals(handler.getCourseSchedules().size(), reopened.getCourseSchedules().size());
+            for (ClassSchedule course : handler.getCourseSchedules()) {
+                List<ScheduledItem> expected = course.getItems();
+                List<ScheduledItem> actual = reopened.getCourse(course.name).orElseThrow().getItems();
+                assertEquals(expected.size(), actual.size(), course.name);
+                for (int i = 0; i < expected.size(); i ++) {
+                    assertEquals(expected.get(i).id, actual.get(i).id);
+                    assertEquals(expected.get(i).name, actual.get(i).name);
+                    assertEquals(expected.get(i).dueDay, actual.get(i).dueDay);
+                }
+            }
+        }
+        for (int t = 0; t < THREADS; t ++) {
+            assertEquals(expectedSizes[t], reopened.getCourse("Own" + t).orElseThrow().size());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.cjburkey.itcs3112;
+
+import com.cjburkey.itcs3112.persist.ExchangeFile;
+import com.cjburkey.itcs3112.persist.ExchangeFormat;
+import com.cjburkey.itcs3112.persist.ScheduleStore;
+import com.cjburkey.itcs3112.persist.SnapshotFile;
+import com.cjburkey.itcs3112.remind.Reminder;
+import com.cjburkey.itcs3112.remind.ReminderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurringItemsTest {
+
+    private static final long DAY = 20000;
+
+    @Test
+    void exportWritesEveryOccurrence(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+        course.addItem("Essay", DAY + 1);
+        course.addRecurring("Quiz", DAY, 7, 3);
+
+        Path file = dir.resolve("out.csv");
+        assertEquals(4, ExchangeFile.exportTo(handler, file, ExchangeFormat.CSV));
+
+        ScheduleHandler imported = new ScheduleHandler();
+        ExchangeFile.ImportResult result = ExchangeFile.importFrom(imported, file, ExchangeFormat.CSV);
+        assertEquals(4, result.items());
+        ItemSource expected = course.copyAllItems();
+        List<ScheduledItem> items = imported.getCourse("A").orElseThrow().getItems();
+        assertEquals(expected.size(), items.size());
+        for (int i = 0; i < items.size(); i ++) {
+            assertEquals(expected.name(i), items.get(i).name);
+            assertEquals(expected.dueDay(i), items.get(i).dueDay);
+        }
+    }
+
+    @Test
+    void removedIdsAreNeverReused(@TempDir Path dir) throws Exception {
+        Path storeDir = dir.resolve("store");
+        ScheduleHandler handler = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(storeDir, handler)) {
+            handler.addCourse("A");
+            ClassSchedule course = handler.getCourse("A").orElseThrow();
+            assertEquals(0, course.addRecurring("Quiz", DAY, 7, 3));
+            assertEquals(1, course.addRecurring("Lab", DAY, 7, 3));
+            assertTrue(course.removeRecurring(1));
+            assertEquals(2, course.addRecurring("Lab", DAY, 7, 3));
+            assertTrue(course.removeRecurring(2));
+        }
+
+        // Replaying the journal, then compacting it into a snapshot, both keep the next ID
+        ScheduleHandler replayed = new ScheduleHandler();
+        try (ScheduleStore store = ScheduleStore.open(storeDir, replayed)) {
+            assertEquals(3, replayed.getCourse("A").orElseThrow().getNextRecurringId());
+            store.compact().get();
+        }
+        ScheduleHandler reloaded = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(storeDir, reloaded)) {
+            ClassSchedule course = reloaded.getCourse("A").orElseThrow();
+            assertEquals(List.of(0), course.getRecurring().stream().map(rule -> rule.id).toList());
+            assertEquals(3, course.addRecurring("Lab", DAY, 7, 3));
+            assertTrue(course.removeRecurring(3));
+        }
+
+        // As does saving and loading a snapshot file, and undoing the removal of a course
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotFile.save(reloaded, file);
+        ScheduleHandler loaded = new ScheduleHandler();
+        SnapshotFile.load(loaded, file);
+        assertEquals(4, loaded.getCourse("A").orElseThrow().getNextRecurringId());
+
+        Session session = new Session(new PrintStream(new ByteArrayOutputStream()), System.err);
+        loaded.execute(session, "rem-course A");
+        assertTrue(loaded.undo(session).isPresent());
+        assertEquals(4, loaded.getCourse("A").orElseThrow().addRecurring("Lab", DAY, 7, 3));
+    }
+
+    @Test
+    void findMatchesOccurrences() {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.getNameIndex();
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+        int rule = course.addRecurring("Weekly Quiz", DAY, 7, 3);
+        course.addItem("Quiz Review", DAY + 1);
+
+        List<AgendaItem> found = handler.getNameIndex().findItems("quiz");
+        assertEquals(4, found.size());
+        assertEquals("Weekly Quiz", found.get(0).item().name);
+        assertEquals("Quiz Review", found.get(1).item().name);
+        assertEquals(new RecurringItem(rule, "", DAY, 7, 3, new int[0]).occurrenceId(1), found.get(2).item().id);
+
+        // Skipping replaces the rule, and the index follows
+        assertTrue(course.skipOccurrence(found.get(2).item().id));
+        assertEquals(2, handler.getNameIndex().findItems("weekly").size());
+        assertTrue(course.removeRecurring(rule));
+        assertEquals(List.of("Quiz Review"),
+                handler.getNameIndex().findItems("quiz").stream().map(match -> match.item().name).toList());
+        assertTrue(handler.getNameIndex().findCourses("quiz").isEmpty());
+    }
+
+    @Test
+    void remindersAreSentForEachOccurrence() {
+        ScheduleHandler handler = new ScheduleHandler();
+        setTime(handler, DAY, 0);
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+        int rule = course.addRecurring("Lab", DAY + 1, 1, 3);
+
+        List<Reminder> sent = new ArrayList<>();
+        try (ReminderService reminders = ReminderService.open(handler, List.of(Duration.ofHours(1), Duration.ZERO),
+                Duration.ofSeconds(1))) {
+            reminders.addSink(sent::add);
+
+            // One timer for the whole rule
+            assertEquals(1, reminders.pending());
+            for (int hour = 1; hour <= 24 * 4; hour ++) {
+                setTime(handler, DAY + hour / 24, hour % 24);
+                reminders.poll();
+
+                // Skipping the last occurrence before it comes due means it's never reminded of
+                if (hour == 36) {
+                    int last = course.getRecurring().get(0).occurrenceId(2);
+                    assertTrue(course.skipOccurrence(last));
+                }
+            }
+            assertEquals(0, reminders.pending());
+        }
+
+        RecurringItem first = new RecurringItem(rule, "Lab", DAY + 1, 1, 3, new int[0]);
+        assertEquals(4, sent.size());
+        for (int i = 0; i < sent.size(); i ++) {
+            Reminder reminder = sent.get(i);
+            assertEquals("Lab", reminder.item().name);
+            assertEquals(first.occurrenceId(i / 2), reminder.item().id);
+            assertEquals(DAY + 1 + i / 2, reminder.item().dueDay);
+            assertEquals(i % 2 == 0 ? Duration.ofHours(1) : Duration.ZERO, reminder.leadTime());
+        }
+    }
+
+    @Test
+    void removingARuleCancelsItsReminders() {
+        ScheduleHandler handler = new ScheduleHandler();
+        setTime(handler, DAY, 0);
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+        try (ReminderService reminders = ReminderService.open(handler)) {
+            int rule = course.addRecurring("Lab", DAY + 5, 1, 10);
+            assertEquals(1, reminders.pending());
+            assertTrue(course.removeRecurring(rule));
+            assertEquals(0, reminders.pending());
+        }
+    }
+
+    private static void setTime(ScheduleHandler handler, long day, int hour) {
+        Instant instant = Instant.ofEpochSecond(day * 86400 + hour * 3600L);
+        handler.setClock(Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.cjburkey.itcs3112;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    private static final int ITEMS = 200_000;
+
+    @Test
+    void everyItemArrivesOnceAndInOrder() throws Exception {
+        for (int shift = 0; shift <= 6; shift ++) {
+            int capacity = 1 << shift;
+            RingBuffer<Integer> buffer = new RingBuffer<>(capacity);
+            ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+            // Batches vary from single items to several times the capacity, so some are published a part at a time
+            Thread producer = new Thread(() -> {
+                Integer[] batch = new Integer[capacity * 3 + 1];
+                int next = 0;
+                int size = 0;
+                while (next < ITEMS) {
+                    size = size % batch.length + 1;
+                    if (size % 7 == 0) {
+                        assertTrue(buffer.put(next ++));
+                        continue;
+                    }
+                    int count = Math.min(size, ITEMS - next);
+                    for (int i = 0; i < count; i ++) {
+                        batch[i] = next ++;
+                    }
+                    assertTrue(buffer.putAll(batch, count));
+                }
+                buffer.close();
+            });
+            producer.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            producer.start();
+
+            // Arrays both smaller and larger than the capacity
+            int expected = 0;
+            int count;
+            Integer[] into = new Integer[1];
+            while ((count = buffer.takeAll(into)) >= 0) {
+                assertTrue(count > 0 && count <= into.length);
+                for (int i = 0; i < count; i ++) {
+                    assertEquals(expected ++, into[i], "Capacity " + capacity);
+                }
+                into = new Integer[into.length % (capacity * 2 + 1) + 1];
+            }
+            producer.join();
+            assertTrue(failures.isEmpty(), () -> "Producer failed: " + failures.peek());
+            assertEquals(ITEMS, expected, "Capacity " + capacity);
+            assertEquals(-1, buffer.takeAll(into));
+        }
+    }
+
+    @Test
+    void closingLetsTheConsumerDrainWhatWasPut() {
+        RingBuffer<String> buffer = new RingBuffer<>(4);
+        assertTrue(buffer.putAll(new String[] { "a", "b", "c" }, 3));
+        assertTrue(buffer.put("d"));
+        buffer.close();
+
+        String[] into = new String[3];
+        assertEquals(3, buffer.takeAll(into));
+        assertArrayEquals(new String[] { "a", "b", "c" }, into);
+        assertEquals(1, buffer.takeAll(into));
+        assertEquals("d", into[0]);
+        assertEquals(-1, buffer.takeAll(into));
+        assertEquals(-1, buffer.takeAll(into));
+    }
+
+    @Test
+    void closingFromTheConsumerStopsAWaitingProducer() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        assertTrue(buffer.putAll(new Integer[] { 1, 2 }, 2));
+
+        // The buffer is full, so this put waits until the consumer gives up on it
+        Boolean[] put = new Boolean[1];
+        Thread producer = new Thread(() -> put[0] = buffer.put(3));
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+        buffer.close();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> producer.join());
+        assertFalse(put[0]);
+
+        // Later puts fail at once, even with room
+        assertFalse(buffer.putAll(new Integer[] { 4 }, 1));
+        Integer[] into = new Integer[4];
+        assertEquals(2, buffer.takeAll(into));
+        assertFalse(buffer.put(5));
+        assertEquals(-1, buffer.takeAll(into));
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        for (int capacity : new int[] { 0, -1, 3, 6, 100 }) {
+            assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(capacity));
+        }
+    }
+
+}
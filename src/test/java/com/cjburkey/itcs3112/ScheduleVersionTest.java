@@ -0,0 +1,193 @@
+package com.cjburkey.itcs3112;
+
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleVersionTest {
+
+    private static final int WRITES = 20_000;
+    private static final int READERS = 4;
+
+    @Test
+    void readersSeeConsistentVersionsWhileWritersChangeCourses() throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.addCourse("A");
+        handler.addCourse("B");
+        ClassSchedule a = handler.getCourse("A").orElseThrow();
+        ClassSchedule b = handler.getCourse("B").orElseThrow();
+
+        AtomicBoolean done = new AtomicBoolean();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        // Every item is added to A before B, so no version may have more items in B than in A, or be two behind
+        threads.add(new Thread(() -> {
+            await(start);
+            for (int i = 0; i < WRITES; i ++) {
+                a.addItem("Item " + i, WRITES - i);
+                b.addItem("Item " + i, i);
+            }
+            done.set(true);
+        }));
+
+        // A course that keeps being added and removed must never be seen half there
+        threads.add(new Thread(() -> {
+            await(start);
+            while (!done.get()) {
+                handler.addCourse("C");
+                handler.getCourse("C").ifPresent(c -> c.addItem("Churn", 0));
+                handler.removeCourse("C");
+            }
+        }));
+
+        for (int r = 0; r < READERS; r ++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                long lastNumber = -1;
+                int lastSize = 0;
+                while (!done.get()) {
+                    ScheduleVersion version = handler.getVersion();
+                    assertTrue(version.number() >= lastNumber, "Versions went backwards");
+                    lastNumber = version.number();
+
+                    ItemSource itemsA = version.course("A").orElseThrow().items();
+                    ItemSource itemsB = version.course("B").orElseThrow().items();
+                    int diff = itemsA.size() - itemsB.size();
+                    assertTrue(diff == 0 || diff == 1, "Torn version: " + itemsA.size() + " and " + itemsB.size());
+                    assertTrue(itemsB.size() >= lastSize, "Items went missing");
+                    lastSize = itemsB.size();
+
+                    // Items stay sorted by due day, even when read while they're being added
+                    for (int i = 1; i < itemsA.size(); i ++) {
+                        assertTrue(itemsA.dueDay(i - 1) <= itemsA.dueDay(i));
+                    }
+                    version.course("C").ifPresent(c -> assertTrue(c.items().size() <= 1));
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                failures.add(e);
+                done.set(true);
+            });
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "Reader or writer failed: " + failures.peek());
+        assertEquals(WRITES, a.size());
+        assertEquals(WRITES, b.size());
+    }
+
+    @Test
+    void showNeverFailsWhileCoursesChange() throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        AtomicBoolean done = new AtomicBoolean();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        Thread writer = new Thread(() -> {
+            Session session = new Session(new PrintStream(new ByteArrayOutputStream()), System.err);
+            for (int i = 0; i < 2000; i ++) {
+                handler.execute(session, "add-course C" + (i % 20));
+                handler.execute(session, "add-item Item" + i + " 2030-01-01");
+                handler.execute(session, "rem-course C" + ((i + 10) % 20));
+            }
+            done.set(true);
+        });
+        Thread reader = new Thread(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Session session = new Session(new PrintStream(out), new PrintStream(out));
+            while (!done.get()) {
+                handler.execute(session, "show");
+                handler.execute(session, "list-course");
+                out.reset();
+            }
+        });
+        writer.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+        reader.setUncaughtExceptionHandler((t, e) -> {
+            failures.add(e);
+            done.set(true);
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertTrue(failures.isEmpty(), () -> "Command failed: " + failures.peek());
+    }
+
+    @Test
+    void undoRestoresTheVersionBeforeACommand() {
+        ScheduleHandler handler = new ScheduleHandler();
+        Session session = new Session(new PrintStream(new ByteArrayOutputStream()), System.err);
+        handler.execute(session, "add-course A");
+        handler.execute(session, "add-item First 2030-01-01");
+        ScheduleVersion before = handler.getVersion();
+
+        handler.execute(session, "add-item Second 2030-01-02");
+        handler.execute(session, "add-course B");
+        assertEquals(2, handler.getVersion().courses().size());
+
+        assertEquals("add-course B", handler.undo(session).orElseThrow());
+        assertEquals("add-item Second 2030-01-02", handler.undo(session).orElseThrow());
+        ScheduleVersion after = handler.getVersion();
+        assertEquals(1, after.courses().size());
+        ItemSource items = after.course("A").orElseThrow().items();
+        assertEquals(1, items.size());
+        assertEquals("First", items.name(0));
+
+        // Unchanged courses keep the very same items, since versions share everything a change didn't touch
+        assertSame(before.course("A").orElseThrow().items().get(0), items.get(0));
+    }
+
+    @Test
+    void sessionsOnlyUndoTheirOwnChanges() {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.setCompactStorage(true);
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Session first = new Session(new PrintStream(new ByteArrayOutputStream()), new PrintStream(errors));
+        Session second = new Session(new PrintStream(new ByteArrayOutputStream()), System.err);
+        handler.execute(first, "add-course A");
+        handler.execute(second, "add-course B");
+
+        // The most recent change is the second session's, so the first can't undo past it
+        assertEquals(CommandResult.FAILURE, handler.execute(first, "undo"));
+        assertTrue(errors.toString().startsWith("Can't undo"), errors.toString());
+        assertEquals(2, handler.getVersion().courses().size());
+
+        // Once the second session undoes its own, the first session's command is the most recent again
+        assertEquals("add-course B", handler.undo(second).orElseThrow());
+        assertThrows(IllegalStateException.class, () -> handler.undo(second));
+        assertEquals("add-course A", handler.undo(first).orElseThrow());
+        assertTrue(handler.getVersion().courses().isEmpty());
+
+        // Changes made outside any command can't be reverted by undoing an earlier command either
+        handler.execute(first, "add-course C");
+        handler.getCourse("C").orElseThrow().addItem("Direct", 20000);
+        assertThrows(IllegalStateException.class, () -> handler.undo(first));
+        assertEquals(1, handler.getCourse("C").orElseThrow().size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
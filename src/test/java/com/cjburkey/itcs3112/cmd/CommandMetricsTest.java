@@ -0,0 +1,161 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandMetricsTest {
+
+    private static final int RUNS = 200_000;
+
+    @Test
+    void fastRunsAreSampledAndWeighted() {
+        CommandMetrics metrics = new CommandMetrics("quick");
+
+        // Until a run is seen to be fast, every run is timed
+        assertEquals(1, metrics.sampleWeight());
+        metrics.record(CommandResult.SUCCESS, 1, 500);
+
+        int sampled = 0;
+        for (int i = 0; i < RUNS; i ++) {
+            int weight = metrics.sampleWeight();
+            assertTrue(weight == 0 || weight == CommandMetrics.SAMPLE_WEIGHT, "Weight " + weight);
+            if (weight > 0) {
+                sampled ++;
+            }
+            metrics.record(CommandResult.SUCCESS, weight, weight == 0 ? 0 : 500);
+        }
+
+        // Runs are exact, and each sampled run stands for SAMPLE_WEIGHT runs in the latencies
+        CommandMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(RUNS + 1, snapshot.getRuns());
+        assertEquals(0, snapshot.getFailures());
+        assertEquals(500L * (1 + (long) sampled * CommandMetrics.SAMPLE_WEIGHT), snapshot.getTotalNanos());
+        assertEquals(500, snapshot.getMeanNanos(), 1e-9);
+        assertEquals(500, snapshot.getMaxNanos());
+        long timed = Math.round(snapshot.getTotalNanos() / snapshot.getMeanNanos());
+        assertEquals(RUNS, timed, RUNS * 0.05);
+        assertEquals(RUNS / CommandMetrics.SAMPLE_WEIGHT, sampled, RUNS / CommandMetrics.SAMPLE_WEIGHT * 0.05);
+    }
+
+    @Test
+    void slowRunsAreAlwaysTimed() {
+        CommandMetrics metrics = new CommandMetrics("slow");
+        metrics.record(CommandResult.SUCCESS, 1, 100);
+
+        // Keep going until a sampled run turns out slow, after which every run is timed at weight 1
+        int weight;
+        do {
+            weight = metrics.sampleWeight();
+            metrics.record(CommandResult.SUCCESS, weight, weight == 0 ? 0 : CommandMetrics.FAST_NANOS);
+        } while (weight == 0);
+        assertEquals(CommandMetrics.SAMPLE_WEIGHT, weight);
+        for (int i = 0; i < 1000; i ++) {
+            assertEquals(1, metrics.sampleWeight());
+            metrics.record(CommandResult.FAILURE, 1, CommandMetrics.FAST_NANOS * 2);
+        }
+
+        CommandMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1000, snapshot.getFailures());
+        long sampledNanos = CommandMetrics.SAMPLE_WEIGHT * CommandMetrics.FAST_NANOS;
+        assertEquals(100 + sampledNanos + 1000 * CommandMetrics.FAST_NANOS * 2, snapshot.getTotalNanos());
+        assertEquals(CommandMetrics.FAST_NANOS * 2, snapshot.getP50Nanos(), CommandMetrics.FAST_NANOS * 0.5);
+    }
+
+    @Test
+    void usageErrorsAreCountedButNotTimed() {
+        CommandMetrics metrics = new CommandMetrics("usage");
+        metrics.record(CommandResult.USAGE_ERROR, 1, 1_000_000);
+        metrics.record(null, 1, 300);
+
+        CommandMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getUsageErrors());
+        assertEquals(1, snapshot.getRuns());
+        assertEquals(1, snapshot.getFailures());
+        assertEquals(300, snapshot.getMaxNanos());
+    }
+
+    @Test
+    void bucketsCoverEveryLatencyWithinAQuarter() {
+        for (long nanos = 0; nanos < 1 << 20; nanos ++) {
+            checkBucket(nanos);
+        }
+        for (long nanos = 1 << 20; nanos < 1L << 39; nanos += nanos / 7 + 1) {
+            checkBucket(nanos);
+        }
+    }
+
+    @Test
+    void commandsRunThroughAHandlerAreSampled() {
+        CommandHandler handler = new CommandHandler();
+        Command noop = noop();
+        handler.addCommand(noop);
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        Session session = new Session(discard, discard);
+        for (int i = 0; i < RUNS; i ++) {
+            assertEquals(CommandResult.SUCCESS, handler.execute(session, "noop"));
+        }
+
+        // However many runs were timed, the histogram stands for about every run
+        CommandMetrics.Snapshot snapshot = noop.metrics.snapshot();
+        assertEquals(RUNS, snapshot.getRuns());
+        assertEquals(RUNS, Math.round(snapshot.getTotalNanos() / snapshot.getMeanNanos()), RUNS * 0.05);
+    }
+
+    @Test
+    void metricsAddLittleToEachRun() {
+        Command noop = noop();
+        String[] args = new String[0];
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        Session session = new Session(discard, discard);
+
+        // Take the best of several rounds so warming up and pauses don't count. This is only a coarse bound, far
+        // above what's expected; CommandMetricsBenchmark measures the actual cost.
+        long bare = Long.MAX_VALUE;
+        long instrumented = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round ++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS / 10; i ++) {
+                noop.execute(session, args);
+            }
+            bare = Math.min(bare, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS / 10; i ++) {
+                CommandHandler.run(session, noop, args);
+            }
+            instrumented = Math.min(instrumented, System.nanoTime() - start);
+        }
+        double overhead = (double) (instrumented - bare) / (RUNS / 10);
+        assertTrue(overhead < 1000, "Metrics added " + overhead + "ns to each run");
+        assertEquals(20L * (RUNS / 10), noop.metrics.snapshot().getRuns());
+    }
+
+    private static Command noop() {
+        return new Command("noop", new ScheduleHandler(), 0) {
+            @Override
+            public boolean execute(Session session, String[] args) {
+                return true;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Do nothing";
+            }
+        };
+    }
+
+    private static void checkBucket(long nanos) {
+        int bucket = CommandMetrics.bucket(nanos);
+        assertTrue(CommandMetrics.lowerBound(bucket) <= nanos, () -> nanos + " is below bucket " + bucket);
+        assertTrue(bucket + 1 == CommandMetrics.BUCKETS || nanos < CommandMetrics.lowerBound(bucket + 1),
+                () -> nanos + " is above bucket " + bucket);
+        assertTrue(nanos - CommandMetrics.lowerBound(bucket) <= nanos / 4, () -> nanos + " is too far into its bucket");
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.cjburkey.itcs3112.cmd;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+
+    private static final long DAY = 20000;
+
+    @Test
+    void removedCoursesAreDropped() {
+        ScheduleHandler handler = new ScheduleHandler();
+        RenderCache cache = handler.getRenderCache();
+        handler.addCourse("A");
+        handler.addCourse("B");
+        handler.getCourse("A").orElseThrow().addItem("Essay", DAY);
+        handler.getCourse("B").orElseThrow().addItem("Quiz", DAY);
+
+        // Showing both courses keeps their text
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        Session session = new Session(out, out);
+        handler.execute(session, "show");
+        assertEquals(CommandResult.SUCCESS, handler.execute(session, "show"));
+        assertEquals(2, cache.getHits());
+        long both = cache.getSize();
+        assertTrue(both > 2L * RenderCache.ENTRY_OVERHEAD);
+
+        ClassSchedule removed = handler.getCourse("A").orElseThrow();
+        ItemSource items = handler.getVersion().course("A").orElseThrow().items();
+        assertTrue(handler.removeCourse("A"));
+        assertTrue(cache.getSize() < both);
+        assertNull(cache.get(removed, "    ", items, DAY));
+
+        // Text printed by a command still running when the course was removed isn't kept
+        long size = cache.getSize();
+        cache.put(removed, "    ", items, 0, "Stale");
+        assertEquals(size, cache.getSize());
+        assertTrue(handler.removeCourse("B"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void eachEntryCountsAgainstTheCapacity() {
+        ScheduleHandler handler = new ScheduleHandler();
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+        course.addItem("Essay", DAY);
+        ItemSource items = handler.getVersion().course("A").orElseThrow().items();
+
+        // Four short texts would fit by their characters alone, but not with each entry's overhead
+        int length = 10;
+        RenderCache cache = new RenderCache(3 * (length + RenderCache.ENTRY_OVERHEAD) + 1);
+        for (int i = 0; i < 4; i ++) {
+            cache.put(course, " ".repeat(i), items, 1, "x".repeat(length));
+        }
+        assertEquals(3L * (length + RenderCache.ENTRY_OVERHEAD), cache.getSize());
+        assertNull(cache.get(course, "", items, DAY));
+        assertNotNull(cache.get(course, "   ", items, DAY));
+    }
+
+}
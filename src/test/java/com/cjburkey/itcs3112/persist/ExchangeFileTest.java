@@ -0,0 +1,86 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cjburkey.itcs3112.persist.StoredSchedules.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExchangeFileTest {
+
+    private static final int ROWS = 3000;
+
+    @Test
+    void chunkBoundariesDontChangeWhatsImported(@TempDir Path dir) throws Exception {
+        // The first row's stray quote mustn't stop later rows from ending chunks
+        StringBuilder csv = new StringBuilder("course,name,due\r\nCS101,Read 12\" ruler,2024-01-01\r\n");
+        List<String> expectedErrors = new ArrayList<>();
+        int line = 3;
+        int items = 1;
+        for (int i = 0; i < ROWS; i ++) {
+            String course = "C" + i % 7;
+            String ending = i % 2 == 0 ? "\r\n" : "\n";
+            if (i % 500 == 250) {
+                csv.append(course).append(",\"Broken\nacross lines\",2024-02-30").append(ending);
+                expectedErrors.add("Line " + line + ": ");
+                line += 2;
+            } else if (i % 5 == 0) {
+                csv.append('"').append(course).append("\",\"Say \"\"hi\"\",\nthen ").append(i).append("\",2024-03-")
+                        .append(String.format("%02d", 1 + i % 28)).append(ending);
+                line += 2;
+                items ++;
+            } else {
+                csv.append(course).append(",Item ").append(i).append(" of ").append("x".repeat(i % 90))
+                        .append(",2024-04-").append(String.format("%02d", 1 + i % 30)).append(ending);
+                line ++;
+                items ++;
+            }
+        }
+        Path file = dir.resolve("items.csv");
+        Files.writeString(file, csv);
+
+        ScheduleHandler whole = new ScheduleHandler();
+        ExchangeFile.ImportResult expected = ExchangeFile.importFrom(whole, file, ExchangeFormat.CSV);
+        assertEquals(items, expected.items());
+        assertEquals(expectedErrors.size(), expected.errors());
+        for (int i = 0; i < expectedErrors.size(); i ++) {
+            assertTrue(expected.messages().get(i).startsWith(expectedErrors.get(i)), expected.messages().get(i));
+        }
+        assertEquals("Say \"hi\",\nthen 0", whole.getCourse("C0").orElseThrow().getItems().stream()
+                .filter(item -> item.name.startsWith("Say")).findFirst().orElseThrow().name);
+
+        // Chunks smaller than one record grow to fit it, and records split across chunks come out the same
+        for (int chunkSize : new int[] { 16, 100, 4096 }) {
+            ScheduleHandler chunked = new ScheduleHandler();
+            ExchangeFile.ImportResult result = ExchangeFile.importFrom(chunked, file, ExchangeFormat.CSV, chunkSize);
+            assertEquals(expected, result, "Chunk size " + chunkSize);
+            assertSameSchedule(whole, chunked);
+        }
+    }
+
+    @Test
+    void exportedFilesImportTheSameInEitherFormat(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        fill(handler);
+        String awkward = "Quote \" and, comma\r\nand line";
+        handler.getCourse("Empty").orElseThrow().addItem(awkward, DAY);
+
+        for (ExchangeFormat format : ExchangeFormat.values()) {
+            Path file = dir.resolve("items." + format.name());
+            long count = ExchangeFile.exportTo(handler, file, format);
+            ScheduleHandler whole = new ScheduleHandler();
+            ScheduleHandler chunked = new ScheduleHandler();
+            assertEquals(count, ExchangeFile.importFrom(whole, file, format).items());
+            assertEquals(count, ExchangeFile.importFrom(chunked, file, format, 64).items());
+            assertSameSchedule(whole, chunked);
+            assertEquals(awkward, chunked.getCourse("Empty").orElseThrow().getItems().get(0).name);
+        }
+    }
+
+}
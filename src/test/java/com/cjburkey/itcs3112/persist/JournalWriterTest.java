@@ -0,0 +1,78 @@
+package com.cjburkey.itcs3112.persist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalWriterTest {
+
+    @Test
+    void recordsAreReadBackInOrder(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("journal.log");
+        AtomicReference<IOException> told = new AtomicReference<>();
+        try (JournalWriter writer = new JournalWriter(open(file), told::set)) {
+            for (int i = 0; i < 1000; i ++) {
+                byte[] record = new byte[i % 50];
+                Arrays.fill(record, (byte) i);
+                writer.append(record, record.length);
+            }
+            writer.sync();
+        }
+        assertNull(told.get());
+
+        List<byte[]> records = new ArrayList<>();
+        assertEquals(1000, JournalReader.read(file, in -> records.add(in.readAllBytes())));
+        for (int i = 0; i < records.size(); i ++) {
+            byte[] expected = new byte[i % 50];
+            Arrays.fill(expected, (byte) i);
+            assertArrayEquals(expected, records.get(i));
+        }
+    }
+
+    @Test
+    void interruptedFlusherFailsWaitersInsteadOfHangingThem(@TempDir Path dir) throws Exception {
+        Set<Thread> before = flushers();
+        AtomicReference<IOException> told = new AtomicReference<>();
+        JournalWriter writer = new JournalWriter(open(dir.resolve("journal.log")), told::set);
+        Thread flusher = flushers().stream().filter(thread -> !before.contains(thread)).findFirst().orElseThrow();
+        writer.append(new byte[] { 1 }, 1);
+        writer.sync();
+
+        flusher.interrupt();
+        flusher.join(10_000);
+        assertFalse(flusher.isAlive());
+        assertInstanceOf(InterruptedIOException.class, told.get());
+
+        // Nothing waits for a flusher that's gone
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(InterruptedIOException.class, () -> writer.append(new byte[] { 2 }, 1));
+            assertThrows(InterruptedIOException.class, writer::sync);
+            assertThrows(InterruptedIOException.class, writer::close);
+        });
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static Set<Thread> flushers() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("journal-flusher"))
+                .collect(Collectors.toSet());
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.cjburkey.itcs3112.persist;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordParserTest {
+
+    @Test
+    void quotedFieldsFollowCsvRules() {
+        RecordParser.Batch batch = parse(ExchangeFormat.CSV, """
+                course,name,due
+                A,"Read ""Hamlet"", then write",2024-01-01
+                A,Read 12" ruler,2024-01-02
+                "B, the course","Line one
+                Line two","2024-01-03"
+                B,"",2024-01-04
+                """);
+        assertEquals(0, batch.errorCount, () -> batch.errors.toString());
+        assertEquals(6, batch.lines);
+        assertItems(batch, "A", "Read \"Hamlet\", then write", "2024-01-01", "Read 12\" ruler", "2024-01-02");
+        assertItems(batch, "B, the course", "Line one\nLine two", "2024-01-03");
+        assertItems(batch, "B", "", "2024-01-04");
+    }
+
+    @Test
+    void carriageReturnsArentPartOfFields() {
+        RecordParser.Batch batch = parse(ExchangeFormat.CSV,
+                "\uFEFFcourse,name,due\r\nA,Essay,2024-01-01\r\nA,\"Quiz\",\"2024-01-02\"\r\n\r\nB,,\r\n");
+        assertEquals(0, batch.errorCount, () -> batch.errors.toString());
+        assertItems(batch, "A", "Essay", "2024-01-01", "Quiz", "2024-01-02");
+        assertItems(batch, "B");
+    }
+
+    @Test
+    void errorsAreReportedOnTheLineTheirRecordStarts() {
+        RecordParser.Batch batch = parse(ExchangeFormat.CSV, """
+                A,"Two
+                lines",2024-13-01
+                A,Fine,2024-01-01
+                A,Late,2024-01-01,extra
+                A,"Closed"x,2024-01-01
+                ,Nameless,2024-01-01
+                A,"Open,2024-01-01
+                """);
+        assertEquals(List.of(0, 3, 4, 5, 6), batch.errors.stream().map(RecordParser.RecordError::line).toList());
+        assertTrue(batch.errors.get(4).message().contains("Unclosed quote"), batch.errors.get(4).message());
+        assertItems(batch, "A", "Fine", "2024-01-01");
+
+        RecordParser.Batch json = parse(ExchangeFormat.NDJSON, """
+                {"course":"A","name":"Essay","due":"2024-01-01","extra":[1,{"x":null}]}
+                {"course":"A","name":"Bad\\u00"}
+                {"course":"A","name":"Quiz \\"1\\"","due":"2024-01-02"}
+
+                {"course":"A","due":"2024-01-02"
+                """);
+        assertEquals(List.of(1, 4), json.errors.stream().map(RecordParser.RecordError::line).toList());
+        assertItems(json, "A", "Essay", "2024-01-01", "Quiz \"1\"", "2024-01-02");
+    }
+
+    @Test
+    void recordsEndWhereTheParserEndsThem() {
+        // A stray quote inside an unquoted field is an ordinary character, so later line breaks still end records
+        assertEquals(end("A,Read 12\" ruler,2024-01-01\nB,x,2024-01-01\n"),
+                lastRecordEnd("A,Read 12\" ruler,2024-01-01\nB,x,2024-01-01\nC,"));
+
+        // Line breaks inside a quoted field, even after an escaped quote, don't
+        assertEquals(end("A,x,2024-01-01\n"), lastRecordEnd("A,x,2024-01-01\nB,\"Say \"\"hi\nthere\"\"\","));
+        assertEquals(end("A,\"a\"\"\nb\",2024-01-01\n"), lastRecordEnd("A,\"a\"\"\nb\",2024-01-01\nB,\"c\n"));
+        assertEquals(-1, lastRecordEnd("\"A\nB"));
+        assertEquals(-1, RecordParser.lastRecordEnd(ExchangeFormat.NDJSON, bytes("{\"a\":\"\"\""), 0, 8));
+    }
+
+    private static RecordParser.Batch parse(ExchangeFormat format, String text) {
+        byte[] data = bytes(text);
+        return RecordParser.parse(format, data, 0, data.length, true);
+    }
+
+    private static int lastRecordEnd(String text) {
+        byte[] data = bytes(text);
+        return RecordParser.lastRecordEnd(ExchangeFormat.CSV, data, 0, data.length);
+    }
+
+    private static int end(String text) {
+        return bytes(text).length;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Check a course's items, given as pairs of names and due dates
+    private static void assertItems(RecordParser.Batch batch, String course, String... items) {
+        RecordParser.CourseBatch courseBatch = batch.courses.get(course);
+        assertNotNull(courseBatch, course);
+        assertEquals(items.length / 2, courseBatch.count, course);
+        for (int i = 0; i < courseBatch.count; i ++) {
+            assertEquals(items[i * 2], courseBatch.names[i]);
+            assertEquals(LocalDate.parse(items[i * 2 + 1]).toEpochDay(), courseBatch.dueDays[i]);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.cjburkey.itcs3112.persist.StoredSchedules.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleStoreTest {
+
+    @Test
+    void journalReplaysEveryChange(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, handler)) {
+            fill(handler);
+
+            // Changing a compacted course loads it again, and compacting it doesn't change what's journaled
+            ClassSchedule compacted = handler.getCourse("Compacted").orElseThrow();
+            compacted.removeItem(compacted.getItems().get(10).id);
+            compacted.addItem("Homework extra", DAY + 5);
+            assertEquals(300, compacted.compact());
+            handler.removeCourse("Empty");
+        }
+        assertFalse(Files.exists(dir.resolve("snapshot.bin")));
+
+        ScheduleHandler replayed = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, replayed)) {
+            assertSameSchedule(handler, replayed);
+        }
+    }
+
+    @Test
+    void snapshotAndLaterChangesAreBothLoaded(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        try (ScheduleStore store = ScheduleStore.open(dir, handler)) {
+            fill(handler);
+            store.compact().get();
+
+            ClassSchedule compacted = handler.getCourse("Compacted").orElseThrow();
+            int rule = compacted.getRecurring().get(0).id;
+            assertTrue(compacted.removeRecurring(rule));
+            compacted.addRecurring("Office hours", DAY + 1, 7, 8);
+            ClassSchedule mixed = handler.getCourse("Mixed").orElseThrow();
+            assertTrue(mixed.skipOccurrence(mixed.getRecurring().get(0).occurrenceId(4)));
+            handler.addCourse("Late");
+            handler.getCourse("Late").orElseThrow().addItem("First", DAY);
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+
+        ScheduleHandler reopened = new ScheduleHandler();
+        try (ScheduleStore store = ScheduleStore.open(dir, reopened)) {
+            assertSameSchedule(handler, reopened);
+
+            // A second compaction writes the reopened courses, which were never loaded, straight from the old snapshot
+            store.compact().get();
+        }
+        ScheduleHandler again = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, again)) {
+            assertSameSchedule(handler, again);
+        }
+    }
+
+    @Test
+    void namesLongerThanModifiedUtf8AllowsAreJournaled(@TempDir Path dir) throws Exception {
+        String longName = "\u00e9".repeat(40000);
+        ScheduleHandler handler = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, handler)) {
+            handler.addCourse(longName);
+            ClassSchedule course = handler.getCourse(longName).orElseThrow();
+            course.addItem(longName, DAY);
+            course.addRecurring(longName, DAY, 7, 3);
+        }
+
+        ScheduleHandler replayed = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, replayed)) {
+            assertSameSchedule(handler, replayed);
+        }
+    }
+
+    @Test
+    void refusedChangesLeaveMemoryAndJournalTogether(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, handler)) {
+            fill(handler);
+            handler.refuseChanges(new IOException("Disk full"));
+
+            ClassSchedule mixed = handler.getCourse("Mixed").orElseThrow();
+            int size = mixed.size();
+            assertThrows(UncheckedIOException.class, () -> mixed.addItem("Late", DAY));
+            assertThrows(UncheckedIOException.class, () -> mixed.removeItem(mixed.getItems().get(0).id));
+            assertThrows(UncheckedIOException.class, () -> mixed.addRecurring("Late", DAY, 1, 2));
+            assertThrows(UncheckedIOException.class, () -> handler.addCourse("Late"));
+            assertThrows(UncheckedIOException.class, () -> handler.removeCourse("Empty"));
+            assertThrows(UncheckedIOException.class, () -> handler.undo(new Session()));
+            assertEquals(size, mixed.size());
+            assertTrue(handler.getCourse("Empty").isPresent());
+        }
+
+        ScheduleHandler replayed = new ScheduleHandler();
+        try (ScheduleStore ignored = ScheduleStore.open(dir, replayed)) {
+            assertSameSchedule(handler, replayed);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.Session;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.cjburkey.itcs3112.persist.StoredSchedules.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    @Test
+    void savedSnapshotLoadsBack(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        fill(handler);
+        Path file = dir.resolve("schedule.bin");
+        SnapshotFile.save(handler, file);
+
+        ScheduleHandler loaded = new ScheduleHandler();
+        assertEquals(4, SnapshotFile.load(loaded, file));
+
+        // Items stay in the file until a course is first used
+        for (String name : new String[] { "Mixed", "Compacted", "Only items" }) {
+            assertFalse(loaded.getCourse(name).orElseThrow().isLoaded(), name);
+        }
+        assertSameSchedule(handler, loaded);
+
+        // New items and recurring items don't take the IDs of stored ones
+        ClassSchedule compacted = loaded.getCourse("Compacted").orElseThrow();
+        int id = compacted.addItem("Late", DAY);
+        assertNull(handler.getCourse("Compacted").orElseThrow().getItem(id));
+        assertEquals(handler.getCourse("Mixed").orElseThrow().getNextRecurringId(),
+                loaded.getCourse("Mixed").orElseThrow().addRecurring("Seminar", DAY, 14, 3));
+    }
+
+    @Test
+    void loadingReplacesEveryCourse(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        fill(handler);
+        Path file = dir.resolve("schedule.bin");
+        SnapshotFile.save(handler, file);
+
+        ScheduleHandler loaded = new ScheduleHandler();
+        loaded.addCourse("Mixed");
+        loaded.getCourse("Mixed").orElseThrow().addItem("Stale", DAY);
+        loaded.addCourse("Gone");
+        SnapshotFile.load(loaded, file);
+        assertSameSchedule(handler, loaded);
+    }
+
+    @Test
+    void corruptCourseIsReportedBeforeAnyItemIsRead(@TempDir Path dir) throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        fill(handler);
+        Path file = dir.resolve("schedule.bin");
+        SnapshotFile.save(handler, file);
+
+        // Change one item name in the course of only items, leaving the header and the other courses alone
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] name = "Problem set".getBytes(StandardCharsets.US_ASCII);
+        int offset = indexOf(bytes, name);
+        assertTrue(offset >= 0);
+        bytes[offset] = 'Q';
+        Files.write(file, bytes);
+
+        ScheduleHandler loaded = new ScheduleHandler();
+        assertEquals(4, SnapshotFile.load(loaded, file));
+        ItemSource items = loaded.getCourse("Only items").orElseThrow().copyAllItems();
+        assertThrows(UncheckedIOException.class, () -> items.name(0));
+        assertThrows(UncheckedIOException.class, () -> items.dueDay(0));
+        assertThrows(UncheckedIOException.class, () -> items.id(0));
+
+        // Commands report it as a storage error rather than printing the changed name
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Session session = new Session(new PrintStream(out), new PrintStream(out));
+        for (String command : new String[] { "find Problem", "due-between 2024-01-01 2030-01-01" }) {
+            out.reset();
+            assertEquals(CommandResult.FAILURE, loaded.execute(session, command), command);
+            assertTrue(out.toString().contains("Storage error"), out.toString());
+            assertFalse(out.toString().contains("Qroblem"), out.toString());
+        }
+
+        // Other courses are still read
+        ItemSource compacted = loaded.getCourse("Compacted").orElseThrow().copyAllItems();
+        assertEquals(handler.getCourse("Compacted").orElseThrow().copyAllItems().name(0), compacted.name(0));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i ++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.cjburkey.itcs3112.persist;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Builds a schedule using everything that's stored, and checks a stored copy matches it
+final class StoredSchedules {
+
+    static final long DAY = 20000;
+
+    private StoredSchedules() {
+    }
+
+    /**
+     * Fill a handler with a course of ordinary and recurring items (with a skipped, a replaced and a removed
+     * recurring item), a compacted course with a recurring item, a compacted course of only ordinary items, and an
+     * empty course.
+     */
+    static void fill(ScheduleHandler handler) {
+        handler.addCourse("Mixed");
+        ClassSchedule mixed = handler.getCourse("Mixed").orElseThrow();
+        int essay = mixed.addItem("Essay", DAY + 3);
+        mixed.addItem("Reading", DAY + 1);
+        mixed.addItem("Exam", DAY + 30);
+        assertTrue(mixed.removeItem(essay));
+        int quiz = mixed.addRecurring("Quiz", DAY, 7, 5);
+        int lab = mixed.addRecurring("Lab", DAY + 2, 2, 10);
+        assertTrue(mixed.skipOccurrence(rule(mixed, quiz).occurrenceId(1)));
+        assertTrue(mixed.replaceOccurrence(rule(mixed, quiz).occurrenceId(3), "Quiz (moved)", DAY + 22) >= 0);
+        assertTrue(mixed.removeRecurring(lab));
+
+        handler.addCourse("Compacted");
+        ClassSchedule compacted = handler.getCourse("Compacted").orElseThrow();
+        for (int i = 0; i < 300; i ++) {
+            compacted.addItem("Homework " + i % 12, DAY + i % 90);
+        }
+        compacted.addRecurring("Lecture", DAY, 1, 60);
+        assertEquals(300, compacted.compact());
+
+        handler.addCourse("Only items");
+        ClassSchedule onlyItems = handler.getCourse("Only items").orElseThrow();
+        for (int i = 0; i < 50; i ++) {
+            onlyItems.addItem("Problem set \u00e9" + i, DAY - i);
+        }
+        assertEquals(50, onlyItems.compact());
+
+        handler.addCourse("Empty");
+    }
+
+    /**
+     * Check that every course in the actual handler has the same items, recurring items and next recurring item ID
+     * as in the expected handler, and that every item can be found by its ID.
+     */
+    static void assertSameSchedule(ScheduleHandler expected, ScheduleHandler actual) {
+        assertEquals(expected.getCourseSchedules().size(), actual.getCourseSchedules().size());
+        for (ClassSchedule course : expected.getCourseSchedules()) {
+            ClassSchedule copy = actual.getCourse(course.name).orElseThrow(() -> new AssertionError(course.name));
+            ItemSource items = course.copyAllItems();
+            ItemSource copied = copy.copyAllItems();
+            assertEquals(items.size(), copied.size(), course.name);
+            for (int i = 0; i < items.size(); i ++) {
+                assertEquals(items.id(i), copied.id(i), course.name);
+                assertEquals(items.name(i), copied.name(i), course.name);
+                assertEquals(items.dueDay(i), copied.dueDay(i), course.name);
+            }
+
+            List<RecurringItem> rules = course.getRecurring();
+            List<RecurringItem> copiedRules = copy.getRecurring();
+            assertEquals(rules.size(), copiedRules.size(), course.name);
+            for (int i = 0; i < rules.size(); i ++) {
+                RecurringItem rule = rules.get(i);
+                RecurringItem copiedRule = copiedRules.get(i);
+                assertEquals(rule.id, copiedRule.id);
+                assertEquals(rule.name, copiedRule.name);
+                assertEquals(rule.startDay, copiedRule.startDay);
+                assertEquals(rule.interval, copiedRule.interval);
+                assertEquals(rule.count, copiedRule.count);
+                assertArrayEquals(rule.getSkipped(), copiedRule.getSkipped());
+            }
+            assertEquals(course.getNextRecurringId(), copy.getNextRecurringId(), course.name);
+
+            for (int i = 0; i < copied.size(); i ++) {
+                if (!RecurringItem.isOccurrence(copied.id(i))) {
+                    assertEquals(copied.name(i), copy.getItem(copied.id(i)).name);
+                }
+            }
+        }
+    }
+
+    private static RecurringItem rule(ClassSchedule course, int id) {
+        return course.getRecurring().stream().filter(rule -> rule.id == id).findFirst().orElseThrow();
+    }
+
+}
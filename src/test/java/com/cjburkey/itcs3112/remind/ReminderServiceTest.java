@@ -0,0 +1,156 @@
+package com.cjburkey.itcs3112.remind;
+
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReminderServiceTest {
+
+    private static final long DAY = 20000;
+    private static final List<Duration> LEAD_TIMES = List.of(Duration.ofDays(1), Duration.ofHours(1), Duration.ZERO);
+
+    @Test
+    void eachLeadTimeIsRemindedOfOnce() {
+        ScheduleHandler handler = new ScheduleHandler();
+        setTime(handler, Instant.ofEpochSecond(DAY * 86400));
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+
+        List<Reminder> sent = new ArrayList<>();
+        try (ReminderService reminders = ReminderService.open(handler, LEAD_TIMES, Duration.ofSeconds(1))) {
+            reminders.addSink(sent::add);
+            course.addItem("Essay", DAY + 3);
+
+            // Minute by minute through the days before it's due, so its timer cascades through several levels
+            Instant due = Instant.ofEpochSecond((DAY + 3) * 86400);
+            for (Instant now = Instant.ofEpochSecond(DAY * 86400); !now.isAfter(due); now = now.plusSeconds(60)) {
+                setTime(handler, now);
+                reminders.poll();
+            }
+            assertEquals(0, reminders.pending());
+        }
+
+        assertEquals(LEAD_TIMES, sent.stream().map(Reminder::leadTime).toList());
+        for (Reminder reminder : sent) {
+            assertEquals("Essay", reminder.item().name);
+            assertEquals(Instant.ofEpochSecond((DAY + 3) * 86400), reminder.dueAt());
+        }
+    }
+
+    @Test
+    void clockJumpsOnlySendTheLatestLeadTime() {
+        ScheduleHandler handler = new ScheduleHandler();
+        Instant start = Instant.ofEpochSecond(DAY * 86400);
+        setTime(handler, start);
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+
+        List<Reminder> sent = new ArrayList<>();
+        try (ReminderService reminders = ReminderService.open(handler, LEAD_TIMES, Duration.ofSeconds(1))) {
+            reminders.addSink(sent::add);
+            course.addItem("Essay", DAY + 3);
+            course.addItem("Exam", DAY + 5);
+
+            // Past the Essay's day and hour reminders at once
+            Instant essayDue = Instant.ofEpochSecond((DAY + 3) * 86400);
+            setTime(handler, essayDue.minusSeconds(60));
+            assertEquals(1, reminders.poll());
+            assertEquals(Duration.ofHours(1), sent.get(0).leadTime());
+            assertEquals(0, reminders.poll());
+
+            // Then past every lead time of both items, which still only sends one reminder for each
+            setTime(handler, Instant.ofEpochSecond((DAY + 9) * 86400));
+            assertEquals(2, reminders.poll());
+            assertEquals(0, reminders.pending());
+        }
+
+        assertEquals(List.of("Essay", "Essay", "Exam"), sent.stream().map(reminder -> reminder.item().name).toList());
+        assertEquals(List.of(Duration.ofHours(1), Duration.ZERO, Duration.ZERO),
+                sent.stream().map(Reminder::leadTime).toList());
+    }
+
+    @Test
+    void itemsAlreadyPastEveryLeadTimeAreNotReminded() {
+        ScheduleHandler handler = new ScheduleHandler();
+        setTime(handler, Instant.ofEpochSecond(DAY * 86400 + 1));
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+
+        try (ReminderService reminders = ReminderService.open(handler, LEAD_TIMES, Duration.ofSeconds(1))) {
+            course.addItem("Yesterday", DAY - 1);
+            course.addItem("Today", DAY);
+            assertEquals(0, reminders.pending());
+        }
+    }
+
+    @Test
+    void removingItemsAndCoursesCancelsTheirReminders() {
+        ScheduleHandler handler = new ScheduleHandler();
+        Instant start = Instant.ofEpochSecond(DAY * 86400);
+        setTime(handler, start);
+        handler.addCourse("A");
+        handler.addCourse("B");
+        ClassSchedule a = handler.getCourse("A").orElseThrow();
+        ClassSchedule b = handler.getCourse("B").orElseThrow();
+
+        List<Reminder> sent = new ArrayList<>();
+        try (ReminderService reminders = ReminderService.open(handler, LEAD_TIMES, Duration.ofSeconds(1))) {
+            reminders.addSink(sent::add);
+            int soon = a.addItem("Soon", DAY + 1);
+            int later = a.addItem("Later", DAY + 40);
+            b.addItem("Other", DAY + 2);
+            b.addRecurring("Weekly", DAY + 8, 7, 10);
+            assertEquals(4, reminders.pending());
+
+            // Cancelled after its first reminder, and before it was ever reminded of
+            setTime(handler, start.plusSeconds(3600));
+            assertEquals(1, reminders.poll());
+            assertTrue(a.removeItem(soon));
+            assertTrue(a.removeItem(later));
+            assertEquals(2, reminders.pending());
+
+            handler.removeCourse("B");
+            assertEquals(0, reminders.pending());
+            setTime(handler, Instant.ofEpochSecond((DAY + 100) * 86400));
+            assertEquals(0, reminders.poll());
+        }
+        assertEquals(1, sent.size());
+        assertEquals("Soon", sent.get(0).item().name);
+    }
+
+    @Test
+    void itemsRemovedAfterExpiringAreNotSent() {
+        ScheduleHandler handler = new ScheduleHandler();
+        setTime(handler, Instant.ofEpochSecond(DAY * 86400));
+        handler.addCourse("A");
+        ClassSchedule course = handler.getCourse("A").orElseThrow();
+
+        // A sink that removes the next item runs while that item's reminder is waiting to be delivered
+        List<Reminder> sent = new ArrayList<>();
+        try (ReminderService reminders = ReminderService.open(handler, LEAD_TIMES, Duration.ofSeconds(1))) {
+            int first = course.addItem("First", DAY + 2);
+            int second = course.addItem("Second", DAY + 2);
+            reminders.addSink(reminder -> {
+                sent.add(reminder);
+                course.removeItem(reminder.item().id == first ? second : first);
+            });
+            setTime(handler, Instant.ofEpochSecond((DAY + 2) * 86400));
+            assertEquals(1, reminders.poll());
+        }
+        assertEquals(1, sent.size());
+    }
+
+    private static void setTime(ScheduleHandler handler, Instant instant) {
+        handler.setClock(Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.cjburkey.itcs3112.remind;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    // The first tick of the second, third and fourth levels
+    private static final long LEVEL_1 = 1L << 6;
+    private static final long LEVEL_2 = 1L << 12;
+    private static final long LEVEL_3 = 1L << 18;
+
+    @Test
+    void timersExpireOnTheirTickAcrossLevelBoundaries() {
+        long[] deadlines = {
+                0, 1, LEVEL_1 - 1, LEVEL_1, LEVEL_1 + 1, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1, LEVEL_2 + LEVEL_1,
+                LEVEL_3 - 1, LEVEL_3, LEVEL_3 + 1, 3 * LEVEL_3 + LEVEL_2 + 5,
+        };
+        for (long start : new long[] { 0, 1, LEVEL_1 - 1, 12_345 }) {
+            TimingWheel wheel = new TimingWheel(start);
+            for (long deadline : deadlines) {
+                wheel.add(new TimingWheel.Timer(), start + deadline);
+            }
+
+            // Going one tick at a time, every timer expires exactly on its deadline
+            List<Long> expired = new ArrayList<>();
+            long end = start + deadlines[deadlines.length - 1];
+            for (long now = start; now <= end; now ++) {
+                long tick = now;
+                wheel.advance(now, timer -> {
+                    assertEquals(tick, timer.deadline());
+                    assertFalse(timer.isScheduled());
+                    expired.add(timer.deadline() - start);
+                });
+            }
+            assertEquals(deadlines.length, expired.size());
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    void jumpingAheadExpiresEverythingPassedInOrder() {
+        SplittableRandom random = new SplittableRandom(15);
+        TimingWheel wheel = new TimingWheel(1000);
+        for (int i = 0; i < 5000; i ++) {
+            long deadline = 1000 + (random.nextBoolean() ? random.nextLong(LEVEL_2) : random.nextLong(LEVEL_3 * 4));
+            wheel.add(new TimingWheel.Timer(), deadline);
+        }
+
+        // Timers expire in deadline order, during the first advance that passes their deadline
+        long now = 999;
+        int count = 0;
+        while (wheel.size() > 0) {
+            long previous = now;
+            now += 1 + random.nextLong(LEVEL_2 * 3);
+            long[] last = { Long.MIN_VALUE };
+            long until = now;
+            int[] expired = { 0 };
+            wheel.advance(now, timer -> {
+                assertTrue(timer.deadline() > previous && timer.deadline() <= until);
+                assertTrue(timer.deadline() >= last[0]);
+                last[0] = timer.deadline();
+                expired[0] ++;
+            });
+            count += expired[0];
+        }
+        assertEquals(5000, count);
+    }
+
+    @Test
+    void timersBeyondTheTopLevelWaitForTheirDeadline() {
+        TimingWheel wheel = new TimingWheel(0);
+        TimingWheel.Timer far = new TimingWheel.Timer();
+        wheel.add(far, 1L << 50);
+
+        wheel.advance((1L << 50) - 1, timer -> fail("Expired early"));
+        assertTrue(far.isScheduled());
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(1L << 50, expired::add);
+        assertEquals(List.of(far), expired);
+    }
+
+    @Test
+    void passedDeadlinesExpireOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(0);
+        wheel.advance(100, timer -> fail("Nothing was scheduled"));
+        TimingWheel.Timer late = new TimingWheel.Timer();
+        wheel.add(late, 50);
+
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(101, expired::add);
+        assertEquals(List.of(late), expired);
+    }
+
+    @Test
+    void cancelledTimersNeverExpire() {
+        TimingWheel wheel = new TimingWheel(0);
+        List<TimingWheel.Timer> timers = new ArrayList<>();
+        for (long deadline = 1; deadline < LEVEL_3; deadline = deadline * 3 + 1) {
+            TimingWheel.Timer timer = new TimingWheel.Timer();
+            wheel.add(timer, deadline);
+            timers.add(timer);
+        }
+
+        // Cancel half before anything moves, and the rest once they've cascaded down a level or more
+        for (int i = 0; i < timers.size(); i += 2) {
+            assertTrue(wheel.cancel(timers.get(i)));
+            assertFalse(wheel.cancel(timers.get(i)));
+        }
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(LEVEL_2 + 1, expired::add);
+        for (int i = 1; i < timers.size(); i += 2) {
+            TimingWheel.Timer timer = timers.get(i);
+            assertEquals(timer.deadline() <= LEVEL_2 + 1, expired.contains(timer));
+            if (timer.isScheduled()) {
+                assertTrue(wheel.cancel(timer));
+            }
+        }
+        assertEquals(0, wheel.size());
+
+        wheel.advance(LEVEL_3 * 2, timer -> fail("Cancelled timer expired at " + timer.deadline()));
+        for (int i = 0; i < timers.size(); i += 2) {
+            assertFalse(expired.contains(timers.get(i)));
+        }
+    }
+
+}
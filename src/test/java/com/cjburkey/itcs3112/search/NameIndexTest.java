@@ -0,0 +1,186 @@
+package com.cjburkey.itcs3112.search;
+
+import com.cjburkey.itcs3112.AgendaItem;
+import com.cjburkey.itcs3112.ClassSchedule;
+import com.cjburkey.itcs3112.ItemSource;
+import com.cjburkey.itcs3112.RecurringItem;
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.ScheduledItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameIndexTest {
+
+    private static final long DAY = 20000;
+
+    // Enough different characters that names have thousands of distinct n-grams between them
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABC \u00C9\u00E9-";
+
+    @Test
+    void findsWhatAScanFindsAsNamesComeAndGo() {
+        ScheduleHandler handler = new ScheduleHandler();
+        NameIndex index = handler.getNameIndex();
+        Random random = new Random(17);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 40; i ++) {
+            names.add(randomName(random));
+        }
+
+        // Course names come from a small pool, so removed courses are often added again with new items
+        for (int step = 0; step < 6000; step ++) {
+            List<ClassSchedule> live = new ArrayList<>(handler.getCourseSchedules());
+            ClassSchedule course = live.isEmpty() ? null : live.get(random.nextInt(live.size()));
+            int action = random.nextInt(20);
+            if (course == null || action == 0) {
+                handler.addCourse(names.get(random.nextInt(names.size())));
+            } else if (action == 1) {
+                assertTrue(handler.removeCourse(course.name));
+            } else if (action < 10) {
+                course.addItem(randomName(random), DAY + random.nextInt(100));
+            } else if (action < 16) {
+                List<ScheduledItem> items = course.getItems();
+                if (!items.isEmpty()) {
+                    assertTrue(course.removeItem(items.get(random.nextInt(items.size())).id));
+                }
+            } else if (action < 18) {
+                course.addRecurring(randomName(random), DAY + random.nextInt(100), 1 + random.nextInt(7),
+                        1 + random.nextInt(4));
+            } else {
+                List<RecurringItem> rules = course.getRecurring();
+                if (!rules.isEmpty()) {
+                    assertTrue(course.removeRecurring(rules.get(random.nextInt(rules.size())).id));
+                }
+            }
+
+            if (step % 50 == 0) {
+                assertMatchesScan(handler, index, random, names);
+            }
+        }
+        assertMatchesScan(handler, index, random, names);
+
+        // An index built from the courses already there finds the same
+        assertMatchesScan(handler, NameIndex.open(handler), random, names);
+
+        // Once everything is removed nothing is found, and names added again are found again
+        for (ClassSchedule course : new ArrayList<>(handler.getCourseSchedules())) {
+            assertTrue(handler.removeCourse(course.name));
+        }
+        for (String name : names) {
+            assertTrue(index.findCourses(name).isEmpty(), name);
+            assertTrue(index.findItems(name.substring(0, 1)).isEmpty(), name);
+        }
+        handler.addCourse(names.get(0));
+        handler.getCourse(names.get(0)).orElseThrow().addItem(names.get(1), DAY);
+        assertMatchesScan(handler, index, random, names);
+    }
+
+    @Test
+    void listsStayRightAsMostOfTheirNamesAreRemoved() {
+        ScheduleHandler handler = new ScheduleHandler();
+        NameIndex index = handler.getNameIndex();
+        handler.addCourse("Math");
+        ClassSchedule course = handler.getCourse("Math").orElseThrow();
+        int[] ids = new int[200];
+        for (int i = 0; i < ids.length; i ++) {
+            ids[i] = course.addItem("Homework " + i, DAY + i);
+        }
+
+        // Removing all but every tenth item drops most of the shared lists' entries, a few at a time
+        for (int i = 0; i < ids.length; i ++) {
+            if (i % 10 != 0) {
+                assertTrue(course.removeItem(ids[i]));
+            }
+            if (i % 25 == 0) {
+                assertEquals(ids.length - i + i / 10, index.findItems("hom").size());
+            }
+        }
+        List<AgendaItem> found = index.findItems("HOMEWORK 1");
+        assertEquals(List.of("Homework 10", "Homework 100", "Homework 110", "Homework 120", "Homework 130",
+                "Homework 140", "Homework 150", "Homework 160", "Homework 170", "Homework 180", "Homework 190"),
+                found.stream().map(match -> match.item().name).sorted().toList());
+        assertEquals(20, index.findItems("w").size());
+        assertEquals(20, index.findItems("ework").size());
+        assertEquals(1, index.findItems("work 0").size());
+        assertTrue(index.findItems("homework 21").isEmpty());
+
+        // The same names added back are found once each
+        for (int i = 1; i < 10; i ++) {
+            course.addItem("Homework " + i, DAY);
+        }
+        assertEquals(29, index.findItems("homework").size());
+        assertEquals(12, index.findItems("homework 1").size());
+        assertEquals(List.of(course), index.findCourses("at"));
+    }
+
+    private static void assertMatchesScan(ScheduleHandler handler, NameIndex index, Random random,
+            List<String> names) {
+        // Pieces of current and past names, both up to three characters long and longer, and text found nowhere
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 60; i ++) {
+            String name = names.get(random.nextInt(names.size()));
+            int length = 1 + random.nextInt(Math.min(name.length(), 7));
+            int start = random.nextInt(name.length() - length + 1);
+            String query = name.substring(start, start + length);
+            queries.add(random.nextBoolean() ? query : query.toUpperCase(Locale.ROOT));
+        }
+        for (ClassSchedule course : handler.getCourseSchedules()) {
+            for (ScheduledItem item : course.getItems()) {
+                if (random.nextInt(10) == 0) {
+                    int start = random.nextInt(item.name.length());
+                    int end = Math.min(item.name.length(), start + 1 + random.nextInt(6));
+                    queries.add(item.name.substring(start, end));
+                }
+            }
+        }
+        for (int i = 0; i < 20; i ++) {
+            String name = randomName(random);
+            queries.add(name.substring(0, Math.min(name.length(), 1 + random.nextInt(3))));
+            queries.add(randomName(random));
+        }
+
+        for (String query : queries) {
+            String key = query.toLowerCase(Locale.ROOT);
+            List<ClassSchedule> courses = handler.getCourseSchedules().stream()
+                    .filter(course -> course.name.toLowerCase(Locale.ROOT).contains(key))
+                    .sorted(Comparator.comparing(course -> course.name))
+                    .toList();
+            assertEquals(courses, index.findCourses(query), query);
+
+            List<String> items = new ArrayList<>();
+            for (ClassSchedule course : handler.getCourseSchedules()) {
+                ItemSource all = course.copyAllItems();
+                for (int i = 0; i < all.size(); i ++) {
+                    if (all.name(i).toLowerCase(Locale.ROOT).contains(key)) {
+                        items.add(describe(course, all.get(i)));
+                    }
+                }
+            }
+            items.sort(null);
+            assertEquals(items, index.findItems(query).stream()
+                    .map(match -> describe(match.course(), match.item()))
+                    .sorted()
+                    .toList(), query);
+        }
+    }
+
+    private static String describe(ClassSchedule course, ScheduledItem item) {
+        return course.name + "|" + item.id + "|" + item.name + "|" + item.dueDay;
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 1 + random.nextInt(12);
+        for (int i = 0; i < length; i ++) {
+            name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return name.toString();
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.cjburkey.itcs3112.server;
+
+import com.cjburkey.itcs3112.ScheduleHandler;
+import com.cjburkey.itcs3112.cmd.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandServerTest {
+
+    @Test
+    void eachResponseEndsWithItsResult() throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        try (CommandServer server = CommandServer.start(handler, 0, null);
+             CommandClient client = CommandClient.connect(server.getPort())) {
+            CommandClient.Response added = client.execute("add-course Math");
+            assertEquals(CommandResult.SUCCESS, added.result());
+            assertEquals("Created & selected course: \"Math\".\n", added.output());
+
+            // Output spanning several lines all comes before the result, and none of it leaks into the next response
+            client.execute("add-course Art");
+            CommandClient.Response listed = client.execute("list-course");
+            assertEquals(CommandResult.SUCCESS, listed.result());
+            assertEquals(3, listed.output().lines().count());
+            assertTrue(listed.output().startsWith("Courses:\n"));
+
+            // Errors are sent back the same way
+            CommandClient.Response duplicate = client.execute("add-course Math");
+            assertEquals(CommandResult.FAILURE, duplicate.result());
+            assertEquals("Course by name of \"Math\" already exists.\n", duplicate.output());
+            CommandClient.Response unknown = client.execute("no-such-command");
+            assertEquals(CommandResult.UNKNOWN_COMMAND, unknown.result());
+            assertEquals("Unknown command\n", unknown.output());
+            assertEquals(CommandResult.USAGE_ERROR, client.execute("add-item").result());
+
+            // Names are never printed at the start of a line, so one that looks like a result can't end a response
+            assertEquals(CommandResult.SUCCESS, client.execute("add-course %FAILURE").result());
+            assertEquals(CommandResult.SUCCESS, client.execute("add-item %SUCCESS 2030-01-01").result());
+            for (String command : new String[] { "show-item", "list-course", "find %", "show" }) {
+                CommandClient.Response shown = client.execute(command);
+                assertEquals(CommandResult.SUCCESS, shown.result(), command);
+                assertTrue(shown.output().contains("%SUCCESS") || shown.output().contains("%FAILURE"), command);
+            }
+        }
+    }
+
+    @Test
+    void eachConnectionHasItsOwnSession() throws Exception {
+        ScheduleHandler handler = new ScheduleHandler();
+        try (CommandServer server = CommandServer.start(handler, 0, null);
+             CommandClient first = CommandClient.connect(server.getPort());
+             CommandClient second = CommandClient.connect(server.getPort());
+             CommandClient third = CommandClient.connect(server.getPort())) {
+            assertEquals(CommandResult.SUCCESS, first.execute("add-course Math").result());
+            assertEquals(CommandResult.SUCCESS, second.execute("add-course Art").result());
+
+            // Each client's items go to the course it selected, whatever the others selected since
+            assertEquals(CommandResult.SUCCESS, first.execute("add-item Homework 2030-01-01").result());
+            assertEquals(CommandResult.SUCCESS, second.execute("add-item Sketch 2030-01-02").result());
+            assertEquals(CommandResult.SUCCESS, second.execute("add-item Painting 2030-01-03").result());
+            assertEquals(1, handler.getCourse("Math").orElseThrow().size());
+            assertEquals(2, handler.getCourse("Art").orElseThrow().size());
+
+            // A new connection starts with nothing selected
+            assertNotEquals(CommandResult.SUCCESS, third.execute("add-item Stray 2030-01-04").result());
+
+            // Removing a course deselects it for every client that had it selected
+            assertEquals(CommandResult.SUCCESS, second.execute("rem-course Math").result());
+            assertNotEquals(CommandResult.SUCCESS, first.execute("add-item Late 2030-01-05").result());
+            assertEquals(CommandResult.SUCCESS, second.execute("add-item Sculpture 2030-01-06").result());
+            assertEquals(3, handler.getCourse("Art").orElseThrow().size());
+        }
+    }
+
+    @Test
+    void failingAcceptsAreRetriedWithGrowingWaits() throws Exception {
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errors, true));
+        try {
+            // Retrying at once would call accept millions of times here, rather than a handful
+            FlakyServerSocket failing = new FlakyServerSocket(Integer.MAX_VALUE);
+            CommandServer server = CommandServer.start(new ScheduleHandler(), null, failing);
+            Thread.sleep(500);
+            assertTrue(failing.accepts.get() <= 10, "Accepted " + failing.accepts.get() + " times");
+            assertTrue(errors.toString().contains("retrying in 20ms"), errors.toString());
+
+            // Closing doesn't wait out the current retry
+            assertTimeoutPreemptively(Duration.ofMillis(500), () -> {
+                server.close();
+                server.awaitClose();
+            });
+
+            // Once accept works again, clients are served as usual
+            FlakyServerSocket recovering = new FlakyServerSocket(3);
+            try (CommandServer recovered = CommandServer.start(new ScheduleHandler(), null, recovering);
+                 CommandClient client = CommandClient.connect(recovered.getPort())) {
+                assertEquals(CommandResult.SUCCESS, client.execute("add-course Math").result());
+                assertTrue(recovering.accepts.get() > 3);
+            }
+        } finally {
+            System.setErr(oldErr);
+        }
+    }
+
+    // A listening socket whose first accepts fail
+    private static final class FlakyServerSocket extends ServerSocket {
+
+        final AtomicInteger accepts = new AtomicInteger();
+        private final int failures;
+
+        FlakyServerSocket(int failures) throws IOException {
+            this.failures = failures;
+            bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            if (accepts.incrementAndGet() <= failures) {
+                throw new IOException("Too many open files");
+            }
+            return super.accept();
+        }
+
+    }
+
+}